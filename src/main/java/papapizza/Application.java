@@ -20,12 +20,15 @@ import org.salespointframework.EnableSalespoint;
 import org.salespointframework.SalespointSecurityConfiguration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
@@ -36,6 +39,8 @@ import java.nio.file.Paths;
 
 @EnableSalespoint
 @EnableCaching(proxyTargetClass = true)
+@EnableScheduling
+@EnableAsync
 public class Application {
 
 	private static ApplicationContext appContext;
@@ -74,6 +79,10 @@ public class Application {
 
 	@Configuration
 	public class AppConfig implements WebMvcConfigurer {
+		//graphs are drawn to data-dir/Graph by AnalyticsManagement
+		@Value("${papapizza.data-dir}")
+		private String dataDir;
+
 		@Bean
 		public ResourceBundleMessageSource messageSource(){
 			var source = new ResourceBundleMessageSource();
@@ -87,7 +96,7 @@ public class Application {
 
 		@Override
 		public void addResourceHandlers(ResourceHandlerRegistry registry) {
-			URI resLoc = Paths.get(System.getenv("APPDATA"),"PapaPizza","Graph").toUri();
+			URI resLoc = Paths.get(dataDir, "Graph").toUri();
 			logger.info("Graph res path:"+resLoc);
 			registry.addResourceHandler("/img/graph/**").addResourceLocations(resLoc.toString());
 		}
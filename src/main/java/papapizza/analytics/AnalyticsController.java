@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import papapizza.delivery.DeliveryManagement;
+import papapizza.order.ArchivedShopOrder;
 import papapizza.order.ShopOrder;
 import papapizza.order.ShopOrderManagement;
 
@@ -96,17 +97,17 @@ public class AnalyticsController {
 		model.addAttribute("date", LocalDate.of(year, month, day));
 
 		//get COMPLETED ShopOrders
-		List<ShopOrder> completedOrders = analytics.getCompletedOrders(year, month, day);
+		List<ArchivedShopOrder> completedOrders = analytics.getCompletedOrders(year, month, day);
 		model.addAttribute("completedOrders", completedOrders);
 		logger.info("COMPLETE Orders: " + completedOrders.size());
 
 		//get RETURN_ORDERs
-		List<ShopOrder> returnOrders = analytics.getReturnOrders(year, month, day);
+		List<ArchivedShopOrder> returnOrders = analytics.getReturnOrders(year, month, day);
 		model.addAttribute("returnOrders", returnOrders);
 		logger.info("RETURN Orders: " + returnOrders.size());
 
 		//get CANCELLED ShopOrders
-		List<ShopOrder> cancelledOrders = analytics.getCancelledOrders(year, month, day);
+		List<ArchivedShopOrder> cancelledOrders = analytics.getCancelledOrders(year, month, day);
 		model.addAttribute("cancelledOrders", cancelledOrders);
 		logger.info("CANCELLED Orders: " + completedOrders.size());
 
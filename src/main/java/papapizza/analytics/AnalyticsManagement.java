@@ -4,15 +4,19 @@ import org.apache.commons.lang3.ArrayUtils;
 import org.javamoney.moneta.Money;
 import org.math.plot.Plot2DPanel;
 import org.math.plot.plotObjects.BaseLabel;
-import org.salespointframework.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import papapizza.app.aop.GivePapaHead;
+import papapizza.order.ArchivedShopOrder;
 import papapizza.order.DeliveryType;
+import papapizza.order.OrderCancelled;
+import papapizza.order.OrderCompleted;
 import papapizza.order.ShopOrder;
 import papapizza.order.ShopOrderManagement;
 import papapizza.order.ShopOrderState;
@@ -29,8 +33,11 @@ import java.time.*;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -38,13 +45,47 @@ public class AnalyticsManagement {
 	private final Logger logger = LoggerFactory.getLogger(AnalyticsManagement.class);
 	
 	private final ShopOrderManagement<ShopOrder> orderManagement;
+	//pngs of the graphs, served under /img/graph
+	private final Path graphPath;
+
+	//bumped whenever an order is completed or cancelled, graphs drawn for an older version are stale
+	private final AtomicLong ordersVersion = new AtomicLong();
+	//graph file -> date and version it was last drawn for
+	private final Map<String, String> drawnGraphs = new ConcurrentHashMap<>();
 
 	@SuppressWarnings("ResultOfMethodCallIgnored")
 	@Autowired
-	AnalyticsManagement(@NonNull final ShopOrderManagement<ShopOrder> orderManagement) {
+	AnalyticsManagement(@NonNull final ShopOrderManagement<ShopOrder> orderManagement,
+						@Value("${papapizza.data-dir}") String dataDir) {
 		this.orderManagement = orderManagement;
+		this.graphPath = Paths.get(dataDir, "Graph");
 		//create graph & parent folder
-		Paths.get(System.getenv("APPDATA"),"PapaPizza","Graph").toFile().mkdirs();
+		graphPath.toFile().mkdirs();
+	}
+
+	//only committed changes make the graphs stale, a rolled back completion does not
+	@TransactionalEventListener
+	public void on(OrderCompleted event) {
+		ordersVersion.incrementAndGet();
+	}
+
+	@TransactionalEventListener
+	public void on(OrderCancelled event) {
+		ordersVersion.incrementAndGet();
+	}
+
+	/**
+	 * Marks the graph as drawn for the date and the current orders version
+	 * @return false if it is drawn already and nothing changed since
+	 */
+	private boolean needsRedraw(String graph, LocalDateTime date) {
+		String key = date + "@" + ordersVersion.get();
+		File file = graphPath.resolve(graph).toFile();
+		if(key.equals(drawnGraphs.get(graph)) && file.exists()){
+			return false;
+		}
+		drawnGraphs.put(graph, key);
+		return true;
 	}
 
 	/**
@@ -55,13 +96,11 @@ public class AnalyticsManagement {
 	public MonetaryAmount getSalesByTime(LocalDateTime time) {
 		MonetaryAmount result = Money.of(0, "EUR");
 
-		for (ShopOrder order : orderManagement.findBy(ShopOrderState.COMPLETED)) {
-			if (order.getTimeCompleted().isAfter(time)) {
-				if(order.getDeliveryType() == DeliveryType.RETURN_ORDER){
-					result = result.subtract(order.getTotal());
-				}else {
-					result = result.add(order.getTotal());
-				}
+		for (ArchivedShopOrder order : orderManagement.findFinished(ShopOrderState.COMPLETED, time, LocalDateTime.now())) {
+			if(order.getDeliveryType() == DeliveryType.RETURN_ORDER){
+				result = result.subtract(order.getTotal());
+			}else {
+				result = result.add(order.getTotal());
 			}
 		}
 		return result;
@@ -94,44 +133,36 @@ public class AnalyticsManagement {
 			else { maxDay = 365; }
 		} else { return; }
 
-		//data to plot
-		double[] data = new double[maxDay];
+		//unchanged since the last call, the png is still up to date
+		if(!needsRedraw("salesGraph.png", date)){
+			return;
+		}
 
-		//go through week days and calculate daily sales
-		for(int i = 0; i < maxDay; i++) {
-			MonetaryAmount result = Money.of(0, "EUR");
-
-			//Interval of one day (initial should be first day of week)
-			Interval iterationInterval = Interval.from(date).to(date.plusDays(1));
-			logger.info("(generateSalesGraph) Interval: " + iterationInterval);
-
-			//go through every COMPLETED order of Interval and in-/decrement result
-			logger.info(orderManagement.findBy(iterationInterval)
-					.filter(orda -> orda.getShopOrderState().equals(ShopOrderState.COMPLETED))
-					.filter(order -> order.getTimeCompleted().isAfter(iterationInterval.getStart())).toList().toString());
-
-			for(ShopOrder order : orderManagement.findBy(iterationInterval)
-					.filter(orda -> orda.getShopOrderState().equals(ShopOrderState.COMPLETED))
-					.filter(order -> order.getTimeCompleted().isAfter(iterationInterval.getStart())).toList()) {
-				if(order.getDeliveryType() == DeliveryType.RETURN_ORDER){
-					result = result.subtract(order.getTotal());
-				}else {
-					result = result.add(order.getTotal());
-				}
+		//sales per day, orders count for the day they were completed on
+		MonetaryAmount[] sales = new MonetaryAmount[maxDay];
+		Arrays.fill(sales, Money.of(0, "EUR"));
+
+		//one query for the whole time span, archived orders included
+		for(ArchivedShopOrder order : orderManagement.findFinished(ShopOrderState.COMPLETED, date, date.plusDays(maxDay))) {
+			int i = (int) Duration.between(date, order.getTimeCompleted()).toDays();
+			if(order.getDeliveryType() == DeliveryType.RETURN_ORDER){
+				sales[i] = sales[i].subtract(order.getTotal());
+			}else {
+				sales[i] = sales[i].add(order.getTotal());
 			}
-			//increment date
-			date = date.plusDays(1);
-			//put calculated sales figure into data field
-			data[i] = result.getNumber().doubleValueExact();
+		}
 
-			logger.info("(generateSalesGraph) Current Sales Figure: " + result.getNumber().doubleValueExact());
+		//data to plot
+		double[] data = new double[maxDay];
+		for(int i = 0; i < maxDay; i++) {
+			data[i] = sales[i].getNumber().doubleValueExact();
 		}
+		logger.info("(generateSalesGraph) Sales Figures: " + Arrays.toString(data));
 
 		drawSalesGraph(data);
 	}
 
 	private void drawSalesGraph(double[] y) throws Exception {
-		Path papaRoot = Paths.get(System.getenv("APPDATA"),"PapaPizza\\Graph");
 		//creating the panel
 		Plot2DPanel plot = new Plot2DPanel();
 
@@ -159,7 +190,7 @@ public class AnalyticsManagement {
 		//Thread.sleep(500);
 		plot.plotCanvas.paint(g);
 		g.dispose();
-		ImageIO.write(bufferedImage, "PNG", new File(papaRoot + "\\salesGraph.png"));
+		ImageIO.write(bufferedImage, "PNG", graphPath.resolve("salesGraph.png").toFile());
 	}
 
 	/**
@@ -179,8 +210,11 @@ public class AnalyticsManagement {
 
 		LocalDateTime date = LocalDateTime.of(LocalDate.of(year, month, day), LocalTime.MIN);
 
-		List<ShopOrder> orders = orderManagement.findBy(Interval.from(date).to(LocalDateTime.now()))
-				.filter(order -> order.getShopOrderState() == ShopOrderState.COMPLETED).toList();
+		if(!needsRedraw("durationGraph.png", date)){
+			return;
+		}
+
+		List<ArchivedShopOrder> orders = orderManagement.findFinished(ShopOrderState.COMPLETED, date, LocalDateTime.now());
 
 		//4 different Durations -> openDuration, pendingDuration, readyDuration, inDeliverDuration
 		// -> totalDuration will be addressed separately
@@ -188,12 +222,12 @@ public class AnalyticsManagement {
 
 		//list of all duration methods of order
 		//dont change the order of the list elements
-		List<Function<ShopOrder, Duration>> durMethods = List.of(
-				ShopOrder::getOpenDuration,
-				ShopOrder::getPendingDuration,
-				ShopOrder::getReadyDuration,
-				ShopOrder::getInDeliverDuration,
-				ShopOrder::getTotalDuration
+		List<Function<ArchivedShopOrder, Duration>> durMethods = List.of(
+				ArchivedShopOrder::getOpenDuration,
+				ArchivedShopOrder::getPendingDuration,
+				ArchivedShopOrder::getReadyDuration,
+				ArchivedShopOrder::getInDeliverDuration,
+				ArchivedShopOrder::getTotalDuration
 		);
 
 		//calc arithmetic mean for all duration types of order
@@ -202,7 +236,7 @@ public class AnalyticsManagement {
 			long quantity = 0;
 			double sum = 0;
 			//sum up all durations for all non null
-			for(ShopOrder order : orders) {
+			for(ArchivedShopOrder order : orders) {
 				Duration dur = durMethods.get(i).apply(order);
 				if (dur != null) {
 					sum = sum + dur.toMinutes();
@@ -223,7 +257,6 @@ public class AnalyticsManagement {
 	}
 
 	public void drawDurationGraph(double[] y) throws Exception{
-		Path papaRoot = Paths.get(System.getenv("APPDATA"),"PapaPizza\\Graph");
 
 		//creating the panel
 		Plot2DPanel plot = new Plot2DPanel();
@@ -273,7 +306,7 @@ public class AnalyticsManagement {
 		//Thread.sleep(500);
 		plot.plotCanvas.paint(g);
 		g.dispose();
-		ImageIO.write(bufferedImage, "PNG", new File(papaRoot + "\\durationGraph.png"));
+		ImageIO.write(bufferedImage, "PNG", graphPath.resolve("durationGraph.png").toFile());
 	}
 
 	/**
@@ -297,11 +330,9 @@ public class AnalyticsManagement {
 	 * @param day day as a 2-digit number
 	 * @return List of all found orders
 	 */
-	public List<ShopOrder> getCompletedOrders(int year, int month, int day) {
-		return orderManagement.findBy(ShopOrderState.COMPLETED)
-				.filter(shopOrder -> Objects.requireNonNull(shopOrder.getTimeCompleted())
-						.isAfter(LocalDateTime.of(LocalDate.of(year, month, day), LocalTime.MIN)))
-				.filter(shopOrder -> shopOrder.getDeliveryType().equals(DeliveryType.RETURN_ORDER) == false).toList();
+	public List<ArchivedShopOrder> getCompletedOrders(int year, int month, int day) {
+		return findFinishedSince(ShopOrderState.COMPLETED, year, month, day).stream()
+				.filter(shopOrder -> shopOrder.getDeliveryType() != DeliveryType.RETURN_ORDER).collect(Collectors.toList());
 	}
 
 	/**
@@ -311,11 +342,9 @@ public class AnalyticsManagement {
 	 * @param day day as a 2-digit number
 	 * @return List of all found return orders
 	 */
-	public List<ShopOrder> getReturnOrders(int year, int month, int day) {
-		return orderManagement.findBy(ShopOrderState.COMPLETED)
-				.filter(shopOrder -> Objects.requireNonNull(shopOrder.getTimeCompleted())
-						.isAfter(LocalDateTime.of(LocalDate.of(year, month, day), LocalTime.MIN)))
-				.filter(shopOrder -> shopOrder.getDeliveryType().equals(DeliveryType.RETURN_ORDER) == true).toList();
+	public List<ArchivedShopOrder> getReturnOrders(int year, int month, int day) {
+		return findFinishedSince(ShopOrderState.COMPLETED, year, month, day).stream()
+				.filter(shopOrder -> shopOrder.getDeliveryType() == DeliveryType.RETURN_ORDER).collect(Collectors.toList());
 	}
 
 	/**
@@ -325,10 +354,13 @@ public class AnalyticsManagement {
 	 * @param day day as a 2-digit number
 	 * @return List of all found orders
 	 */
-	public List<ShopOrder> getCancelledOrders(int year, int month, int day) {
-		return orderManagement.findBy(ShopOrderState.CANCELLED)
-				.filter(shopOrder -> Objects.requireNonNull(shopOrder.getTimeCompleted())
-						.isAfter(LocalDateTime.of(LocalDate.of(year, month, day), LocalTime.MIN))).toList();
+	public List<ArchivedShopOrder> getCancelledOrders(int year, int month, int day) {
+		return findFinishedSince(ShopOrderState.CANCELLED, year, month, day);
+	}
+
+	private List<ArchivedShopOrder> findFinishedSince(ShopOrderState state, int year, int month, int day) {
+		return orderManagement.findFinished(state, LocalDateTime.of(LocalDate.of(year, month, day), LocalTime.MIN),
+				LocalDateTime.now().plusSeconds(1));
 	}
 
 	/**
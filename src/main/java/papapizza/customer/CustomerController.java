@@ -184,12 +184,8 @@ public class CustomerController {
 			if (orderMgmt.findBy(delCstmr.get()).stream().map(ShopOrder::getShopOrderState).anyMatch(ShopOrderState::isActive)) {
 				attributes.addFlashAttribute("csModifyResult", "delStillActiveOrder");
 			}else { //all orders completed
-				//replace all completed & canceled with DELETE_LINK_CUSTOMER
-				Customer deleteLinkCs = cstmrMgmt.getDeleteLinkCustomer();
-				for (ShopOrder order : orderMgmt.findBy(delCstmr.get())) {
-					order.setCustomer(deleteLinkCs);
-					orderMgmt.save(order);
-				}
+				//replace all completed & canceled with DELETE_LINK_CUSTOMER, archived ones included
+				orderMgmt.relinkCustomer(delCstmr.get(), cstmrMgmt.getDeleteLinkCustomer());
 				//finally delete customer
 				cstmrMgmt.deleteById(id);
 				attributes.addFlashAttribute("csModifyResult", "delSuccess");
@@ -10,8 +10,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import papapizza.app.exc.PapaPizzaRunException;
 import papapizza.employee.Employee;
 import papapizza.inventory.ProductCategory;
@@ -19,7 +22,6 @@ import papapizza.inventory.ShopCatalogManagement;
 import papapizza.inventory.items.DishsetProduct;
 import papapizza.order.*;
 
-import java.io.IOException;
 import java.util.*;
 
 
@@ -36,7 +38,7 @@ public class CustomerManagement {
 	private final LentDishsetRepo setRepo;
 	private ShopOrderManagement<ShopOrder> shopOrderManagement;
 	private ShopCatalogManagement shopCatalogManagement;
-	private InvoiceHandler invoiceHandler;
+	private InvoicePipeline invoicePipeline;
 
 	private final Customer deleteLinkCustomer;
 
@@ -63,8 +65,8 @@ public class CustomerManagement {
 	}
 
 	@Autowired
-	public void setInvoiceHandler(@NonNull InvoiceHandler invoiceHandler){
-		this.invoiceHandler = invoiceHandler;
+	public void setInvoicePipeline(@NonNull InvoicePipeline invoicePipeline){
+		this.invoicePipeline = invoicePipeline;
 	}
 
 	private Customer createDeleteLinkCustomer(){
@@ -139,6 +141,53 @@ public class CustomerManagement {
 		return currentTan;
 	}
 
+	/**
+	 * Lends the dishsets of a completed order to its customer, return orders have none
+	 */
+	@Async
+	@TransactionalEventListener
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	public void on(OrderCompleted event){
+		shopOrderManagement.findByShopOrderId(event.getOrderId())
+				.filter(order -> order.getDeliveryType() != DeliveryType.RETURN_ORDER)
+				.ifPresent(this::addNewDishsets);
+	}
+
+	/**
+	 * Gives the customer of a just applied order a new tan and creates the invoice, which prints it. <br>
+	 * Both in one change of the order, off the request thread.
+	 */
+	@Async
+	@TransactionalEventListener
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void on(OrderApplied event){
+		//invoice filename, no and tans are stored with the order, the cashier might change it meanwhile
+		shopOrderManagement.update(event.getOrderId(), order -> {
+			//the tan is renewed with the first invoice, unless the order was cancelled before
+			if(order.getInvoiceNo() == null && !order.getShopOrderState().isFinal()){
+				renewCustomerTan(order.getCustomer());
+			}
+			invoicePipeline.submit(order);
+			return shopOrderManagement.save(order);
+		});
+	}
+
+	/**
+	 * Gives the customer of a cancelled order the tan back, which was replaced by the order
+	 */
+	@Async
+	@TransactionalEventListener
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void on(OrderCancelled event){
+		//under the order's lock, so it sees whether on(OrderApplied) renewed the tan already
+		shopOrderManagement.update(event.getOrderId(), order -> {
+			if(order.getInvoiceNo() != null){
+				revertOldTan(order.getCustomer());
+			}
+			return order;
+		});
+	}
+
 	/**
 	 * Add a new lent dishset object to a customer
 	 * @param cstmr customer
@@ -213,13 +262,8 @@ public class CustomerManagement {
 		//immediately mark order as completed
 		shopOrderManagement.setShopOrderState(returnOrder, ShopOrderState.COMPLETED);
 
-		try {
-			String filename = invoiceHandler.createInvoice(returnOrder);
-			returnOrder.setInvoiceFilename(filename);
-			shopOrderManagement.save(returnOrder);
-		} catch (IOException e) {
-			logger.error("Could not create pdf file for return order");
-		}
+		//pdf is rendered in the background, filename is set right away
+		invoicePipeline.submit(returnOrder);
 
 		shopOrderManagement.save(returnOrder);
 		return returnOrder;
@@ -27,10 +27,10 @@ import papapizza.order.ShopOrderState;
 
 import javax.money.MonetaryAmount;
 import javax.validation.Valid;
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Delivery Controller class transmit all necessary data about a {@link ShopOrder} to the frontend
@@ -166,13 +166,13 @@ public class DeliveryController {
 	@PostMapping("/delivery/complete/{id}")
 	@PreAuthorize("hasAnyRole('BOSS', 'DRIVER')")		
 	String completeOrder(@PathVariable String id){	//Using the "Fertigstellen" Button to mark a Delivery as Completed
-		Assert.isTrue(shopOrderManagement.findByShopOrderId(id).isPresent(), "ShopOrder does not exist");
-		ShopOrder shopOrder = shopOrderManagement.findByShopOrderId(id).get();
-		shopOrder.setShopOrderState(ShopOrderState.COMPLETED);
-		shopOrder.setTimeCompleted(LocalDateTime.now()); // needed for analytics
-		deliveryManagement.unassignDriver(shopOrder);
-		deliveryManagement.rejoinOrder(shopOrder);
-		shopOrderManagement.save(shopOrder);
+		Optional<ShopOrder> completed = shopOrderManagement.update(id, shopOrder -> {
+			shopOrderManagement.transition(shopOrder, ShopOrderState.COMPLETED); //sets timeCompleted, needed for analytics
+			deliveryManagement.unassignDriver(shopOrder);
+			deliveryManagement.rejoinOrder(shopOrder);
+			return shopOrderManagement.save(shopOrder);
+		});
+		Assert.isTrue(completed.isPresent(), "ShopOrder does not exist");
 		return "redirect:/delivery";
 	}
 
@@ -185,7 +185,11 @@ public class DeliveryController {
 		currentVehicle.setWaitingTime(null);	//TODO: Catch NullPointerException
 		List<ShopOrder> vehicleOrders = deliveryManagement.getOrdersFromVehicle(currentVehicle);
 		for(ShopOrder order : vehicleOrders){
-			shopOrderManagement.setShopOrderState(order, ShopOrderState.INDELIVERY);
+			//one after another, each under the lock of its order
+			shopOrderManagement.update(Objects.requireNonNull(order.getId()).getIdentifier(), o -> {
+				shopOrderManagement.setShopOrderState(o, ShopOrderState.INDELIVERY);
+				return o;
+			});
 		}
 		shopCatalogManagement.save(currentVehicle);
 		return "redirect:/delivery";
@@ -10,8 +10,11 @@ import org.salespointframework.time.BusinessTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import papapizza.employee.Employee;
 import papapizza.employee.EmployeeCreationForm;
 import papapizza.employee.EmployeeManagement;
@@ -19,13 +22,16 @@ import papapizza.inventory.ProductCategory;
 import papapizza.inventory.ShopCatalogManagement;
 import papapizza.inventory.items.VehicleProduct;
 import papapizza.order.DeliveryType;
+import papapizza.order.OrderCompleted;
 import papapizza.order.ShopOrder;
 import papapizza.order.ShopOrderManagement;
 import papapizza.order.ShopOrderState;
+import papapizza.order.TimeEstimateTracker;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.stream.Collectors;
 
 /**
@@ -88,6 +94,8 @@ public class DeliveryManagement {
 	 * specifically a {@link VehicleProduct}
 	 */
 	public ShopCatalogManagement shopCatalogManagement;
+
+	private TimeEstimateTracker timeEstimateTracker;
 	/**
 	 * A Logger to output, mostly debugging-, data into the LOG
 	 */
@@ -96,8 +104,8 @@ public class DeliveryManagement {
 	/**
 	 * A queue of ShopOrders that could not be assigned
 	 * Gets filled with ShopOrders that did not fit any available vehicle
-	 * Periodically checked for free vehicle slots whenever an order is completed
-	 * @see ShopOrderManagement#setShopOrderState(ShopOrder, ShopOrderState)
+	 * Checked for free vehicle slots whenever an order is completed, filled and drained on different threads
+	 * @see DeliveryManagement#on(OrderCompleted)
 	 */
 	@Getter
 	private final Queue<ShopOrder> noVehicleAssignedOrders;
@@ -138,10 +146,44 @@ public class DeliveryManagement {
 
 		this.businessTime = businessTime;
 		this.shopOrderManagement = shopOrderManagement;
-		this.noVehicleAssignedOrders = new ArrayDeque<>();
+		this.noVehicleAssignedOrders = new ConcurrentLinkedQueue<>();
 
 	}
 
+	/**
+	 * A completed order might have freed a vehicle, so queued orders are assigned again. <br>
+	 * Orders that still do not fit are queued again by {@link DeliveryManagement#assignDriver(ShopOrder)},
+	 * every order is assigned in its own change, one that fails is queued again as well
+	 * @param event the completed order
+	 */
+	@Async
+	@TransactionalEventListener
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void on(OrderCompleted event){
+		//only the orders queued right now, re-queued ones wait for the next completion
+		for(int i = noVehicleAssignedOrders.size(); i > 0; i--){
+			ShopOrder queued = noVehicleAssignedOrders.poll();
+			if(queued == null){
+				break;
+			}
+			String orderId = Objects.requireNonNull(queued.getId()).getIdentifier();
+			try {
+				//queued instance belongs to an old transaction
+				shopOrderManagement.update(orderId, order -> order.getShopOrderState().isFinal() ? null : assignDriver(order));
+			} catch (RuntimeException e) {
+				logger.warn("order " + orderId + " could not be assigned again, waits for the next completion: " + e.getMessage());
+				requeue(queued);
+			}
+		}
+	}
+
+	//a failed try might have queued the order already
+	private void requeue(ShopOrder order){
+		if(noVehicleAssignedOrders.stream().noneMatch(queued -> Objects.equals(queued.getId(), order.getId()))){
+			noVehicleAssignedOrders.add(order);
+		}
+	}
+
 	/**
 	 * Method separat from Constructor to avoid a bean cycle
 	 * @param employeeManagement is needed to assign Drivers, Employees,
@@ -160,6 +202,11 @@ public class DeliveryManagement {
 		this.shopCatalogManagement = shopCatalogManagement;
 	}
 
+	@Autowired
+	public void setTimeEstimateTracker(@NonNull TimeEstimateTracker timeEstimateTracker){
+		this.timeEstimateTracker = timeEstimateTracker;
+	}
+
 	/**
 	 * Splits Orders into two smaller ShopOrders to, needed to deliver ShopOrder that don't fit into any single available Vehicle
 	 * @param parent The order that is meant to be split
@@ -257,8 +304,8 @@ public class DeliveryManagement {
 		assert shopOrderManagement.findByShopOrderId(id).isPresent();
 		ShopOrder parentOrder = shopOrderManagement.findByShopOrderId(id).get();
 		boolean allCompleted = true;
-		for (ShopOrder order : shopOrderManagement.findAll()){
-			if(order.getParentId() != null && order.getParentId().equals(shopOrder.getParentId())){
+		if(shopOrder.getParentId() != null){
+			for (ShopOrder order : shopOrderManagement.findByParentId(shopOrder.getParentId()).collect(Collectors.toList())){
 				splitOrders.add(order);
 				if(!order.getShopOrderState().equals(ShopOrderState.COMPLETED)){
 					allCompleted = false;
@@ -290,6 +337,7 @@ public class DeliveryManagement {
 		Employee assignedDriver = shopOrder.getDriver();
 		long orderSize = getOrderSize(shopOrder);
 		assignedDriver.getVehicle().setUsedSlots((int) (assignedDriver.getVehicle().getUsedSlots() - orderSize));
+		timeEstimateTracker.vehicleReleased(Objects.requireNonNull(shopOrder.getId()).getIdentifier());
 	}
 
 	/**
@@ -331,7 +379,9 @@ public class DeliveryManagement {
 	public ShopOrder cloneOrder(ShopOrder cloneFrom){
 		ShopOrder cloneInto = new ShopOrder(employeeManagement.getDummyAccount(), cloneFrom.getCustomer());
 		cloneInto.setChefs(cloneFrom.getChefs());
-		shopOrderManagement.setShopOrderState(cloneInto, cloneFrom.getShopOrderState());
+		//a split part is no transition, it continues where the original is
+		cloneInto.setShopOrderState(cloneFrom.getShopOrderState());
+		cloneInto.setStateSince(cloneFrom.getStateSince());
 		cloneInto.setOpenDuration(cloneFrom.getOpenDuration());
 		cloneInto.setPendingDuration(cloneFrom.getPendingDuration());
 		cloneInto.setReadyDuration(cloneFrom.getReadyDuration());
@@ -383,7 +433,7 @@ public class DeliveryManagement {
 		List<VehicleProduct> vehicleList = orderAssign.equals(deliveryStrategy.CAPACITY) ? getEfficientVehicles() : getFastVehicles();
 		int allAvailableVehicleSlots = vehicleList.stream().map(VehicleProduct::getSlots).reduce(0, Integer::sum);
 		if(getOrderSize(shopOrder) > allAssignedVehicleSlots || vehicleList.isEmpty()){
-			noVehicleAssignedOrders.add(shopOrder); return null;
+			requeue(shopOrder); return null;
 		}
 
 		int maxCapVehicleSlots = vehicleList.stream().map(v -> v.getSlots() - v.getUsedSlots()).max(Integer::compareTo).get();
@@ -401,6 +451,7 @@ public class DeliveryManagement {
 					shopOrder.setDriver(assignedEmployee);
 					shopOrderManagement.save(shopOrder);
 					shopCatalogManagement.save(vehicle);
+					timeEstimateTracker.vehicleAssigned(shopOrder, vehicle.getId());
 					return assignedEmployee;
 				}
 			}
@@ -473,17 +524,14 @@ public class DeliveryManagement {
 
 	public void deleteParents(){
 		List<ShopOrder> deleteOrders = new ArrayList<>();
-		for(ShopOrder shopOrder : shopOrderManagement.findAll()){
-			if(shopOrder.getParentId() != null){
-				Optional<ShopOrder> parentOrder = shopOrderManagement.findByShopOrderId(shopOrder.getParentId());
-				if(parentOrder.isPresent()){
-					if(parentOrder.get().getParentId() != null){
-						shopOrderManagement.findAll().stream().filter(filterShopOrder -> (filterShopOrder.getParentId() != null) && filterShopOrder.getParentId()
-								.equals(Objects.requireNonNull(parentOrder.get().getId()).getIdentifier()))
-								.forEach(o -> o.setParentId(parentOrder.get().getParentId()));
-					}
-					deleteOrders.add(parentOrder.get());
+		for(ShopOrder shopOrder : shopOrderManagement.findSplitOrders()){
+			Optional<ShopOrder> parentOrder = shopOrderManagement.findByShopOrderId(shopOrder.getParentId());
+			if(parentOrder.isPresent()){
+				if(parentOrder.get().getParentId() != null){
+					shopOrderManagement.findByParentId(Objects.requireNonNull(parentOrder.get().getId()).getIdentifier())
+							.forEach(o -> o.setParentId(parentOrder.get().getParentId()));
 				}
+				deleteOrders.add(parentOrder.get());
 			}
 		}
 		for(ShopOrder shopOrder : deleteOrders){
@@ -633,12 +681,7 @@ public class DeliveryManagement {
 	 */
 
 	public List<ShopOrder> getOrdersFromVehicle(@NonNull VehicleProduct vehicle){
-		return shopOrderManagement.findAll().stream()
-				.filter(o -> o.getDriver() != null &&
-						o.getDriver().getVehicle() != null &&
-						Objects.equals(o.getDriver().getVehicle().getId(), vehicle.getId()))
-				.sorted(Comparator.comparing(ShopOrder::getTimeCreated))
-				.collect(Collectors.toList());
+		return shopOrderManagement.findBy(vehicle);
 	}
 
 	/**
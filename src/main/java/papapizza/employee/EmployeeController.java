@@ -15,6 +15,7 @@ import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import papapizza.inventory.ShopCatalogManagement;
 import papapizza.inventory.items.OvenProduct;
+import papapizza.kitchen.KitchenManagement;
 
 import javax.validation.Valid;
 import java.util.ArrayList;
@@ -27,11 +28,14 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 public class EmployeeController {
 	private final EmployeeManagement emplManagement;
 	private final ShopCatalogManagement catalogMgmt;
+	private final KitchenManagement kitchenManagement;
 
 	@Autowired
-	EmployeeController(EmployeeManagement emplManagement, ShopCatalogManagement catalogMgmt) {
+	EmployeeController(EmployeeManagement emplManagement, ShopCatalogManagement catalogMgmt,
+					   KitchenManagement kitchenManagement) {
 		this.emplManagement = emplManagement;
 		this.catalogMgmt = catalogMgmt;
+		this.kitchenManagement = kitchenManagement;
 	}
 
 	@GetMapping("/gotoManagement")
@@ -277,7 +281,7 @@ public class EmployeeController {
 		Optional<OvenProduct> oldOven = emplManagement.getMyOven(empl.get());
 
 		//check if old oven is in use
-		if (oldOven.isPresent() && !oldOven.get().getPizzas().isEmpty()) {
+		if (oldOven.isPresent() && kitchenManagement.isInUse(oldOven.get())) {
 			attributes.addFlashAttribute("editRedirect", "unassignOvenInUse");
 			return "redirect:/emplMgmt/edit/" + id;
 		}
@@ -253,12 +253,12 @@ public class EmployeeManagement {
 			throw new PapaPizzaRunException("Meta employee is immutable");
 		}
 
-		//Find all orders by this employee and unlink
-		List<ShopOrder> employeesOrders = shopOrderManagement.findBy(employee.get()).collect(Collectors.toList());
 		//drivers and chefs involved in PENDING or INDELIVERY orders may not be removed
-		if (employeesOrders.stream().anyMatch(order -> order.getShopOrderState().isActive())) {
+		if (shopOrderManagement.hasActiveOrders(employee.get())) {
 			return false;
 		}
+		//Find all orders by this employee and unlink
+		List<ShopOrder> employeesOrders = shopOrderManagement.findBy(employee.get()).collect(Collectors.toList());
 		//free up oven
 		if (employee.get().getRole().equals("Chef")
 				&& getMyOven(employee.get()).isPresent()) {
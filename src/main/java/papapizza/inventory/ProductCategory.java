@@ -6,5 +6,5 @@ package papapizza.inventory;
 
 public enum ProductCategory {
 	//XXX use enums instead of strings, affects: a lot lol, but not that hard to fix
-	TOPPING, CUSTOM_PIZZA, KITCHEN_PIZZA, OVEN, DISHSET, CONSUMABLE, PIZZA, DRINK, VEHICLE, DELETED
+	TOPPING, CUSTOM_PIZZA, OVEN, DISHSET, CONSUMABLE, PIZZA, DRINK, VEHICLE, DELETED
 }
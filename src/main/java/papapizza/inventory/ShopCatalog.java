@@ -2,9 +2,15 @@ package papapizza.inventory;
 
 import org.salespointframework.catalog.Catalog;
 import org.salespointframework.catalog.Product;
+import org.salespointframework.catalog.ProductIdentifier;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 /**
  * Repository to store products for Inventory
  */
@@ -13,5 +19,9 @@ public interface ShopCatalog extends Catalog<Product> {
 
 	Sort DEFAULT_SORT = Sort.by("productIdentifier").descending();
 
+	//pizzas stored before the creation time was added count as old
+	@Query("select p.productIdentifier from PizzaProduct p where :category member of p.categories"
+			+ " and (p.timeCreated < :before or p.timeCreated is null)")
+	List<ProductIdentifier> findPizzasCreatedBefore(@Param("category") String category, @Param("before") LocalDateTime before);
 
 }
@@ -82,7 +82,7 @@ public class ShopCatalogInitializer implements DataInitializer {
 		oven2.setChef(chefs.get(1));
 		shopCatalogManagement.save(oven2);
 
-		OvenProduct oven3 = shopCatalogManagement.createOvenProduct("Miele Twinset Comfort oven","1700");
+		OvenProduct oven3 = shopCatalogManagement.createOvenProduct("Miele Twinset Comfort oven","1700","2");
 		oven3.setChef(chefs.get(2));
 		shopCatalogManagement.save(oven3);
 
@@ -16,8 +16,10 @@ import papapizza.employee.Employee;
 import papapizza.employee.EmployeeManagement;
 import papapizza.inventory.creationForms.*;
 import papapizza.inventory.items.*;
+import papapizza.kitchen.KitchenTicketRepository;
 
 import javax.money.MonetaryAmount;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -43,6 +45,7 @@ public class ShopCatalogManagement {
 	private static final int CUSTOM_PIZZA_BASE_PRICE = 6;
 
 	private EmployeeManagement employeeManagement;
+	private KitchenTicketRepository kitchenTicketRepository;
 
 	@Autowired
 	public ShopCatalogManagement(@NonNull ShopCatalog shopCatalog) {
@@ -54,6 +57,11 @@ public class ShopCatalogManagement {
 		this.employeeManagement = employeeManagement;
 	}
 
+	@Autowired
+	public void setKitchenTicketRepository(KitchenTicketRepository kitchenTicketRepository) {
+		this.kitchenTicketRepository = kitchenTicketRepository;
+	}
+
 	//
 	//create Methods
 	//
@@ -69,6 +77,20 @@ public class ShopCatalogManagement {
 		return shopCatalog.save(new OvenProduct(name, Money.of(Float.valueOf(price), "EUR")));
 	}
 
+	/**
+	 * Method for creating an {@link OvenProduct} baking several pizzas at once
+	 *
+	 * @param price price that the oven was bought for / is still worth
+	 * @param name  name of the oven (e.g. model...)
+	 * @param slots amount of pizzas, that fit into the oven at the same time
+	 * @return OvenProduct
+	 */
+	public OvenProduct createOvenProduct(String name, String price, String slots) {
+		OvenProduct oven = new OvenProduct(name, Money.of(Float.valueOf(price), "EUR"));
+		oven.setSlots(Integer.parseInt(slots));
+		return shopCatalog.save(oven);
+	}
+
 	/**
 	 * Method for creating a {@link ConsumableProduct}
 	 *
@@ -141,6 +163,17 @@ public class ShopCatalogManagement {
 	 */
 	//when creating a new pizza in order, that also gets saved in the orderrepo....
 	public PizzaProduct createPizzaProduct(List<ToppingProduct> toppings) {
+		return shopCatalog.save(newCustomPizza(toppings));
+	}
+
+	/**
+	 * Same as {@link #createPizzaProduct(List)} but without saving the custom pizza,
+	 * e.g. for orders that are not applied yet
+	 *
+	 * @param toppings toppings, that will be on the custom pizza
+	 * @return PizzaProduct, not in the {@link ShopCatalog}
+	 */
+	public PizzaProduct newCustomPizza(List<ToppingProduct> toppings) {
 		MonetaryAmount price = Money.of(CUSTOM_PIZZA_BASE_PRICE, "EUR");//base price for every Pizza
 		for (ToppingProduct topping : toppings) {
 			price = price.add(topping.getPrice());
@@ -153,24 +186,7 @@ public class ShopCatalogManagement {
 		customPizza.removeCategory(ProductCategory.PIZZA.toString());
 		//maybe check how many CustomPizzas there are Name them after the count to have a unique name (if there are
 		// errors with doubling names)
-		return shopCatalog.save(customPizza);
-	}
-
-	/**
-	 * Method to clone a {@link PizzaProduct}:
-	 * {@link PizzaProduct}s need to be cloned for the {@link papapizza.kitchen.KitchenManagement},
-	 * in order to have an instance of each pizza.
-	 * when cloning the {@link ProductCategory} changes form "Pizza" to "KitchenPizza"
-	 *
-	 * @param toClone PizzaProduct, that gets cloned
-	 * @return PizzaProduct
-	 */
-	public PizzaProduct createKitchenCopyPizzaProduct(PizzaProduct toClone) {
-		PizzaProduct clone = new PizzaProduct(toClone.getName(), toClone.getPrice());
-		clone.setToppings(new ArrayList<>(toClone.getToppings()));
-		clone.addCategory(ProductCategory.KITCHEN_PIZZA.name());
-		clone.removeCategory(ProductCategory.PIZZA.name());
-		return clone;
+		return customPizza;
 	}
 
 	/**
@@ -292,7 +308,8 @@ public class ShopCatalogManagement {
 	public boolean compareOven(OvenProduct product, OvenProductCreationForm form) {
 		return product.getName().equals(form.getName()) &&
 			   product.getPrice().isEqualTo(
-					   Money.of(Float.valueOf(PriceCommaToDot(form.getPrice())), "EUR"));
+					   Money.of(Float.valueOf(PriceCommaToDot(form.getPrice())), "EUR")) &&
+			   String.valueOf(product.getSlots()).equals(form.getSlots());
 
 	}
 
@@ -430,6 +447,16 @@ public class ShopCatalogManagement {
 	//delete methods
 	//
 
+	/**
+	 * Method to find the custom pizzas created before the given time, only their ids are loaded
+	 *
+	 * @param before custom pizzas created before
+	 * @return ids of the custom pizzas
+	 */
+	public List<ProductIdentifier> findCustomPizzasCreatedBefore(LocalDateTime before) {
+		return shopCatalog.findPizzasCreatedBefore(ProductCategory.CUSTOM_PIZZA.toString(), before);
+	}
+
 	/**
 	 * Deletes a {@link Product} out of the inventory entirely by removing it from the {@link ShopCatalog}
 	 *
@@ -465,7 +492,7 @@ public class ShopCatalogManagement {
 		}
 		if (toDeleteProduct.getCategories().toList().contains(ProductCategory.OVEN.name())) {
 			//oven is empty
-			if (((OvenProduct) toDeleteProduct).getPizzas().isEmpty()) {
+			if (!kitchenTicketRepository.existsByOvenId(id.getIdentifier())) {
 				//unlink chef
 				((OvenProduct) toDeleteProduct).setChef(null);
 			} else { //pizzas still assigned to oven
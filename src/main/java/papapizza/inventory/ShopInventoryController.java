@@ -169,7 +169,13 @@ public class ShopInventoryController {
 			return "inventory/addOven";
 		}
 
-		OvenProduct oven = catalogManagement.createOvenProduct(form.getName(), form.getPrice());
+		if (!form.getSlots().matches("[1-9][0-9]*")){
+			result.rejectValue("slots","ShopInventoryProductCreationForm.wrongPattern.slots",
+					"slots have to be a whole number greater than zero");
+			return "inventory/addOven";
+		}
+
+		OvenProduct oven = catalogManagement.createOvenProduct(form.getName(), form.getPrice(), form.getSlots());
 		attributes.addFlashAttribute("InventoryActionResult","newSuccess");
 		attributes.addFlashAttribute("ProductNameResult", oven.getName());
 		return "redirect:/inventory";
@@ -852,6 +858,12 @@ public class ShopInventoryController {
 				return "inventory/editOven";
 			}
 
+			if (!form.getSlots().matches("[1-9][0-9]*")){
+				result.rejectValue("slots","ShopInventoryProductCreationForm.wrongPattern.slots",
+						"slots have to be a whole number greater than zero");
+				return "inventory/editOven";
+			}
+
 			//checking if the edit changed anything
 			if (catalogManagement.compareOven(oven, form)) {
 				ActionResult = "editUnchanged";
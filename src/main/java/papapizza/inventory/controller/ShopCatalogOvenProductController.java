@@ -71,7 +71,7 @@ public class ShopCatalogOvenProductController {
 
 		//validation of the form
 		List<InventoryRejectField> resultFieldList = new ArrayList<>();
-		resultFieldList.addAll(inventoryValidator.formValidator(form.getName(), form.getPrice()));
+		resultFieldList.addAll(inventoryValidator.formValidator(form.getName(), form.getPrice(), form.getSlots()));
 
 		// adding rejectValues if form is invalid
 		if (resultFieldList.size() > 0) {
@@ -84,7 +84,7 @@ public class ShopCatalogOvenProductController {
 		}
 
 		//actual creation of the product
-		OvenProduct oven = catalogManagement.createOvenProduct(form.getName(), form.getPrice());
+		OvenProduct oven = catalogManagement.createOvenProduct(form.getName(), form.getPrice(), form.getSlots());
 
 		//flash attributes for displaying creation of product
 		attributes.addFlashAttribute("InventoryActionResult", "newSuccess");
@@ -140,7 +140,7 @@ public class ShopCatalogOvenProductController {
 
 			//validation of the form
 			List<InventoryRejectField> resultFieldList = new ArrayList<>();
-			resultFieldList.addAll(inventoryValidator.formValidator(form.getName(), form.getPrice(), id));
+			resultFieldList.addAll(inventoryValidator.formValidator(form.getName(), form.getPrice(), form.getSlots(), id));
 
 			// adding rejectValues if form is invalid
 			if (resultFieldList.size() > 0) {
@@ -23,9 +23,7 @@ public class OvenProductCreationForm {
 	private String name;
 	@NotBlank(message = "{ShopInventoryProductCreationForm.notEmpty.price}")
 	private String price;
-
-
-
+	private String slots = "1"; //optional, one pizza at a time if missing
 
 	public OvenProductCreationForm(String name, String price){
 		this.name = name;
@@ -41,7 +39,7 @@ public class OvenProductCreationForm {
 		product.setName(form.name);
 		String price = form.price.replaceAll(",","."); //for parsing to float
 		product.setPrice(Money.of(Float.parseFloat(price), "EUR"));
-
+		product.setSlots(Integer.parseInt(form.slots));
 	}
 	/**
 	 * Method to get the data from the product into the form in order to display them in frontend
@@ -52,6 +50,7 @@ public class OvenProductCreationForm {
 		form.setName(product.getName());
 		DecimalFormat df = new DecimalFormat("#.##");
 		form.setPrice(df.format(product.getPrice().getNumber()));
+		form.setSlots(Integer.toString(product.getSlots()));
 	}
 
 }
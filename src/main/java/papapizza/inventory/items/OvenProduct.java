@@ -8,13 +8,12 @@ import papapizza.inventory.ProductCategory;
 
 import javax.money.MonetaryAmount;
 import javax.persistence.Entity;
-import javax.persistence.ManyToMany;
 import javax.persistence.OneToOne;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
- * {@link Product}, that is meant to store {@link PizzaProduct} and has a name and a price to display it's worth
+ * {@link Product}, that pizzas are baked in and has a name and a price to display it's worth. <br>
+ * It has a number of slots, as many pizzas are baked at the same time.
+ * The pizzas queued in an oven are kept as {@link papapizza.kitchen.KitchenTicket}s.
  */
 
 @Entity
@@ -24,11 +23,7 @@ public class OvenProduct extends Product {
 	private Employee chef;
 
 	@Getter @Setter
-	@ManyToMany
-	private List<PizzaProduct> pizzas = new ArrayList<>();
-
-	@Getter @Setter
-	private long inOvenTimestamp; //secs
+	private int slots = 1; //pizzas baked at once
 
 	public OvenProduct(){}
 
@@ -38,19 +33,4 @@ public class OvenProduct extends Product {
 
 	}
 
-	public boolean isEmpty(){
-		return pizzas.isEmpty() || pizzas.get(0).getState() == PizzaState.OPEN;
-	}
-
-	public PizzaProduct getCurrentlyBakingPizza(){
-		if(isEmpty()){
-			return null;
-		}
-		return pizzas.get(0);
-	}
-
-	public long getInOvenSince(){
-		return System.currentTimeMillis()/1000-inOvenTimestamp;
-	}
-
 }
@@ -4,14 +4,14 @@ import lombok.Getter;
 import lombok.Setter;
 import org.salespointframework.catalog.Product;
 import papapizza.inventory.ProductCategory;
-import papapizza.order.ShopOrder;
 
 import javax.money.MonetaryAmount;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.ManyToMany;
-import javax.persistence.ManyToOne;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * {@link Product} to create Pizzas containing {@link ToppingProduct}s.
@@ -25,21 +25,17 @@ public class PizzaProduct extends Product {
 	@ManyToMany
 	private List<ToppingProduct> toppings;
 
+	@Column
 	@Getter
 	@Setter
-	private PizzaState state;
-
-	@Getter
-	@Setter
-	@ManyToOne
-	private ShopOrder order;
-
+	private LocalDateTime timeCreated; //custom pizzas no order refers to are removed after a while, see ShopOrderJanitor
 
 	public PizzaProduct(){}
 
 	public PizzaProduct(String name, MonetaryAmount price) {
 		super(name, price);
 		addCategory(ProductCategory.PIZZA.toString());
+		timeCreated = LocalDateTime.now();
 	}
 
 	@Override
@@ -58,22 +54,13 @@ public class PizzaProduct extends Product {
 
 		PizzaProduct that = (PizzaProduct) o;
 
-		if (!toppings.equals(that.toppings)){
-			return false;
-		}
-		if (state != that.state){
-			return false;
-		}
-
-		return order.equals(that.order);
+		return Objects.equals(toppings, that.toppings);
 	}
 
 	@Override
 	public int hashCode() {
 		int result = super.hashCode();
-		result = 31 * result + toppings.hashCode();
-		result = 31 * result + state.hashCode();
-		result = 31 * result + order.hashCode();
+		result = 31 * result + Objects.hashCode(toppings);
 		return result;
 	}
 }
@@ -1,7 +1,7 @@
 package papapizza.inventory.items;
 
 /**
- * States that an {@link PizzaProduct} can have in {@link papapizza.kitchen.KitchenManagement}.
+ * States that a {@link papapizza.kitchen.KitchenTicket} can have in {@link papapizza.kitchen.KitchenManagement}.
  */
 public enum PizzaState {
 	OPEN,
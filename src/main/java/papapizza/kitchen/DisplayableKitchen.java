@@ -3,20 +3,23 @@ package papapizza.kitchen;
 
 import lombok.Getter;
 import lombok.Setter;
-import org.salespointframework.catalog.ProductIdentifier;
 import org.salespointframework.order.OrderLine;
 import papapizza.inventory.items.OvenProduct;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 @Setter
 @Getter
 public class DisplayableKitchen {
 	private List<OrderLine> orderLinesOther;
-	private Map<ProductIdentifier, Integer> times;
+	private Map<String, Integer> times; //secs left per baking ticket
 	private OvenProduct oven;
+	private List<KitchenTicket> tickets;
+	private Set<String> readyToBake; //tickets that fit into a free slot
+	private Map<String, String> toppingNames; //topping id -> name
 	private boolean empty = false;
 
 	public boolean isEmpty(){
@@ -3,7 +3,6 @@ package papapizza.kitchen;
 
 import lombok.NonNull;
 import org.salespointframework.catalog.Product;
-import org.salespointframework.catalog.ProductIdentifier;
 import org.salespointframework.useraccount.UserAccount;
 import org.salespointframework.useraccount.web.LoggedIn;
 import org.slf4j.Logger;
@@ -21,6 +20,8 @@ import papapizza.inventory.ProductCategory;
 import papapizza.inventory.ShopCatalogManagement;
 import papapizza.inventory.items.OvenProduct;
 import papapizza.inventory.items.PizzaState;
+import papapizza.order.ShopOrder;
+import papapizza.order.ShopOrderManagement;
 
 import java.util.*;
 
@@ -33,13 +34,22 @@ public class KitchenController {
 	private final EmployeeManagement employeeManagement;
 	private final ShopCatalogManagement shopCatalogManagement;
 	private final KitchenManagement kitchenManagement;
+	private final ShopOrderManagement<ShopOrder> shopOrderManagement;
 
 	KitchenController(@NonNull EmployeeManagement employeeManagement,
 					  @NonNull ShopCatalogManagement shopCatalogManagement,
-					  @NonNull KitchenManagement kitchenManagement) {
+					  @NonNull KitchenManagement kitchenManagement,
+					  @NonNull ShopOrderManagement<ShopOrder> shopOrderManagement) {
 		this.employeeManagement = employeeManagement;
 		this.shopCatalogManagement = shopCatalogManagement;
 		this.kitchenManagement = kitchenManagement;
+		this.shopOrderManagement = shopOrderManagement;
+	}
+
+	//the order of the pizza changes as well, done under its lock in case the cashier cancels meanwhile
+	private void changePizzaState(String ticketId, PizzaState changeTo) {
+		kitchenManagement.findOrderIdOfTicket(ticketId).ifPresent(orderId ->
+				shopOrderManagement.update(orderId, order -> kitchenManagement.changePizzaState(ticketId, changeTo)));
 	}
 
 
@@ -81,30 +91,39 @@ public class KitchenController {
 
 			//assign DisplayableKitchen props
 			displayKitchen.setOven(oven);
-			Map<ProductIdentifier, Integer> times = new HashMap<>();
-			oven.getPizzas().forEach(pizzaProduct -> {
-				if (pizzaProduct.getState() == PizzaState.PENDING) {
-					times.put(pizzaProduct.getId(), kitchenManagement.getTimeLeft(pizzaProduct));
+			List<KitchenTicket> tickets = kitchenManagement.getQueue(oven);
+			displayKitchen.setTickets(tickets);
+			displayKitchen.setReadyToBake(kitchenManagement.getReadyToBake(oven, tickets));
+			Map<String, Integer> times = new HashMap<>();
+			tickets.forEach(ticket -> {
+				if (ticket.isBaking()) {
+					times.put(ticket.getId(), kitchenManagement.getTimeLeft(ticket));
 				}
 			});
 			displayKitchen.setTimes(times);
+			//tickets only keep the ids of their toppings, which may have been deleted meanwhile
+			Map<String, String> toppingNames = new HashMap<>();
+			shopCatalogManagement.findByCategory(ProductCategory.TOPPING.toString())
+					.and(shopCatalogManagement.findByCategory(ProductCategory.DELETED.toString()))
+					.forEach(topping -> toppingNames.put(Objects.requireNonNull(topping.getId()).getIdentifier(), topping.getName()));
+			displayKitchen.setToppingNames(toppingNames);
 		}
 		return displayKitchen;
 	}
 
 
-	@PostMapping("/kitchen/bake/{prodId}")
+	@PostMapping("/kitchen/bake/{ticketId}")
 	@PreAuthorize("hasAnyRole('BOSS','CHEF')")
-	String startBaking(Model model, @PathVariable final ProductIdentifier prodId, RedirectAttributes attributes){
-		kitchenManagement.changePizzaState(prodId, PizzaState.PENDING);
+	String startBaking(Model model, @PathVariable final String ticketId, RedirectAttributes attributes){
+		changePizzaState(ticketId, PizzaState.PENDING);
 		return "redirect:/kitchen";
 	}
 
 
-	@PostMapping("/kitchen/finish/{prodId}")
+	@PostMapping("/kitchen/finish/{ticketId}")
 	@PreAuthorize("hasAnyRole('BOSS','CHEF')")
-	String finishBaking(Model model, @PathVariable final ProductIdentifier prodId, RedirectAttributes attributes) {
-		kitchenManagement.changePizzaState(prodId, PizzaState.READY);
+	String finishBaking(Model model, @PathVariable final String ticketId, RedirectAttributes attributes) {
+		changePizzaState(ticketId, PizzaState.READY);
 		return "redirect:/kitchen";
 	}
 
@@ -3,13 +3,18 @@ package papapizza.kitchen;
 
 import lombok.NonNull;
 import org.salespointframework.catalog.Product;
-import org.salespointframework.catalog.ProductIdentifier;
 import org.salespointframework.order.OrderLine;
 import org.salespointframework.time.BusinessTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import papapizza.app.exc.PapaPizzaRunException;
 import papapizza.delivery.DeliveryManagement;
 import papapizza.employee.EmployeeManagement;
@@ -18,19 +23,15 @@ import papapizza.inventory.ShopCatalogManagement;
 import papapizza.inventory.items.OvenProduct;
 import papapizza.inventory.items.PizzaProduct;
 import papapizza.inventory.items.PizzaState;
+import papapizza.order.OrderCancelled;
 import papapizza.order.ShopOrder;
 import papapizza.order.ShopOrderManagement;
 import papapizza.order.ShopOrderState;
+import papapizza.order.TimeEstimateTracker;
 
 import java.time.Duration;
-import java.time.ZoneId;
-import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 @Service
 @Transactional
@@ -38,32 +39,88 @@ public class KitchenManagement {
 
 	private final Logger logger = LoggerFactory.getLogger(KitchenManagement.class);
 
-	private static final int MAX_BAKING_TIME = 300; //in sec
+	public static final int MAX_BAKING_TIME = 300; //in sec
 
 	public final BusinessTime businessTime;
 	public final ShopOrderManagement<ShopOrder> shopOrderManagement;
 	public final EmployeeManagement employeeManagement;
 	public final ShopCatalogManagement shopCatalogManagement;
 	public final DeliveryManagement deliveryManagement;
+	private ApplicationEventPublisher events;
+	private TimeEstimateTracker timeEstimateTracker;
+	private final KitchenTicketRepository ticketRepository;
+	private final PizzaBatches batches;
+
+	private static final List<PizzaState> QUEUED_STATES = List.of(PizzaState.OPEN, PizzaState.PENDING);
 
 	KitchenManagement(BusinessTime businessTime, ShopOrderManagement<ShopOrder> shopOrderManagement,
 					  EmployeeManagement employeeManagement, ShopCatalogManagement shopCatalogManagement,
-					  DeliveryManagement deliveryManagement) {
+					  DeliveryManagement deliveryManagement, KitchenTicketRepository ticketRepository,
+					  @Value("${papapizza.kitchen.batch-window:PT0S}") Duration batchWindow) {
 		this.businessTime = businessTime;
 		this.shopOrderManagement = shopOrderManagement;
 		this.employeeManagement = employeeManagement;
 		this.shopCatalogManagement = shopCatalogManagement;
 		this.deliveryManagement = deliveryManagement;
+		this.ticketRepository = ticketRepository;
+		this.batches = new PizzaBatches(batchWindow);
+	}
+
+	@Autowired
+	public void setEventPublisher(@NonNull ApplicationEventPublisher events) {
+		this.events = events;
 	}
 
-	public int getTimeLeft(PizzaProduct pizzaProduct) {
-		if(pizzaProduct.getState() != PizzaState.PENDING){
+	@Autowired
+	public void setTimeEstimateTracker(@NonNull TimeEstimateTracker timeEstimateTracker) {
+		this.timeEstimateTracker = timeEstimateTracker;
+	}
+
+	/**
+	 * @param ticket pizza in an oven
+	 * @return secs left until the pizza has to be taken out, {@link Integer#MAX_VALUE} if it is not baking
+	 */
+	public int getTimeLeft(KitchenTicket ticket) {
+		if(!ticket.isBaking()){
 			return Integer.MAX_VALUE;
 		}
-		OvenProduct oven = getPizzaOven(pizzaProduct);
-		return MAX_BAKING_TIME-(int)oven.getInOvenSince();
+		return MAX_BAKING_TIME-(int)ticket.getInOvenSince(now());
 	}
 
+	/**
+	 * @param oven to look at
+	 * @return tickets queued in the oven, the baking one first
+	 */
+	public List<KitchenTicket> getQueue(@NonNull OvenProduct oven) {
+		return ticketRepository.findByOvenIdOrderByQueuedAtAscQueuePositionAsc(Objects.requireNonNull(oven.getId()).getIdentifier());
+	}
+
+	/**
+	 * @param oven the queue belongs to
+	 * @param queue tickets of the oven, see {@link #getQueue(OvenProduct)}
+	 * @return ids of the waiting tickets that fit into the free slots of the oven right now, first come first
+	 */
+	public Set<String> getReadyToBake(@NonNull OvenProduct oven, @NonNull List<KitchenTicket> queue) {
+		long free = oven.getSlots() - queue.stream().filter(KitchenTicket::isBaking).count();
+		return queue.stream().filter(ticket -> ticket.getState() == PizzaState.OPEN)
+				.limit(Math.max(0, free))
+				.map(KitchenTicket::getId).collect(Collectors.toSet());
+	}
+
+	/**
+	 * @param oven to check
+	 * @return true if any pizza is queued in the oven
+	 */
+	public boolean isInUse(@NonNull OvenProduct oven) {
+		return ticketRepository.existsByOvenId(Objects.requireNonNull(oven.getId()).getIdentifier());
+	}
+
+	/**
+	 * @return tickets of all ovens, in queue order
+	 */
+	public List<KitchenTicket> findQueuedTickets() {
+		return ticketRepository.findByStateInOrderByQueuedAtAscQueuePositionAsc(QUEUED_STATES);
+	}
 
 	// assignOvens = assignChef
 	public void assignOvens(ShopOrder shopOrder) {
@@ -81,19 +138,15 @@ public class KitchenManagement {
 				})
 				.collect(Collectors.toList());
 
-		//list of all copied pizzas, as we need to set states separately
-		List<PizzaProduct> pizzas = new ArrayList<>();
+		//one ticket per pizza, as we need to set states separately
+		long queuedAt = System.currentTimeMillis();
+		List<KitchenTicket> tickets = new ArrayList<>();
 		for (OrderLine orderLine : pizzaLines) {
 			//amount of orderline
 			int pizzaAmount = orderLine.getQuantity().getAmount().intValue();
 			PizzaProduct pizza = (PizzaProduct) shopCatalogManagement.findById(orderLine.getProductIdentifier());
 			for (int i = 0; i < pizzaAmount; i++) {
-				//create as many copies as orderline quantity
-				PizzaProduct pizzaCopy = shopCatalogManagement.createKitchenCopyPizzaProduct(pizza);
-				pizzaCopy.setOrder(shopOrder); //link pizza copy to order
-				pizzaCopy.setState(PizzaState.OPEN);
-				shopCatalogManagement.save(pizzaCopy);
-				pizzas.add(pizzaCopy);
+				tickets.add(new KitchenTicket(shopOrder, pizza, queuedAt, tickets.size()));
 			}
 		}
 
@@ -106,171 +159,166 @@ public class KitchenManagement {
 			throw new PapaPizzaRunException("There are no ovens with assigned employees");
 		}
 
-		//distribute pizzas across ovens
-		for (PizzaProduct pizzaProduct : pizzas) {
-			//get oven with least pizzas, 1st if equal
-			OvenProduct leastOven = ovens.get(0);
-			for (OvenProduct oven : ovens) {
-				if (oven.getPizzas().size() < leastOven.getPizzas().size()) {
-					leastOven = oven;
-				}
+		Map<String, List<KitchenTicket>> queues = findQueuedTickets().stream()
+				.filter(ticket -> ticket.getOvenId() != null)
+				.collect(Collectors.groupingBy(KitchenTicket::getOvenId));
+
+		//bake identical pizzas of other orders together first, if enabled
+		List<KitchenTicket> unbatched = new ArrayList<>();
+		for (KitchenTicket ticket : tickets) {
+			Optional<KitchenTicket> batch = batches.findBatch(ticket, ovens, queues, queuedAt);
+			if (batch.isEmpty()) {
+				unbatched.add(ticket);
+				continue;
 			}
+			ticket.joinBatch(batch.get());
+			List<KitchenTicket> queue = queues.get(ticket.getOvenId());
+			queue.add(queue.indexOf(batch.get()) + 1, ticket);
+			OvenProduct oven = ovens.stream().filter(o -> ticket.getOvenIdentifier().equals(o.getId())).findFirst().orElseThrow();
+			queueIn(shopOrder, ticket, oven, batch.get().getId());
+		}
 
-			//add employee of pizza to order (for overview)
-			if(!shopOrder.getChefs().contains(leastOven.getChef())){
-				shopOrder.getChefs().add(leastOven.getChef());
-			}
-			//assign a pizza to oven
-			leastOven.getPizzas().add(pizzaProduct);
-			shopCatalogManagement.save(leastOven);
+		//distribute the other pizzas across ovens, each to the oven which is free first
+		OvenScheduler scheduler = new OvenScheduler(ovens, queues, now());
+		for (KitchenTicket ticket : unbatched) {
+			OvenProduct oven = scheduler.assign(ticket);
+			ticket.queueIn(Objects.requireNonNull(oven.getId()));
+			queueIn(shopOrder, ticket, oven, null);
 		}
+		ticketRepository.saveAll(tickets);
+		logger.debug("pizzas of order " + shopOrder.getId() + " are baked in " + (scheduler.getReadyAt() - now()) + "s");
 	}
 
-	public boolean changePizzaState(ProductIdentifier pizzaId, PizzaState changeTo) {
-		PizzaProduct pizza = (PizzaProduct) shopCatalogManagement.findById(pizzaId); //get pizza by id
-		if (pizza == null) {
-			return false;
+	private void queueIn(ShopOrder shopOrder, KitchenTicket ticket, OvenProduct oven, String afterTicketId) {
+		//add employee of pizza to order (for overview)
+		if(!shopOrder.getChefs().contains(oven.getChef())){
+			shopOrder.getChefs().add(oven.getChef());
 		}
-		OvenProduct pizzaOven = getPizzaOven(pizza);
-		//check if oven empty
-		if(pizzaOven == null){
+		timeEstimateTracker.pizzaQueued(Objects.requireNonNull(shopOrder.getId()).getIdentifier(),
+				Objects.requireNonNull(oven.getId()), oven.getSlots(), ticket.getId(), afterTicketId);
+	}
+
+	/**
+	 * @param ticketId ticket of a pizza in the kitchen
+	 * @return identifier of the order the pizza is baked for, empty if there is no such ticket
+	 */
+	public Optional<String> findOrderIdOfTicket(String ticketId) {
+		return ticketRepository.findById(ticketId)
+				.map(ticket -> Objects.requireNonNull(ticket.getOrder().getId()).getIdentifier());
+	}
+
+	public boolean changePizzaState(String ticketId, PizzaState changeTo) {
+		Optional<KitchenTicket> ticket = ticketRepository.findById(ticketId);
+		//check pizza is queued in an oven
+		if (ticket.isEmpty() || ticket.get().getOvenId() == null) {
 			return false;
 		}
 
 		boolean returnValue = false; //why ever someone would do it like this sqube
 		if(changeTo == PizzaState.PENDING) {
-			returnValue = startBaking(pizza, pizzaOven);
+			returnValue = startBaking(ticket.get());
 		}
 		if(changeTo == PizzaState.READY){
-			returnValue = finishBaking(pizza, pizzaOven);
+			returnValue = finishBaking(ticket.get());
 		}
 		return returnValue;
 	}
 
-	private boolean startBaking(PizzaProduct pizza, OvenProduct pizzaOven){
-		if(!pizzaOven.isEmpty()){ //oven could alr be baking a pizza
+	private boolean startBaking(KitchenTicket ticket){
+		if(ticket.getState() != PizzaState.OPEN){
 			return false;
 		}
-		//calculate and set open duration when first pizza of order put in oven
-		if(pizza.getOrder().getOpenDuration() == null){
-			long dur = System.currentTimeMillis()/1000-pizza.getOrder().getTimeCreated()
-					.atZone(ZoneId.systemDefault()).toEpochSecond();
-			Duration openDur = Duration.of(dur, ChronoUnit.SECONDS);
-			logger.info("Setting open duration for order to "+openDur.getSeconds());
-			pizza.getOrder().setOpenDuration(openDur);
-		}else{
-			logger.info("open duration alr set to "+pizza.getOrder().getOpenDuration().getSeconds());
+		//all slots of the oven could alr be baking
+		long baking = getQueue(ticket.getOvenId()).stream().filter(KitchenTicket::isBaking).count();
+		if(baking >= getSlots(ticket.getOvenId())){
+			return false;
 		}
-
-		//set timestamp
-		pizzaOven.setInOvenTimestamp(System.currentTimeMillis() / 1000);
-		//mark pizza as in oven
-		pizza.setState(PizzaState.PENDING);
-		shopOrderManagement.setShopOrderState(pizza.getOrder(), ShopOrderState.PENDING);
-		shopOrderManagement.save(pizza.getOrder());
-		shopCatalogManagement.save(pizza);
-		shopCatalogManagement.save(pizzaOven);
+		ShopOrder order = ticket.getOrder();
+		if(order.getShopOrderState().isFinal()){ //cancelled, pizza is about to be removed
+			return false;
+		}
+		//open duration is derived from the state transition, see ShopOrderManagement#transition
+
+		//mark pizza as in oven, with timestamp
+		ticket.start(now());
+		shopOrderManagement.setShopOrderState(order, ShopOrderState.PENDING);
+		shopOrderManagement.save(order);
+		ticketRepository.save(ticket);
+		events.publishEvent(new PizzaStarted(order, ticket.getId(), ticket.getOvenIdentifier()));
 		return true;
 	}
 
-	public boolean finishBaking(PizzaProduct pizza, OvenProduct pizzaOven) {
-		//check if oven is even baking a pizza
-		if(pizzaOven.isEmpty()){
+	public boolean finishBaking(KitchenTicket ticket) {
+		//check if the pizza is even baking
+		if(!ticket.isBaking()){
 			return false;
 		}
-		//this pizza is the one requested to finish
-		if(!pizzaOven.getCurrentlyBakingPizza().equals(pizza)){
-			return false;
-		}
-		//baking duration
-		long inOvenSince = pizzaOven.getInOvenSince();
-		//this has no purpose yet but might be used later to calculate the time when the oven is empty
-		pizzaOven.setInOvenTimestamp(System.currentTimeMillis()/1000);
-
-		ShopOrder belongingOrder = getShopOrderByPizza(pizza);
-		Duration oldDuration = belongingOrder.getPendingDuration();
-		//replace current duration with longest pending time
-		if(oldDuration == null || oldDuration.getSeconds() < inOvenSince) {
-			belongingOrder.setPendingDuration(Duration.ofSeconds(inOvenSince));
-		}
-		//finish pizza state
-		pizza.setState(PizzaState.READY);
-		//remove form oven queue
-		pizzaOven.getPizzas().remove(pizza);
-		//check order complete?
-		if(checkOrderReady(belongingOrder)){
+		logger.debug("pizza was in oven for "+ticket.getInOvenSince(now())+"s");
+
+		ShopOrder belongingOrder = ticket.getOrder();
+		//pizza is done, the ticket is not needed anymore
+		ticketRepository.delete(ticket);
+		//check order complete? a cancelled order can still have its last pizza in the oven
+		if(!belongingOrder.getShopOrderState().isFinal() && checkOrderReady(belongingOrder)){
 			//mark ready for delivery
 			shopOrderManagement.setOrderReady(belongingOrder);
 		}
-		//delete pizza & save oven, order
-		shopCatalogManagement.deleteHardById(pizza.getId());
-		shopCatalogManagement.save(pizzaOven);
 		shopOrderManagement.save(belongingOrder);
+		events.publishEvent(new PizzaFinished(belongingOrder, ticket.getId(), ticket.getOvenIdentifier()));
 		return true;
 	}
 
 	private boolean checkOrderReady(ShopOrder order){
 		logger.debug("check order is run");
-		return getKitchenPizzasOfOrder(order).noneMatch(product -> { //none have state open or pending -> pizza is ready
-					PizzaProduct piProduct = ((PizzaProduct) product);
-					return piProduct.getState() == PizzaState.OPEN || piProduct.getState() == PizzaState.PENDING;
-				});
+		//none have state open or pending -> pizzas are ready
+		return !ticketRepository.existsByOrderAndStateIn(order, QUEUED_STATES);
 	}
 
-	private ShopOrder getShopOrderByPizza(PizzaProduct pizza){
-		Optional<ShopOrder> order = shopOrderManagement.get(Objects.requireNonNull(pizza.getOrder().getId()));
-		if(order.isEmpty()){
-			return null;
-		}
-		return order.get();
+	private List<KitchenTicket> getQueue(String ovenId){
+		return ticketRepository.findByOvenIdOrderByQueuedAtAscQueuePositionAsc(ovenId);
 	}
 
-	private OvenProduct getPizzaOven(@NonNull PizzaProduct pizza){
-		//get pizza's oven
-		Optional<Product> optPizzaOven = shopCatalogManagement.findByCategory("Oven")
-				.filter(oven -> ((OvenProduct) oven).getPizzas().contains(pizza)).stream().findFirst();
-		if(optPizzaOven.isEmpty()){ //pizza doesnt belong to any oven
-			return null;
-		}
-		return (OvenProduct) optPizzaOven.get();
+	/**
+	 * @param ovenId identifier of the oven
+	 * @return pizzas the oven bakes at once, 1 for unknown ovens
+	 */
+	public int getSlots(@NonNull String ovenId){
+		Optional<Product> oven = shopCatalogManagement.findById(ovenId);
+		//deleted ovens keep their slots, their last pizzas are still baked
+		return oven.filter(OvenProduct.class::isInstance).map(product -> ((OvenProduct) product).getSlots()).orElse(1);
 	}
 
-	private List<OvenProduct> getOvensFromShopOrder(@NonNull ShopOrder order){
-		return shopCatalogManagement.findByCategory("Oven").map(p -> (OvenProduct)p)
-				.filter(oven -> oven.getPizzas().stream().map(PizzaProduct::getOrder)
-						.anyMatch(o -> (o != null) && (o.hasId(Objects.requireNonNull(order.getId()))))).toList();
+	private static long now(){
+		return System.currentTimeMillis() / 1000;
 	}
 
-	private Stream<Product> getKitchenPizzasOfOrder(ShopOrder order){
-		return shopCatalogManagement.findByCategory(ProductCategory.KITCHEN_PIZZA.name()).stream()
-                                    .filter(product -> ((PizzaProduct) product).getOrder()!=null
-						&& ((PizzaProduct) product).getOrder().getId().equals(order.getId()));
-		//order identifier match -> pizzas belong to order
+	/**
+	 * Removes the pizzas of a cancelled order, which are still waiting for an oven
+	 */
+	@Async
+	@TransactionalEventListener
+	@Transactional(propagation = Propagation.REQUIRES_NEW)
+	public void on(OrderCancelled event){
+		shopOrderManagement.findByShopOrderId(event.getOrderId()).ifPresent(this::cancelPizzasForOrder);
 	}
 
 	/**
-	 * Cancels all pizzas for the provided order
+	 * Cancels all pizzas for the provided order, which are not in an oven yet <br>
+	 * Pizzas already baking are left to the chef
 	 * @param order to cancel
-	 * @return true if successful
+	 * @return true if any pizza was removed
 	 */
 	public boolean cancelPizzasForOrder(ShopOrder order){
-		if(order.getShopOrderState() != ShopOrderState.OPEN){
-			return false;
-		}
+		List<KitchenTicket> waiting = ticketRepository.findByOrderAndState(order, PizzaState.OPEN);
 
-		//remove every pizza from oven's pizza list
 		//XXX reassign other orders again
-		getKitchenPizzasOfOrder(order).forEach(product -> {
-			PizzaProduct pizza = (PizzaProduct) product;
-			OvenProduct oven = getPizzaOven(pizza);
-			assert oven != null;
-			//remove pizza from oven
-			oven.getPizzas().remove(pizza);
-			shopCatalogManagement.save(oven);
-			//delete pizza entirely
-			shopCatalogManagement.deleteHardById(pizza.getId());
+		waiting.forEach(ticket -> {
+			if(ticket.getOvenId() != null){
+				timeEstimateTracker.pizzaRemoved(ticket.getOvenIdentifier(), ticket.getId());
+			}
 		});
-		return true;
+		ticketRepository.deleteAll(waiting);
+		return !waiting.isEmpty();
 	}
 
 	/**
@@ -282,13 +330,12 @@ public class KitchenManagement {
 	 */
 	public Duration kitchenShopOrderTimeEstimate(@NonNull ShopOrder order){
 		Duration maxOvenDuration = Duration.ZERO;
+		Set<String> ovenIds = ticketRepository.findByOrder(order).stream().map(KitchenTicket::getOvenId)
+				.filter(Objects::nonNull).collect(Collectors.toSet());
 		//calculate the maximum duration for an order
-		for(OvenProduct oven : getOvensFromShopOrder(order)){
+		for(String ovenId : ovenIds){
 			//get Durations (via queue of assigned oven) to ready
-			Duration queueDuration = Duration.ofSeconds((long) oven.getPizzas().size() * MAX_BAKING_TIME);
-			if(!oven.isEmpty()) {
-				queueDuration = queueDuration.minus(Duration.ofSeconds(oven.getInOvenSince()));
-			}
+			Duration queueDuration = Duration.ofSeconds(OvenScheduler.projectedFreeAt(getQueue(ovenId), getSlots(ovenId), now()) - now());
 			//get maximum
 			if(maxOvenDuration.compareTo(queueDuration) < 0){ //max<toCompare
 				maxOvenDuration = queueDuration;
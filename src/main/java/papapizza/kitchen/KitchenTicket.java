@@ -0,0 +1,116 @@
+package papapizza.kitchen;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+import org.salespointframework.catalog.ProductIdentifier;
+import papapizza.inventory.ProductCategory;
+import papapizza.inventory.items.PizzaProduct;
+import papapizza.inventory.items.PizzaState;
+import papapizza.order.ShopOrder;
+
+import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * One pizza of an order on its way through the kitchen, from queued in an oven until it is taken out. <br>
+ * Tickets live in their own table instead of the catalog, they are removed once the pizza is finished.
+ * The queue of an oven are its tickets in the order they were queued.
+ */
+@Entity
+//ovens of an order are found through its tickets, see KitchenManagement#kitchenShopOrderTimeEstimate
+@Table(indexes = {@Index(columnList = "state"), @Index(columnList = "ovenId, queuedAt, queuePosition"),
+		@Index(columnList = "order_id, state")})
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class KitchenTicket {
+
+	@Id
+	private String id;
+
+	@ManyToOne(optional = false, fetch = FetchType.LAZY)
+	private ShopOrder order;
+
+	@Column(nullable = false)
+	private String productId; //pizza of the order line, preset or custom
+
+	private String name;
+
+	@ElementCollection
+	private List<String> toppingIds = new ArrayList<>();
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
+	private PizzaState state = PizzaState.OPEN;
+
+	private String ovenId;
+
+	private long queuedAt; //epoch millis
+
+	private int queuePosition; //among the pizzas queued together
+
+	@Column(nullable = false)
+	private String batchKey; //same for identical pizzas, see PizzaBatches
+
+	private Long startedAt; //epoch secs, set once the pizza is in the oven
+
+	KitchenTicket(@NonNull ShopOrder order, @NonNull PizzaProduct pizza, long queuedAt, int queuePosition) {
+		this.id = UUID.randomUUID().toString();
+		this.order = order;
+		this.productId = Objects.requireNonNull(pizza.getId()).getIdentifier();
+		this.name = pizza.getName();
+		if (pizza.getToppings() != null) {
+			this.toppingIds = pizza.getToppings().stream()
+					.map(topping -> Objects.requireNonNull(topping.getId()).getIdentifier())
+					.collect(Collectors.toList());
+		}
+		this.queuedAt = queuedAt;
+		this.queuePosition = queuePosition;
+		//every custom pizza is a product of its own, those are identical if their toppings are
+		if (pizza.getCategories().toList().contains(ProductCategory.CUSTOM_PIZZA.toString())) {
+			this.batchKey = "toppings:" + toppingIds.stream().sorted().collect(Collectors.joining(","));
+		} else {
+			this.batchKey = "pizza:" + productId;
+		}
+	}
+
+	void queueIn(@NonNull ProductIdentifier ovenId) {
+		this.ovenId = ovenId.getIdentifier();
+	}
+
+	/**
+	 * Queues the pizza right next to an identical one of another order, so they are baked together
+	 * @param member waiting ticket of the batch
+	 */
+	void joinBatch(@NonNull KitchenTicket member) {
+		this.ovenId = member.ovenId;
+		this.queuedAt = member.queuedAt;
+		this.queuePosition = member.queuePosition;
+	}
+
+	void start(long now) {
+		this.state = PizzaState.PENDING;
+		this.startedAt = now;
+	}
+
+	public ProductIdentifier getOvenIdentifier() {
+		return ovenId == null ? null : ProductIdentifier.of(ovenId);
+	}
+
+	public boolean isBaking() {
+		return state == PizzaState.PENDING;
+	}
+
+	/**
+	 * @param now current time in epoch secs
+	 * @return secs the pizza is in the oven, 0 if it is not baking
+	 */
+	public long getInOvenSince(long now) {
+		return isBaking() && startedAt != null ? now - startedAt : 0;
+	}
+}
@@ -0,0 +1,23 @@
+package papapizza.kitchen;
+
+import org.springframework.data.repository.CrudRepository;
+import papapizza.inventory.items.PizzaState;
+import papapizza.order.ShopOrder;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface KitchenTicketRepository extends CrudRepository<KitchenTicket, String> {
+
+	List<KitchenTicket> findByOvenIdOrderByQueuedAtAscQueuePositionAsc(String ovenId);
+
+	List<KitchenTicket> findByStateInOrderByQueuedAtAscQueuePositionAsc(Collection<PizzaState> states);
+
+	List<KitchenTicket> findByOrder(ShopOrder order);
+
+	List<KitchenTicket> findByOrderAndState(ShopOrder order, PizzaState state);
+
+	boolean existsByOrderAndStateIn(ShopOrder order, Collection<PizzaState> states);
+
+	boolean existsByOvenId(String ovenId);
+}
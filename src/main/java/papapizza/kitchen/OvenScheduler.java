@@ -0,0 +1,134 @@
+package papapizza.kitchen;
+
+import lombok.NonNull;
+import papapizza.inventory.items.OvenProduct;
+import papapizza.inventory.items.PizzaState;
+
+import java.util.*;
+
+/**
+ * Min-heap of oven slots keyed by the time they are projected to be free, i.e. the pizza in the slot
+ * is done and every pizza queued for it is baked. <br>
+ * An oven bakes as many pizzas at once as it has {@link OvenProduct#getSlots() slots}, its queue is handed to
+ * whichever slot frees up first. Each new pizza goes to the slot that is free first, which is then pushed back
+ * by the bake time of the pizza. As all pizzas of an order are assigned one after another this also gives
+ * the earliest time the whole order is baked. Building the heap is linear, every assignment is O(log n).
+ */
+final class OvenScheduler {
+
+	private static final class Slot implements Comparable<Slot> {
+		private final OvenProduct oven;
+		private final int position; //ties go to the first oven, like before
+		private long freeAt; //epoch secs
+
+		private Slot(OvenProduct oven, int position, long freeAt) {
+			this.oven = oven;
+			this.position = position;
+			this.freeAt = freeAt;
+		}
+
+		@Override
+		public int compareTo(Slot other) {
+			int byTime = Long.compare(freeAt, other.freeAt);
+			return byTime != 0 ? byTime : Integer.compare(position, other.position);
+		}
+	}
+
+	private final PriorityQueue<Slot> heap;
+	private long readyAt;
+
+	/**
+	 * @param ovens to distribute pizzas across
+	 * @param queues tickets queued per oven id, ovens without an entry are idle
+	 * @param now current time in epoch secs
+	 */
+	OvenScheduler(@NonNull List<OvenProduct> ovens, @NonNull Map<String, List<KitchenTicket>> queues, long now) {
+		List<Slot> slots = new ArrayList<>(ovens.size());
+		for (int i = 0; i < ovens.size(); i++) {
+			OvenProduct oven = ovens.get(i);
+			List<KitchenTicket> queue = queues.getOrDefault(Objects.requireNonNull(oven.getId()).getIdentifier(), Collections.emptyList());
+			for (long freeAt : slotsFreeAt(queue, oven.getSlots(), now)) {
+				slots.add(new Slot(oven, i, freeAt));
+			}
+		}
+		this.heap = new PriorityQueue<>(slots);
+		this.readyAt = now;
+	}
+
+	/**
+	 * Assigns the pizza to the oven with the slot which is free first
+	 * @param ticket of the pizza to bake
+	 * @return oven the pizza has to be queued in
+	 */
+	OvenProduct assign(@NonNull KitchenTicket ticket) {
+		Slot slot = heap.poll();
+		if (slot == null) {
+			throw new IllegalStateException("no ovens to assign to");
+		}
+		slot.freeAt += bakeTime(ticket);
+		readyAt = Math.max(readyAt, slot.freeAt);
+		heap.add(slot);
+		return slot.oven;
+	}
+
+	/**
+	 * @return epoch secs when every pizza assigned so far is baked
+	 */
+	long getReadyAt() {
+		return readyAt;
+	}
+
+	/**
+	 * Time the oven is done with the pizzas in it and all queued ones
+	 * @param queue tickets of the oven
+	 * @param slots pizzas the oven bakes at once
+	 * @param now current time in epoch secs
+	 * @return epoch secs, now if the oven is idle
+	 */
+	static long projectedFreeAt(@NonNull List<KitchenTicket> queue, int slots, long now) {
+		long freeAt = now;
+		for (long slotFreeAt : slotsFreeAt(queue, slots, now)) {
+			freeAt = Math.max(freeAt, slotFreeAt);
+		}
+		return freeAt;
+	}
+
+	/**
+	 * Times the slots of an oven are free, when the baking pizzas are done and the queued ones
+	 * are put into whichever slot is free first
+	 * @param queue tickets of the oven
+	 * @param slots pizzas the oven bakes at once
+	 * @param now current time in epoch secs
+	 * @return epoch secs per slot, at least one entry
+	 */
+	static PriorityQueue<Long> slotsFreeAt(@NonNull List<KitchenTicket> queue, int slots, long now) {
+		PriorityQueue<Long> freeAt = new PriorityQueue<>();
+		for (KitchenTicket ticket : queue) {
+			if (ticket.isBaking()) {
+				//a pizza baking longer than planned is expected to be taken out any moment
+				freeAt.add(now + Math.max(0, bakeTime(ticket) - ticket.getInOvenSince(now)));
+			}
+		}
+		int capacity = Math.max(1, slots);
+		while (freeAt.size() < capacity) {
+			freeAt.add(now);
+		}
+		//oven downsized while more pizzas were baking, the next one waits until enough of them are out
+		while (freeAt.size() > capacity) {
+			freeAt.poll();
+		}
+		for (KitchenTicket ticket : queue) {
+			if (ticket.getState() == PizzaState.OPEN) {
+				freeAt.add(freeAt.poll() + bakeTime(ticket));
+			}
+		}
+		return freeAt;
+	}
+
+	/**
+	 * @return secs the pizza needs in the oven, the same for every pizza for now
+	 */
+	static long bakeTime(KitchenTicket ticket) {
+		return KitchenManagement.MAX_BAKING_TIME;
+	}
+}
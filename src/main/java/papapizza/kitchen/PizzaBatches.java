@@ -0,0 +1,65 @@
+package papapizza.kitchen;
+
+import lombok.NonNull;
+import papapizza.inventory.items.OvenProduct;
+import papapizza.inventory.items.PizzaState;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Finds identical pizzas of other orders a new pizza can be baked together with. <br>
+ * A batch are the waiting tickets of an oven with the same {@link KitchenTicket#getBatchKey() key}
+ * and queue time, started within the window. It grows up to the slots of its oven, as more pizzas would not
+ * be in the oven at the same time anyway. Joining a batch moves the pizza ahead of everything queued after
+ * the batch, the window keeps those from waiting too long.
+ */
+final class PizzaBatches {
+
+	private final Duration window;
+
+	/**
+	 * @param window how long a batch takes new pizzas, zero turns batching off
+	 */
+	PizzaBatches(@NonNull Duration window) {
+		this.window = window;
+	}
+
+	boolean isEnabled() {
+		return !window.isNegative() && !window.isZero();
+	}
+
+	/**
+	 * @param ticket new pizza, not queued yet
+	 * @param ovens the pizza may be baked in
+	 * @param queues tickets queued per oven id
+	 * @param now current time in epoch millis
+	 * @return last ticket of the oldest batch with a free slot, empty if there is none
+	 */
+	Optional<KitchenTicket> findBatch(@NonNull KitchenTicket ticket, @NonNull List<OvenProduct> ovens,
+									  @NonNull Map<String, List<KitchenTicket>> queues, long now) {
+		if (!isEnabled()) {
+			return Optional.empty();
+		}
+		long since = now - window.toMillis();
+		KitchenTicket found = null;
+		for (OvenProduct oven : ovens) {
+			List<KitchenTicket> queue = queues.getOrDefault(Objects.requireNonNull(oven.getId()).getIdentifier(), Collections.emptyList());
+			//members of a batch share the queue time of the pizza that started it
+			Map<Long, List<KitchenTicket>> batches = new HashMap<>();
+			for (KitchenTicket queued : queue) {
+				if (queued.getState() == PizzaState.OPEN && queued.getQueuedAt() >= since
+					&& queued.getBatchKey().equals(ticket.getBatchKey())) {
+					batches.computeIfAbsent(queued.getQueuedAt(), queuedAt -> new ArrayList<>()).add(queued);
+				}
+			}
+			for (List<KitchenTicket> batch : batches.values()) {
+				KitchenTicket last = batch.get(batch.size() - 1);
+				if (batch.size() < oven.getSlots() && (found == null || last.getQueuedAt() < found.getQueuedAt())) {
+					found = last;
+				}
+			}
+		}
+		return Optional.ofNullable(found);
+	}
+}
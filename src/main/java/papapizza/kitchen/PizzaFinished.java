@@ -0,0 +1,22 @@
+package papapizza.kitchen;
+
+import lombok.Getter;
+import org.salespointframework.catalog.ProductIdentifier;
+import papapizza.order.ShopOrder;
+import papapizza.order.ShopOrderEvent;
+
+/**
+ * A pizza of the order is baked and was taken out of its oven
+ */
+@Getter
+public class PizzaFinished extends ShopOrderEvent {
+
+	private final String ticketId;
+	private final ProductIdentifier ovenId;
+
+	public PizzaFinished(ShopOrder order, String ticketId, ProductIdentifier ovenId) {
+		super(order);
+		this.ticketId = ticketId;
+		this.ovenId = ovenId;
+	}
+}
@@ -0,0 +1,22 @@
+package papapizza.kitchen;
+
+import lombok.Getter;
+import org.salespointframework.catalog.ProductIdentifier;
+import papapizza.order.ShopOrder;
+import papapizza.order.ShopOrderEvent;
+
+/**
+ * A pizza of the order was put into an oven
+ */
+@Getter
+public class PizzaStarted extends ShopOrderEvent {
+
+	private final String ticketId;
+	private final ProductIdentifier ovenId;
+
+	public PizzaStarted(ShopOrder order, String ticketId, ProductIdentifier ovenId) {
+		super(order);
+		this.ticketId = ticketId;
+		this.ovenId = ovenId;
+	}
+}
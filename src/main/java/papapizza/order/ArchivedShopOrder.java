@@ -0,0 +1,157 @@
+package papapizza.order;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.javamoney.moneta.Money;
+import papapizza.customer.Customer;
+
+import javax.money.MonetaryAmount;
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.*;
+import java.util.Objects;
+
+/**
+ * Compact copy of a finished {@link ShopOrder}, kept for analytics once the order is moved out of the live table. <br>
+ * Amounts are stored as cents, times as epoch seconds and durations as seconds, customer data is copied
+ * as it was when the order was finished and replaced once the customer is deleted,
+ * see {@link ShopOrderManagement#relinkCustomer}. Live orders are converted with {@link #of(ShopOrder)} as well,
+ * so analytics only has to deal with one type.
+ * @see ShopOrderArchiver
+ */
+@Entity
+@Table(indexes = @Index(columnList = "shopOrderState, completedAt"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ArchivedShopOrder {
+
+	private static final String CURRENCY = "EUR";
+
+	@Id
+	private String orderId;
+
+	private String parentId;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
+	private ShopOrderState shopOrderState;
+
+	@Enumerated(EnumType.STRING)
+	private DeliveryType deliveryType;
+
+	private String deliveryStrategy;
+
+	private Long customerId;
+
+	private String lastname, firstname, phone;
+
+	private long totalCents;
+
+	private long createdAt;
+
+	private Long completedAt;
+
+	private Long openSeconds, pendingSeconds, readySeconds, inDeliverSeconds, totalSeconds;
+
+	private String invoiceFilename;
+
+	private Long invoiceNo;
+
+	@Transient
+	private boolean live; //converted from a live order, not stored
+
+	public static ArchivedShopOrder of(ShopOrder order) {
+		ArchivedShopOrder archived = new ArchivedShopOrder();
+		archived.orderId = Objects.requireNonNull(order.getId()).getIdentifier();
+		archived.parentId = order.getParentId();
+		archived.shopOrderState = order.getShopOrderState();
+		archived.deliveryType = order.getDeliveryType();
+		archived.deliveryStrategy = order.getDeliveryStrategy();
+		Customer customer = order.getCustomer();
+		if (customer != null) {
+			archived.customerId = customer.getId();
+			archived.lastname = customer.getLastname();
+			archived.firstname = customer.getFirstname();
+			archived.phone = customer.getPhone();
+		}
+		archived.totalCents = toCents(order.getTotal());
+		archived.createdAt = toEpochSecond(order.getTimeCreated());
+		archived.completedAt = order.getTimeCompleted() == null ? null : toEpochSecond(order.getTimeCompleted());
+		archived.openSeconds = toSeconds(order.getOpenDuration());
+		archived.pendingSeconds = toSeconds(order.getPendingDuration());
+		archived.readySeconds = toSeconds(order.getReadyDuration());
+		archived.inDeliverSeconds = toSeconds(order.getInDeliverDuration());
+		archived.totalSeconds = toSeconds(order.getTotalDuration());
+		archived.invoiceFilename = order.getInvoiceFilename();
+		archived.invoiceNo = order.getInvoiceNo();
+		archived.live = true;
+		return archived;
+	}
+
+	ArchivedShopOrder stored() {
+		live = false;
+		return this;
+	}
+
+	//=============================
+	//converted getters, same names as on ShopOrder
+	//=============================
+
+	public MonetaryAmount getTotal() {
+		return Money.of(BigDecimal.valueOf(totalCents, 2), CURRENCY);
+	}
+
+	public LocalDateTime getTimeCreated() {
+		return toLocalDateTime(createdAt);
+	}
+
+	public LocalDateTime getTimeCompleted() {
+		return completedAt == null ? null : toLocalDateTime(completedAt);
+	}
+
+	public Duration getOpenDuration() {
+		return toDuration(openSeconds);
+	}
+
+	public Duration getPendingDuration() {
+		return toDuration(pendingSeconds);
+	}
+
+	public Duration getReadyDuration() {
+		return toDuration(readySeconds);
+	}
+
+	public Duration getInDeliverDuration() {
+		return toDuration(inDeliverSeconds);
+	}
+
+	public Duration getTotalDuration() {
+		return toDuration(totalSeconds);
+	}
+
+	//=============================
+	//conversion
+	//=============================
+
+	static long toCents(MonetaryAmount amount) {
+		return amount.getNumber().numberValue(BigDecimal.class).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+	}
+
+	static long toEpochSecond(LocalDateTime time) {
+		return time.atZone(ZoneId.systemDefault()).toEpochSecond();
+	}
+
+	private static LocalDateTime toLocalDateTime(long epochSecond) {
+		return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZoneId.systemDefault());
+	}
+
+	private static Long toSeconds(Duration duration) {
+		return duration == null ? null : duration.getSeconds();
+	}
+
+	private static Duration toDuration(Long seconds) {
+		return seconds == null ? null : Duration.ofSeconds(seconds);
+	}
+}
@@ -0,0 +1,29 @@
+package papapizza.order;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+interface ArchivedShopOrderRepository extends Repository<ArchivedShopOrder, String> {
+
+	ArchivedShopOrder save(ArchivedShopOrder order);
+
+	Optional<ArchivedShopOrder> findById(String orderId);
+
+	boolean existsById(String orderId);
+
+	List<ArchivedShopOrder> findByShopOrderStateAndCompletedAtGreaterThanEqualAndCompletedAtLessThanOrderByCompletedAt(
+			ShopOrderState shopOrderState, long from, long to);
+
+	List<ArchivedShopOrder> findByInvoiceFilenameNotNullAndCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAt(long from, long to);
+
+	@Modifying(flushAutomatically = true, clearAutomatically = true)
+	@Query("update ArchivedShopOrder a set a.customerId = :toId, a.lastname = :lastname, a.firstname = :firstname, a.phone = :phone " +
+			"where a.customerId = :fromId")
+	int relinkCustomer(@Param("fromId") long fromId, @Param("toId") long toId, @Param("lastname") String lastname,
+					   @Param("firstname") String firstname, @Param("phone") String phone);
+}
@@ -0,0 +1,45 @@
+package papapizza.order;
+
+import lombok.NonNull;
+import org.salespointframework.catalog.Product;
+import org.springframework.stereotype.Service;
+import papapizza.inventory.ShopCatalogManagement;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates all {@link DiscountRule} beans in one pass over a {@link PricedShopOrder}
+ * and replaces the order's discount charge lines with the result
+ */
+@Service
+public class DiscountEngine {
+
+	private final List<DiscountRule> rules;
+	private final ShopCatalogManagement catalogManagement;
+
+	public DiscountEngine(@NonNull List<DiscountRule> rules, @NonNull ShopCatalogManagement catalogManagement) {
+		this.rules = rules;
+		this.catalogManagement = catalogManagement;
+	}
+
+	/**
+	 * Recalculates the discounts of the order. The order is only changed in memory, not saved.
+	 * @param order to calculate the discounts for
+	 */
+	public void applyDiscounts(@NonNull ShopOrder order) {
+		//remove previous discounts, otherwise they would be part of the total
+		Set<String> descriptions = rules.stream().map(DiscountRule::getDescription).collect(Collectors.toSet());
+		order.getChargeLines().filter(chargeLine -> descriptions.contains(chargeLine.getDescription())).toList()
+				.forEach(order::remove);
+
+		PricedShopOrder pricedOrder = new PricedShopOrder(order, productId -> order.findCustomPizza(productId)
+				.map(Product.class::cast).orElseGet(() -> catalogManagement.findById(productId)));
+		for (DiscountRule rule : rules) {
+			rule.evaluate(pricedOrder).ifPresent(amount -> pricedOrder.addDiscount(rule.getDescription(), amount));
+		}
+
+		pricedOrder.getDiscounts().forEach((description, amount) -> order.addChargeLine(amount, description));
+	}
+}
@@ -0,0 +1,23 @@
+package papapizza.order;
+
+import javax.money.MonetaryAmount;
+import java.util.Optional;
+
+/**
+ * A discount that may apply to a {@link ShopOrder}. <br>
+ * Every rule registered as bean is evaluated by the {@link DiscountEngine}, in the order given by
+ * {@link org.springframework.core.annotation.Order}. Each rule owns the charge lines with its description.
+ */
+public interface DiscountRule {
+
+	/**
+	 * @return description of the charge line this rule emits
+	 */
+	String getDescription();
+
+	/**
+	 * @param order priced snapshot of the order, including the discounts of all rules evaluated before
+	 * @return the (negative) amount to charge, empty if the rule does not apply
+	 */
+	Optional<MonetaryAmount> evaluate(PricedShopOrder order);
+}
@@ -28,5 +28,7 @@ public class DisplayableShopOrder {
 
 	private String invoiceFilename;
 
+	private Long etaMinutes; //live estimate of active orders, null for all others
+
 
 }
@@ -0,0 +1,8 @@
+package papapizza.order;
+
+/**
+ * Role an {@link papapizza.employee.Employee} can take part in a {@link ShopOrder} with
+ */
+public enum EmployeeOrderRole {
+	CASHIER, CHEF, DRIVER
+}
@@ -0,0 +1,38 @@
+package papapizza.order;
+
+import org.javamoney.moneta.Money;
+import org.salespointframework.catalog.Product;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import papapizza.inventory.ProductCategory;
+
+import javax.money.MonetaryAmount;
+import java.util.Comparator;
+import java.util.Optional;
+
+/**
+ * The cheapest drink is free if the order still reaches {@link #MIN_TOTAL} without it
+ */
+@Component
+@Order(2)
+public class FreeDrinkDiscountRule implements DiscountRule {
+
+	public static final MonetaryAmount MIN_TOTAL = Money.of(30, "EUR");
+
+	@Override
+	public String getDescription() {
+		return "FreeDrinkDiscount";
+	}
+
+	@Override
+	public Optional<MonetaryAmount> evaluate(PricedShopOrder order) {
+		if (order.getTotal().isLessThan(MIN_TOTAL)) {
+			return Optional.empty();
+		}
+		return order.getProducts(ProductCategory.DRINK.toString()).stream()
+				.map(Product::getPrice)
+				.min(Comparator.naturalOrder())
+				.filter(price -> order.getTotal().subtract(price).isGreaterThanOrEqualTo(MIN_TOTAL))
+				.map(MonetaryAmount::negate);
+	}
+}
@@ -0,0 +1,227 @@
+package papapizza.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Archive for invoices of past days. <br>
+ * Once a day is over its loose pdf files are appended to one segment file per day
+ * ({@code archive/yyyy-MM-dd.seg}) and an index ({@code yyyy-MM-dd.idx}) with
+ * filename, offset, length and modification time of each invoice. The index is only written
+ * after the segment is on disk and loose files are only deleted after that, so an interrupted seal
+ * is simply repeated.
+ */
+@Service
+public class InvoiceArchive {
+
+	private final Logger logger = LoggerFactory.getLogger(InvoiceArchive.class);
+
+	private static final String ARCHIVE_DIR = "archive";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final String INDEX_SUFFIX = ".idx";
+
+	@Getter
+	@AllArgsConstructor
+	static class Entry {
+		private final long offset;
+		private final long length;
+		private final long lastModified;
+	}
+
+	private final Path invoicePath;
+	private final Path archivePath;
+	//index per day, loaded lazily
+	private final Map<LocalDate, Map<String, Entry>> indexes = new ConcurrentHashMap<>();
+
+	public InvoiceArchive(@Value("${papapizza.invoice.path}") String invoicePath) {
+		this.invoicePath = Paths.get(invoicePath);
+		this.archivePath = this.invoicePath.resolve(ARCHIVE_DIR);
+		//noinspection ResultOfMethodCallIgnored
+		archivePath.toFile().mkdirs();
+	}
+
+	/**
+	 * @param filename of the invoice, starts with the day of the order
+	 * @return index entry of the invoice if it is archived
+	 */
+	public Optional<Entry> find(String filename) {
+		Optional<LocalDate> day = dayOf(filename);
+		if (day.isEmpty()) {
+			return Optional.empty();
+		}
+		return Optional.ofNullable(index(day.get()).get(filename));
+	}
+
+	public boolean contains(String filename) {
+		return find(filename).isPresent();
+	}
+
+	/**
+	 * Reads an archived invoice straight from its segment
+	 * @param filename of the invoice
+	 * @return bytes of the pdf, empty if not archived
+	 * @throws IOException if the segment could not be read
+	 */
+	public Optional<byte[]> read(String filename) throws IOException {
+		Optional<Entry> entry = find(filename);
+		if (entry.isEmpty()) {
+			return Optional.empty();
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(entry.get().getLength()));
+		try (FileChannel segment = FileChannel.open(segmentOf(dayOf(filename).get()), StandardOpenOption.READ)) {
+			long position = entry.get().getOffset();
+			while (buffer.hasRemaining()) {
+				int read = segment.read(buffer, position);
+				if (read < 0) {
+					throw new IOException("Segment truncated for invoice " + filename);
+				}
+				position += read;
+			}
+		}
+		return Optional.of(buffer.array());
+	}
+
+	/**
+	 * Seals every day before today, runs each night
+	 */
+	@Scheduled(cron = "${papapizza.invoice.archive-cron:0 30 3 * * *}")
+	public void sealPastDays() {
+		try {
+			sealBefore(LocalDate.now());
+		} catch (IOException e) {
+			logger.error("Could not archive invoices: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Moves all loose invoices of days before the given day into their segments
+	 * @param day first day that is not sealed
+	 * @throws IOException if a segment or index could not be written
+	 */
+	public synchronized void sealBefore(LocalDate day) throws IOException {
+		Map<LocalDate, List<Path>> looseByDay;
+		try (Stream<Path> files = Files.list(invoicePath)) {
+			looseByDay = files
+					.filter(file -> file.getFileName().toString().endsWith(".pdf"))
+					.filter(file -> dayOf(file.getFileName().toString()).filter(d -> d.isBefore(day)).isPresent())
+					.collect(Collectors.groupingBy(file -> dayOf(file.getFileName().toString()).get()));
+		}
+
+		for (Map.Entry<LocalDate, List<Path>> loose : looseByDay.entrySet()) {
+			seal(loose.getKey(), loose.getValue());
+		}
+	}
+
+	private void seal(LocalDate day, List<Path> files) throws IOException {
+		Map<String, Entry> index = index(day);
+		Map<String, Entry> added = new LinkedHashMap<>();
+
+		try (FileChannel segment = FileChannel.open(segmentOf(day),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			for (Path file : files) {
+				String filename = file.getFileName().toString();
+				//already archived, delete of the loose file failed last time
+				if (index.containsKey(filename)) {
+					continue;
+				}
+				long offset = segment.size();
+				try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+					long length = in.size();
+					long transferred = 0;
+					while (transferred < length) {
+						transferred += in.transferTo(transferred, length - transferred, segment);
+					}
+					added.put(filename, new Entry(offset, length, Files.getLastModifiedTime(file).toMillis()));
+				}
+			}
+			segment.force(true);
+		}
+
+		if (!added.isEmpty()) {
+			try (BufferedWriter writer = Files.newBufferedWriter(indexOf(day), StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+				for (Map.Entry<String, Entry> entry : added.entrySet()) {
+					writer.write(String.join("\t", entry.getKey(), String.valueOf(entry.getValue().getOffset()),
+							String.valueOf(entry.getValue().getLength()), String.valueOf(entry.getValue().getLastModified())));
+					writer.newLine();
+				}
+			}
+			try (FileChannel indexChannel = FileChannel.open(indexOf(day), StandardOpenOption.WRITE)) {
+				indexChannel.force(true);
+			}
+			index.putAll(added);
+		}
+
+		for (Path file : files) {
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				//i.e. still being downloaded on windows, removed on the next run
+				logger.warn("Could not remove archived invoice " + file.getFileName());
+			}
+		}
+		logger.info("archived " + added.size() + " invoices of " + day);
+	}
+
+	private Map<String, Entry> index(LocalDate day) {
+		return indexes.computeIfAbsent(day, this::loadIndex);
+	}
+
+	private Map<String, Entry> loadIndex(LocalDate day) {
+		Map<String, Entry> index = new ConcurrentHashMap<>();
+		Path indexFile = indexOf(day);
+		if (!Files.exists(indexFile)) {
+			return index;
+		}
+		try {
+			for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+				String[] fields = line.split("\t");
+				if (fields.length == 4) {
+					//later lines win, an entry can only be re-added after its index line got lost
+					index.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			logger.error("Could not read invoice index " + indexFile + ": " + e.getMessage());
+		}
+		return index;
+	}
+
+	private Path segmentOf(LocalDate day) {
+		return archivePath.resolve(day + SEGMENT_SUFFIX);
+	}
+
+	private Path indexOf(LocalDate day) {
+		return archivePath.resolve(day + INDEX_SUFFIX);
+	}
+
+	//invoice filenames start with yyyy-MM-dd of the order
+	private static Optional<LocalDate> dayOf(String filename) {
+		if (filename == null || filename.length() < 10) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of(LocalDate.parse(filename.substring(0, 10)));
+		} catch (DateTimeParseException e) {
+			return Optional.empty();
+		}
+	}
+}
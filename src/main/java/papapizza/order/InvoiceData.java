@@ -0,0 +1,43 @@
+package papapizza.order;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import javax.money.MonetaryAmount;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Immutable snapshot of everything printed on the invoice of a {@link ShopOrder}. <br>
+ * It is taken while the order is still attached, so the pdf can be rendered later
+ * on another thread without touching the database.
+ */
+@Getter
+@AllArgsConstructor
+public class InvoiceData {
+
+	@Getter
+	@AllArgsConstructor
+	public static class Line {
+		private final String label;
+		private final String quantity;
+		private final MonetaryAmount price;
+	}
+
+	private final String orderId;
+	private final String fileName;
+	private final long invoiceNo;
+	private final LocalDateTime timeCreated;
+	private final DeliveryType deliveryType;
+
+	private final String firstname;
+	private final String lastname;
+	private final String address;
+	private final String phone;
+	private final String oldTan;
+	private final String currentTan;
+
+	private final List<Line> orderLines;
+	private final List<Line> chargeLines;
+	private final MonetaryAmount total;
+}
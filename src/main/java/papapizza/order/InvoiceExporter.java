@@ -0,0 +1,165 @@
+package papapizza.order;
+
+import lombok.NonNull;
+import org.salespointframework.order.OrderIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams all invoices of a date range as zip. <br>
+ * Orders are handled in chunks: while one chunk is written, the missing pdfs of the next one
+ * are rendered on all cores. Only one chunk of invoices is in memory at a time.
+ */
+@Service
+public class InvoiceExporter {
+
+	private final Logger logger = LoggerFactory.getLogger(InvoiceExporter.class);
+
+	static final int CHUNK_SIZE = 64;
+	static final String MISSING_ENTRY = "missing.txt";
+
+	private final InvoiceHandler invoiceHandler;
+	private final InvoiceArchive invoiceArchive;
+	private final ShopOrderManagement<ShopOrder> shopOrderManagement;
+	private final ExecutorService renderPool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+	@Autowired
+	public InvoiceExporter(@NonNull InvoiceHandler invoiceHandler, @NonNull InvoiceArchive invoiceArchive,
+						   @NonNull ShopOrderManagement<ShopOrder> shopOrderManagement) {
+		this.invoiceHandler = invoiceHandler;
+		this.invoiceArchive = invoiceArchive;
+		this.shopOrderManagement = shopOrderManagement;
+	}
+
+	/**
+	 * Writes a zip of all invoices of orders created between from and to. Missing pdfs are rendered again,
+	 * invoices that still can not be read are listed in missing.txt
+	 * @param from first day, inclusive
+	 * @param to last day, inclusive
+	 * @param out stream to write the zip to, is not closed
+	 * @throws IOException if writing to out fails
+	 */
+	public void export(@NonNull LocalDate from, @NonNull LocalDate to, @NonNull OutputStream out) throws IOException {
+		List<Map.Entry<OrderIdentifier, String>> invoices = new ArrayList<>(shopOrderManagement.findInvoiceFilenames(from, to).entrySet());
+		List<String> missing = new ArrayList<>();
+		Set<String> written = new HashSet<>();
+
+		ZipOutputStream zip = new ZipOutputStream(out);
+		//pdfs are compressed already
+		zip.setLevel(Deflater.BEST_SPEED);
+
+		CompletableFuture<Void> rendering = regenerate(chunk(invoices, 0));
+		for (int start = 0; start < invoices.size(); start += CHUNK_SIZE) {
+			rendering.join();
+			List<Map.Entry<OrderIdentifier, String>> chunk = chunk(invoices, start);
+			//render the next chunk while this one is written
+			rendering = regenerate(chunk(invoices, start + CHUNK_SIZE));
+
+			for (Map.Entry<OrderIdentifier, String> invoice : chunk) {
+				//orders created in the same millisecond share their invoice
+				if (!written.add(invoice.getValue())) {
+					continue;
+				}
+				if (!writeEntry(zip, invoice.getValue())) {
+					missing.add(invoice.getKey().getIdentifier() + "\t" + invoice.getValue());
+				}
+			}
+			zip.flush();
+		}
+
+		if (!missing.isEmpty()) {
+			zip.putNextEntry(new ZipEntry(MISSING_ENTRY));
+			zip.write(String.join("\n", missing).getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+		zip.finish();
+		logger.info("exported " + (written.size() - missing.size()) + " invoices from " + from + " to " + to);
+	}
+
+	private static List<Map.Entry<OrderIdentifier, String>> chunk(List<Map.Entry<OrderIdentifier, String>> invoices, int start) {
+		return invoices.subList(Math.min(start, invoices.size()), Math.min(start + CHUNK_SIZE, invoices.size()));
+	}
+
+	/**
+	 * Snapshots the orders of missing invoices and renders them on the pool
+	 */
+	private CompletableFuture<Void> regenerate(List<Map.Entry<OrderIdentifier, String>> chunk) {
+		List<InvoiceData> snapshots = new ArrayList<>();
+		for (Map.Entry<OrderIdentifier, String> invoice : chunk) {
+			if (invoiceHandler.exists(invoice.getValue())) {
+				continue;
+			}
+			try {
+				//under the order's lock, a missing invoice no and tans are fixed on the order and saved
+				shopOrderManagement.update(invoice.getKey().getIdentifier(), order -> {
+					boolean numbered = order.getInvoiceNo() != null;
+					InvoiceData snapshot;
+					try {
+						snapshot = invoiceHandler.snapshot(order);
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+					if (!numbered) {
+						shopOrderManagement.save(order);
+					}
+					return snapshot;
+				}).ifPresent(snapshots::add);
+			} catch (RuntimeException e) {
+				logger.error("Could not snapshot order " + invoice.getKey().getIdentifier() + ": " + e.getMessage());
+			}
+		}
+
+		return CompletableFuture.allOf(snapshots.stream()
+				.map(snapshot -> CompletableFuture.runAsync(() -> {
+					try {
+						invoiceHandler.render(snapshot);
+					} catch (IOException | RuntimeException e) {
+						logger.error("Could not render invoice " + snapshot.getFileName() + ": " + e.getMessage());
+					}
+				}, renderPool))
+				.toArray(CompletableFuture[]::new));
+	}
+
+	private boolean writeEntry(ZipOutputStream zip, String filename) throws IOException {
+		try (InputStream in = Files.newInputStream(Paths.get(invoiceHandler.getInvoicePath().toString(), filename))) {
+			zip.putNextEntry(new ZipEntry(filename));
+			in.transferTo(zip);
+			zip.closeEntry();
+			return true;
+		} catch (NoSuchFileException e) {
+			//not loose (anymore), day is sealed
+		}
+		Optional<byte[]> archived = invoiceArchive.read(filename);
+		if (archived.isPresent()) {
+			zip.putNextEntry(new ZipEntry(filename));
+			zip.write(archived.get());
+			zip.closeEntry();
+			return true;
+		}
+		return false;
+	}
+
+	@PreDestroy
+	void shutdown() {
+		renderPool.shutdownNow();
+	}
+}
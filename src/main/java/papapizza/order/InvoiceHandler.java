@@ -7,56 +7,66 @@ import lombok.Getter;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.salespointframework.catalog.Product;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
 import papapizza.customer.Customer;
-import papapizza.customer.LentDishset;
 import papapizza.inventory.ShopCatalogManagement;
 import papapizza.util.PizzaStatics;
 
 import javax.money.MonetaryAmount;
 import java.awt.*;
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 
 @Service
 public class InvoiceHandler {
 
 	private final Logger logger = LoggerFactory.getLogger(InvoiceHandler.class);
 
-	private static final String PAPA_PATH_PREFIX = "PapaPizza";
-	private static final String INVOICE_PATH_PREFIX = "Invoice";
 	private static final String INVOICE_HEAD_NAME = "invoiceHEAD";
 
 	@Getter
-	private Path invoicePath;
+	private final Path invoicePath;
 
 	private ShopCatalogManagement catalogManagement;
+	private InvoiceArchive invoiceArchive;
 
-	public InvoiceHandler(){
-		createPath();
-		try {
-			createInvoiceHeadFile();
-		} catch (IOException e) {
-			logger.error("Could not create invoice HEAD file");
-		}
+	private final InvoiceNumberAllocator invoiceNumbers;
+	//static parts of the layout, built once
+	private final InvoiceTemplate template = new InvoiceTemplate();
+
+	/**
+	 * @param invoicePath directory of the invoices, see papapizza.invoice.path
+	 */
+	public InvoiceHandler(@Value("${papapizza.invoice.path}") String invoicePath){
+		this.invoicePath = Paths.get(invoicePath);
+		//try to create parent and directory
+		//noinspection ResultOfMethodCallIgnored
+		this.invoicePath.toFile().mkdirs();
+		logger.info("Invoice path:"+ this.invoicePath);
+		invoiceNumbers = new InvoiceNumberAllocator(this.invoicePath.resolve(INVOICE_HEAD_NAME));
 	}
 
 	@Autowired
@@ -64,244 +74,269 @@ public class InvoiceHandler {
 		this.catalogManagement = catalogManagement;
 	}
 
-	@SuppressWarnings("ResultOfMethodCallIgnored")
-	private void createPath(){
-		//root file directory of papapizza application
-		Path papa_root = Paths.get(System.getenv("APPDATA"),PAPA_PATH_PREFIX);
-		//subdir for invoices
-		invoicePath = Paths.get(papa_root.toString(), INVOICE_PATH_PREFIX);
-		//try to create parent and directory
-		invoicePath.toFile().mkdirs();
-		logger.info("Invoice path:"+ invoicePath.toString());
-	}
-
-	@SuppressWarnings("ResultOfMethodCallIgnored")
-	private void createInvoiceHeadFile() throws IOException {
-		File invoiceHead = new File(Paths.get(invoicePath.toString(),INVOICE_HEAD_NAME).toString());
-		if(!invoiceHead.exists()){
-			logger.info("creating invoice head file");
-			invoiceHead.createNewFile();
-			FileOutputStream fout = new FileOutputStream(invoiceHead);
-			DataOutputStream dout = new DataOutputStream(fout);
-			dout.writeLong(0L);
-			dout.close();
-			fout.close();
-		}else{
-			logger.info("invoiceHEAD file alr exists, no need to create");
-		}
+	@Autowired
+	public void setInvoiceArchive(InvoiceArchive invoiceArchive){
+		this.invoiceArchive = invoiceArchive;
 	}
 
-	private long incrementInvoiceHead() throws IOException {
-		File invoiceHeadFile = new File(Paths.get(invoicePath.toString(), INVOICE_HEAD_NAME).toString());
-		//get and increment current invoice no
-		DataInputStream din = new DataInputStream(new FileInputStream(invoiceHeadFile));
-		long head = din.readLong() +1L;
-		din.close();
-
-		//write invoice number to file again
-		DataOutputStream dout = new DataOutputStream(new FileOutputStream(invoiceHeadFile));
-		dout.writeLong(head);
-		dout.close();
-		return head;
+	/**
+	 * @param order to get the invoice file name for
+	 * @return file name of the order's invoice, derived from the order's creation time
+	 */
+	public String getInvoiceFilename(ShopOrder order) {
+		return new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss-SSS")
+				.format(PizzaStatics.localDateTimeToDate(order.getTimeCreated())) + ".pdf";
 	}
 
-	public String createInvoice(ShopOrder order) throws IOException {
-		String fileName = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss-SSS")
-				.format(PizzaStatics.localDateTimeToDate(order.getTimeCreated()));
-		fileName += ".pdf";
-		logger.info("creating new invoice with filename "+fileName);
-
+	/**
+	 * Collects everything printed on the invoice, needs the order to be attached. <br>
+	 * The invoice number and tans are fixed on the order the first time,
+	 * so retried renderings and reprints of a missing pdf look the same.
+	 * @param order to create the snapshot of
+	 * @return InvoiceData of the order
+	 * @throws IOException if no invoice number could be allocated
+	 */
+	public InvoiceData snapshot(ShopOrder order) throws IOException {
 		Customer customer = order.getCustomer();
 
-		//new pdf document in DIN A4
-		PDDocument invoicePdf = new PDDocument();
-		PDPage invoicePage = new PDPage(PDRectangle.A4);
-		invoicePdf.addPage(invoicePage);
-
-		//Head = Headline, Customer, TAN, Invoice Number
-		PDPageContentStream cont = new PDPageContentStream(invoicePdf, invoicePage);
-		float PAGE_HEIGHT = PDRectangle.A4.getHeight();
-		cont.beginText();
-		//headline
-		cont.newLineAtOffset(50f, PAGE_HEIGHT-40f);
-		cont.setFont(PDType1Font.HELVETICA_BOLD, 20);
-		cont.showText("PapaPizza Invoice");
-		cont.endText();
-
-		//==================== Header TABLE =======================
-		//Table for customer and invoice details
-		float margin = 50;
-		float yStartNewPage = invoicePage.getMediaBox().getHeight() - (2 * margin);
-		float tableWidth = invoicePage.getMediaBox().getWidth() - (2 * margin);
-		float bottomMargin = 70;
-		float yPosition = PAGE_HEIGHT-60f;
-
-		BaseTable headerTable = new BaseTable(yPosition, yStartNewPage, bottomMargin,
-				tableWidth, margin, invoicePdf, invoicePage, false, true);
-		createHeaderTable(headerTable, customer);
-		headerTable.draw();
-
-		//stroke rectangle around table=header
-		float tableHeight = headerTable.getHeaderAndDataHeight();
-		cont.setStrokingColor(Color.black);
-		cont.addRect(50,yPosition-tableHeight,invoicePage.getMediaBox().getWidth()-100,tableHeight);
-		cont.stroke();
-
-		//================== Body/Order details =======================
-		float orderTableLabelPosY = yPosition-tableHeight-30f;
-		cont.beginText();
-		cont.setFont(PDType1Font.HELVETICA_BOLD, 16f);
-		cont.newLineAtOffset(50f, orderTableLabelPosY);
-		cont.showText("ORDER DETAILS");
-		cont.endText();
-
-		BaseTable bodyTable = new BaseTable(orderTableLabelPosY-10f,yStartNewPage, bottomMargin,
-				tableWidth, margin, invoicePdf, invoicePage, true, true);
-		createBodyTable(bodyTable, order);
-		bodyTable.draw();
-
-		//==================== Footer/Total, dishset return info ======================
-		float totalTextPosY = orderTableLabelPosY-bodyTable.getHeaderAndDataHeight()-30f;
-		cont.beginText();
-		cont.setFont(PDType1Font.HELVETICA_BOLD, 14f);
-		cont.newLineAtOffset(50f, totalTextPosY);
+		List<InvoiceData.Line> orderLines = new ArrayList<>();
+		order.getOrderLines().forEach(orderLine -> {
+			Product product = catalogManagement.findById(orderLine.getProductIdentifier());
+			String prodInfoStr = String.format("[%s] %s",product.getCategories().stream().findFirst().get(),
+					orderLine.getProductName());
+			MonetaryAmount monPrice = orderLine.getPrice();
+			if(order.getDeliveryType()==DeliveryType.RETURN_ORDER){
+				monPrice = monPrice.negate();
+			}
+			orderLines.add(new InvoiceData.Line(prodInfoStr, orderLine.getQuantity().getAmount().intValue()+"x", monPrice));
+		});
+
+		List<InvoiceData.Line> chargeLines = new ArrayList<>();
+		order.getChargeLines().forEach(chargeLine -> chargeLines.add(new InvoiceData.Line(
+				String.format("[CHARGE] %s",chargeLine.getDescription()), "--charge--", chargeLine.getPrice())));
 
 		MonetaryAmount totalPrice = order.getTotal();
 		if(order.getDeliveryType()==DeliveryType.RETURN_ORDER){
 			totalPrice = totalPrice.negate();
 		}
-		String totalLine = String.format("TOTAL: %s",totalPrice.toString());
-		cont.showText(totalLine);
-		cont.endText();
-		cont.moveTo(50f,totalTextPosY-1f);
-		PDFont font = PDType1Font.HELVETICA_BOLD;
-		int fontSize = 14;
-		float lineWidth = font.getStringWidth(totalLine) / 1000 * fontSize;
-		cont.lineTo(lineWidth+50f, totalTextPosY-1f);
-
-		//Dishset return info
-		//TODO if actually lent
-		cont.beginText();
-		cont.setFont(PDType1Font.HELVETICA, 10f);
-		cont.newLineAtOffset(50f, 20f);
-		String infoText = String.format("Please keep in mind that lent dishsets must be returned within %d days!",
-				LentDishset.RETURN_TIME/86400);
-		cont.showText(infoText);
-		cont.endText();
-
-		cont.close();
-		//save changes & close
-		invoicePdf.save(Paths.get(invoicePath.toString(),fileName).toString());
-		invoicePdf.close();
 
+		if(order.getInvoiceNo() == null){
+			order.setInvoiceNo(invoiceNumbers.next());
+			order.setInvoiceOldTan(customer.getOldTan() == null ? "n/a" : customer.getOldTan().toString());
+			order.setInvoiceNewTan(customer.getCurrentTan().toString());
+		}
+		logger.info("invoice no:"+order.getInvoiceNo());
+
+		return new InvoiceData(Objects.requireNonNull(order.getId()).getIdentifier(), getInvoiceFilename(order),
+				order.getInvoiceNo(), order.getTimeCreated(), order.getDeliveryType(),
+				customer.getFirstname(), customer.getLastname(), customer.getAddress(), customer.getPhone(),
+				order.getInvoiceOldTan(), order.getInvoiceNewTan(),
+				orderLines, chargeLines, totalPrice);
+	}
+
+	public String createInvoice(ShopOrder order) throws IOException {
+		return render(snapshot(order));
+	}
+
+	/**
+	 * Renders and stores the pdf of an invoice, does not need any database access
+	 * @param invoice snapshot of the order
+	 * @return file name of the pdf
+	 * @throws IOException if the pdf could not be written
+	 */
+	public String render(InvoiceData invoice) throws IOException {
+		String fileName = invoice.getFileName();
+		logger.info("creating new invoice with filename "+fileName);
+
+		//written aside and moved into place, the status of an invoice is whether its file exists
+		Path target = Paths.get(invoicePath.toString(), fileName);
+		Path tmp = Files.createTempFile(invoicePath, fileName, ".tmp");
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp.toFile()))) {
+			write(invoice, out);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+		Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 		return fileName;
 	}
 
-	private void createBodyTable(BaseTable bodyTable, ShopOrder order){
-		Row<PDPage> headerRow = bodyTable.createRow(14f);
-		Map<String, String> headerLabels = Map.of(
-				"productInfo","PRODUCT",
-				"quantity","QUANTITY",
-				"price","PRICE"
-		);
-		Cell<PDPage> prodInfoLabel = headerRow.createCell(50f,headerLabels.get("productInfo"));
-		Cell<PDPage> quantityLabel = headerRow.createCell(20f,headerLabels.get("quantity"));
-		Cell<PDPage> priceLabel = headerRow.createCell(30f, headerLabels.get("price"));
-		List.of(prodInfoLabel, quantityLabel, priceLabel).forEach(label -> {
-			label.setFont(PDType1Font.HELVETICA_BOLD);
-			label.setFontSize(14f);
-		});
+	/**
+	 * Writes the pdf of an invoice to the given stream
+	 * @param invoice snapshot of the order
+	 * @param out stream to write the pdf to, is not closed
+	 * @throws IOException if the pdf could not be written
+	 */
+	public void write(InvoiceData invoice, OutputStream out) throws IOException {
+		write(invoice, out, template);
+	}
 
-		order.getOrderLines().forEach(orderLine -> {
-			Row<PDPage> bodyRow = bodyTable.createRow(14f);
-			Product product = catalogManagement.findById(orderLine.getProductIdentifier());
-			String prodInfoStr = String.format("[%s] %s",product.getCategories().stream().findFirst().get(),
-					orderLine.getProductName());
-			Cell<PDPage> prodInfo = bodyRow.createCell(50f, prodInfoStr);
-			Cell<PDPage> quantity = bodyRow.createCell(20f,
-					orderLine.getQuantity().getAmount().intValue()+"x");
-			MonetaryAmount monPrice = orderLine.getPrice();
-			if(order.getDeliveryType()==DeliveryType.RETURN_ORDER){
-				monPrice = monPrice.negate();
+	//the template is a parameter for the benchmark, which compares against a template built per invoice
+	void write(InvoiceData invoice, OutputStream out, InvoiceTemplate template) throws IOException {
+		//copy of the prebuilt page, headline, header titles and dishset info are already drawn
+		try (PDDocument invoicePdf = template.newDocument()) {
+			PDPage invoicePage = invoicePdf.getPage(0);
+
+			try (PDPageContentStream cont = new PDPageContentStream(invoicePdf, invoicePage,
+					PDPageContentStream.AppendMode.APPEND, true)) {
+				//==================== Header TABLE =======================
+				//customer and invoice details below the prebuilt titles
+				BaseTable headerTable = new BaseTable(template.getDetailsRowY(), InvoiceTemplate.Y_START_NEW_PAGE, InvoiceTemplate.BOTTOM_MARGIN,
+						InvoiceTemplate.TABLE_WIDTH, InvoiceTemplate.MARGIN, invoicePdf, invoicePage, false, true);
+				createHeaderTable(headerTable, invoice);
+				headerTable.draw();
+
+				//stroke rectangle around table=header, titles included
+				float yPosition = InvoiceTemplate.HEADER_TABLE_Y;
+				float tableHeight = yPosition-template.getDetailsRowY()+headerTable.getHeaderAndDataHeight();
+				cont.setStrokingColor(Color.black);
+				cont.addRect(InvoiceTemplate.MARGIN, yPosition-tableHeight, InvoiceTemplate.TABLE_WIDTH, tableHeight);
+				cont.stroke();
+
+				//================== Body/Order details =======================
+				float orderTableLabelPosY = yPosition-tableHeight-30f;
+				cont.beginText();
+				cont.setFont(InvoiceTemplate.FONT_BOLD, 16f);
+				cont.newLineAtOffset(InvoiceTemplate.MARGIN, orderTableLabelPosY);
+				cont.showText(InvoiceTemplate.ORDER_DETAILS);
+				cont.endText();
+
+				BaseTable bodyTable = new BaseTable(orderTableLabelPosY-10f, InvoiceTemplate.Y_START_NEW_PAGE, InvoiceTemplate.BOTTOM_MARGIN,
+						InvoiceTemplate.TABLE_WIDTH, InvoiceTemplate.MARGIN, invoicePdf, invoicePage, true, true);
+				createBodyTable(bodyTable, invoice);
+				bodyTable.draw();
+
+				//==================== Footer/Total ======================
+				float totalTextPosY = orderTableLabelPosY-bodyTable.getHeaderAndDataHeight()-30f;
+				String total = invoice.getTotal().toString();
+				cont.beginText();
+				cont.setFont(InvoiceTemplate.FONT_BOLD, InvoiceTemplate.TOTAL_FONT_SIZE);
+				cont.newLineAtOffset(InvoiceTemplate.MARGIN, totalTextPosY);
+				cont.showText(template.totalLine(total));
+				cont.endText();
+				cont.moveTo(InvoiceTemplate.MARGIN, totalTextPosY-1f);
+				cont.lineTo(template.totalLineWidth(total)+InvoiceTemplate.MARGIN, totalTextPosY-1f);
 			}
-			Cell<PDPage> price = bodyRow.createCell(30f, monPrice.toString());
-			price.setTextColor(Color.red);
-			List.of(prodInfo, quantity, price).forEach(cell -> {
-				cell.setFont(PDType1Font.HELVETICA);
-				cell.setFontSize(14f);
-			});
-		});
 
-		order.getChargeLines().forEach(chargeLine -> {
-			Row<PDPage> bodyRow = bodyTable.createRow(14f);
-			String chargeInfoStr = String.format("[CHARGE] %s",chargeLine.getDescription());
-			Cell<PDPage> prodInfo = bodyRow.createCell(50f, chargeInfoStr);
-			Cell<PDPage> quantity = bodyRow.createCell(20f, "--charge--");
-			Cell<PDPage> price = bodyRow.createCell(30f, chargeLine.getPrice().toString());
-			price.setTextColor(Color.blue);
-			List.of(prodInfo, quantity, price).forEach(cell -> {
-				cell.setFont(PDType1Font.HELVETICA);
-				cell.setFontSize(14f);
-			});
-		});
+			invoicePdf.save(out);
+		}
 	}
 
-	private void createHeaderTable(BaseTable headerTable, Customer customer) throws IOException {
-		Row<PDPage> detailsTopRow = headerTable.createRow(12f);
-		Cell<PDPage> toDetails = detailsTopRow.createCell(50, "INVOICE TO");
-		toDetails.setTextColor(Color.gray);
-		toDetails.setFontSize(12);
-		Cell<PDPage> invoiceHeadline = detailsTopRow.createCell(50, "INVOICE DETAILS");
-		invoiceHeadline.setTextColor(Color.gray);
-		invoiceHeadline.setFontSize(12);
+	private void createBodyTable(BaseTable bodyTable, InvoiceData invoice){
+		Row<PDPage> headerRow = bodyTable.createRow(14f);
+		for (int i = 0; i < InvoiceTemplate.BODY_LABELS.length; i++) {
+			Cell<PDPage> label = headerRow.createCell(InvoiceTemplate.BODY_COLUMN_WIDTHS[i], InvoiceTemplate.BODY_LABELS[i]);
+			label.setFont(InvoiceTemplate.FONT_BOLD);
+			label.setFontSize(14f);
+		}
+
+		invoice.getOrderLines().forEach(line -> createBodyRow(bodyTable, line, Color.red));
+		invoice.getChargeLines().forEach(line -> createBodyRow(bodyTable, line, Color.blue));
+	}
 
+	private void createBodyRow(BaseTable bodyTable, InvoiceData.Line line, Color priceColor){
+		Row<PDPage> bodyRow = bodyTable.createRow(14f);
+		Cell<PDPage> prodInfo = bodyRow.createCell(InvoiceTemplate.BODY_COLUMN_WIDTHS[0], line.getLabel());
+		Cell<PDPage> quantity = bodyRow.createCell(InvoiceTemplate.BODY_COLUMN_WIDTHS[1], line.getQuantity());
+		Cell<PDPage> price = bodyRow.createCell(InvoiceTemplate.BODY_COLUMN_WIDTHS[2], line.getPrice().toString());
+		price.setTextColor(priceColor);
+		for (Cell<PDPage> cell : List.of(prodInfo, quantity, price)) {
+			cell.setFont(InvoiceTemplate.FONT);
+			cell.setFontSize(14f);
+		}
+	}
+
+	private void createHeaderTable(BaseTable headerTable, InvoiceData invoice) {
+		//the title row is part of the template
 		Row<PDPage> row = headerTable.createRow(14f);
 		//customer
 		String[] cstmrDet = {
-				"<b>"+String.format("%s %s", customer.getFirstname(), customer.getLastname())+"</b>",  //Name
-				customer.getAddress(), //Address
-				"PHONE #: " + customer.getPhone() //Phone
+				"<b>"+String.format("%s %s", invoice.getFirstname(), invoice.getLastname())+"</b>",  //Name
+				invoice.getAddress(), //Address
+				"PHONE #: " + invoice.getPhone() //Phone
 		};
 		Cell<PDPage> cstmrCell = row.createCell(50, String.join("<br>", cstmrDet));
 		cstmrCell.setFontSize(14);
 		cstmrCell.setLineSpacing(1.1f);
 		//invoice
-		long invoiceNo = incrementInvoiceHead();
-		logger.info("invoice no:"+invoiceNo);
-		String[] invoiceDetLabels = {
-				"INVOICE #:",
-				"INVOICE DATE:",
-				"USED TAN:",
-				"<b>NEW TAN:</b>"
-		};
-		Cell<PDPage> invoiceCellLabels = row.createCell(25, String.join("<br>", invoiceDetLabels));
+		Cell<PDPage> invoiceCellLabels = row.createCell(25, InvoiceTemplate.INVOICE_DETAIL_LABELS);
 		invoiceCellLabels.setFontSize(14);
 		invoiceCellLabels.setLineSpacing(1.1f);
 
 		String[] invoiceDet = {
-				invoiceNo+"",
-				LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")),
-				customer.getOldTan() == null ? "n/a" : customer.getOldTan().toString(),
-				"<b>"+customer.getCurrentTan().toString()+"</b>"
+				invoice.getInvoiceNo()+"",
+				invoice.getTimeCreated().format(InvoiceTemplate.INVOICE_DATE_FORMAT),
+				invoice.getOldTan(),
+				"<b>"+invoice.getCurrentTan()+"</b>"
 		};
 		Cell<PDPage> invoiceCell = row.createCell(25, String.join("<br>", invoiceDet));
 		invoiceCell.setFontSize(14);
 		invoiceCell.setLineSpacing(1.1f);
 	}
 
-	public ResponseEntity<InputStreamResource> getInvoiceResponse(String filename){
-		File invoiceFile = new File(Paths.get(invoicePath.toString(), filename).toString());
-		//prep headers and payload
-		HttpHeaders respHeaders = new HttpHeaders();
-		respHeaders.setContentType(MediaType.APPLICATION_PDF);
-		respHeaders.setContentLength(invoiceFile.length());
-		respHeaders.setContentDispositionFormData("attachment", invoiceFile.getName());
-		try {
-			InputStreamResource isr = new InputStreamResource(new FileInputStream(invoiceFile));
-			return new ResponseEntity<>(isr, respHeaders, HttpStatus.OK);
-		} catch (FileNotFoundException e) {
-			logger.error("File not found: "+filename);
-			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+	/**
+	 * @param filename of the invoice
+	 * @return true if the pdf of the invoice has been written, loose or archived
+	 */
+	public boolean exists(String filename){
+		return filename != null && (Paths.get(invoicePath.toString(), filename).toFile().exists()
+				|| invoiceArchive.contains(filename));
+	}
+
+	/**
+	 * Response for downloading an invoice. <br>
+	 * Answers 304 if the client's copy is current, Range requests are served by spring
+	 * for the resource (206). Invoices of sealed days are read straight from their archive segment.
+	 * @param filename of the invoice
+	 * @param request to check If-None-Match/If-Modified-Since against
+	 * @return pdf response, 304 or 404 if the invoice does not exist
+	 */
+	public ResponseEntity<Resource> getInvoiceResponse(String filename, WebRequest request){
+		if(filename == null){
+			return ResponseEntity.notFound().build();
+		}
+		File invoiceFile = Paths.get(invoicePath.toString(), filename).toFile();
+		Optional<InvoiceArchive.Entry> archived = Optional.empty();
+		long length, lastModified;
+		if(invoiceFile.exists()){
+			length = invoiceFile.length();
+			lastModified = invoiceFile.lastModified();
+		}else{
+			archived = invoiceArchive.find(filename);
+			if(archived.isEmpty()){
+				logger.error("File not found: "+filename);
+				return ResponseEntity.notFound().build();
+			}
+			length = archived.get().getLength();
+			lastModified = archived.get().getLastModified();
+		}
+		//weak, a regenerated pdf has the same content but not the same bytes
+		String eTag = String.format("W/\"%x-%x\"", length, lastModified);
+
+		if(request.checkNotModified(eTag, lastModified)){
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).lastModified(lastModified).build();
+		}
+
+		//the pdf is only read once the client's copy turned out to be stale
+		Resource body;
+		if(archived.isEmpty()){
+			body = new FileSystemResource(invoiceFile);
+		}else{
+			try {
+				body = new ByteArrayResource(invoiceArchive.read(filename).orElseThrow());
+			} catch (IOException e) {
+				logger.error("Could not read archived invoice "+filename+": "+e.getMessage());
+				return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+			}
 		}
+
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_PDF)
+				.eTag(eTag)
+				.lastModified(lastModified)
+				.cacheControl(CacheControl.noCache().cachePrivate())
+				.header(HttpHeaders.ACCEPT_RANGES, "bytes")
+				.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+				.body(body);
 	}
 }
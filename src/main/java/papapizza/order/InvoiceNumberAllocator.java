@@ -0,0 +1,76 @@
+package papapizza.order;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hands out invoice numbers from the invoiceHEAD file. <br>
+ * The file holds the highest number ever reserved. Numbers are reserved in blocks under a file lock,
+ * so the file is only touched once per block. Numbers of a block not used before shutdown are skipped,
+ * numbers are never handed out twice.
+ */
+class InvoiceNumberAllocator {
+
+	static final int BLOCK_SIZE = 50;
+
+	private final Path headFile;
+	private final int blockSize;
+
+	//next number to hand out and last number of the current block
+	private long next = 1;
+	private long reservedUpTo = 0;
+
+	InvoiceNumberAllocator(@NonNull Path headFile) {
+		this(headFile, BLOCK_SIZE);
+	}
+
+	InvoiceNumberAllocator(@NonNull Path headFile, int blockSize) {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("blockSize must be positive");
+		}
+		this.headFile = headFile;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * @return next unused invoice number
+	 * @throws IOException if a new block could not be reserved
+	 */
+	synchronized long next() throws IOException {
+		if (next > reservedUpTo) {
+			reserveBlock();
+		}
+		return next++;
+	}
+
+	private void reserveBlock() throws IOException {
+		try (FileChannel channel = FileChannel.open(headFile,
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			 FileLock ignored = channel.lock()) {
+			long head = 0;
+			if (channel.size() >= Long.BYTES) {
+				ByteBuffer in = ByteBuffer.allocate(Long.BYTES);
+				while (in.hasRemaining() && channel.read(in, in.position()) > 0) {
+					//read until the long is complete
+				}
+				head = in.flip().getLong();
+			}
+
+			ByteBuffer out = ByteBuffer.allocate(Long.BYTES).putLong(head + blockSize).flip();
+			while (out.hasRemaining()) {
+				channel.write(out, out.position());
+			}
+			//block only counts as reserved once it is on disk
+			channel.force(true);
+
+			next = head + 1;
+			reservedUpTo = head + blockSize;
+		}
+	}
+}
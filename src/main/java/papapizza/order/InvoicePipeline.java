@@ -0,0 +1,157 @@
+package papapizza.order;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+/**
+ * Renders invoices in the background, so creating an order does not wait for the pdf. <br>
+ * The order is snapshotted on the calling thread, only the rendering runs on the worker pool.
+ * It is queued once the transaction of the snapshot commits, a retried or rolled back change queues nothing.
+ * Only running renderings are kept in memory, otherwise the invoice file itself tells whether it is READY.
+ */
+@Service
+public class InvoicePipeline {
+
+	private final Logger logger = LoggerFactory.getLogger(InvoicePipeline.class);
+
+	static final int WORKER_COUNT = 2;
+	static final int QUEUE_CAPACITY = 100;
+	static final int MAX_ATTEMPTS = 3;
+	static final long RETRY_DELAY_MS = 500;
+
+	private final InvoiceHandler invoiceHandler;
+	private final ThreadPoolExecutor executor;
+	private final Map<String, CompletableFuture<String>> invoices = new ConcurrentHashMap<>();
+
+	@Autowired
+	public InvoicePipeline(@NonNull InvoiceHandler invoiceHandler) {
+		this.invoiceHandler = invoiceHandler;
+		//bounded queue, if it is full the invoice fails and is rendered again on download
+		this.executor = new ThreadPoolExecutor(WORKER_COUNT, WORKER_COUNT, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+					Thread thread = new Thread(runnable, "invoice-worker");
+					thread.setDaemon(true);
+					return thread;
+				}, new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Snapshots the invoice of the order and sets its invoice filename, number and tans right away. <br>
+	 * The order has to be saved by the caller, the pdf is queued after the surrounding transaction committed
+	 * (right away without one). Safe to call from a change which may be retried.
+	 * @param order to create the invoice for, has to be attached
+	 */
+	public void submit(@NonNull ShopOrder order) {
+		order.setInvoiceFilename(invoiceHandler.getInvoiceFilename(order));
+
+		InvoiceData invoice;
+		try {
+			invoice = invoiceHandler.snapshot(order);
+		} catch (IOException e) {
+			logger.error("Could not allocate invoice number for order " + Objects.requireNonNull(order.getId()).getIdentifier());
+			return;
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					enqueue(invoice);
+				}
+			});
+		} else {
+			enqueue(invoice);
+		}
+	}
+
+	private void enqueue(InvoiceData invoice) {
+		CompletableFuture<String> future = new CompletableFuture<>();
+		//at most one rendering per order, a second request while one is running gets the same pdf anyway
+		if (invoices.compute(invoice.getOrderId(),
+				(id, running) -> running != null && !running.isDone() ? running : future) != future) {
+			return;
+		}
+		//only running renderings are kept, afterwards the invoice file tells the status
+		future.whenComplete((fileName, e) -> invoices.remove(invoice.getOrderId(), future));
+		try {
+			executor.execute(() -> render(invoice, future));
+		} catch (RejectedExecutionException e) {
+			logger.warn("Invoice queue is full, invoice for order " + invoice.getOrderId() + " is rendered on download");
+			future.completeExceptionally(e);
+		}
+	}
+
+	private void render(InvoiceData invoice, CompletableFuture<String> future) {
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+			try {
+				future.complete(invoiceHandler.render(invoice));
+				return;
+			} catch (IOException | RuntimeException e) {
+				logger.warn("Invoice for order " + invoice.getOrderId() + " failed (attempt " + attempt + "): " + e.getMessage());
+				if (attempt == MAX_ATTEMPTS) {
+					future.completeExceptionally(e);
+					return;
+				}
+				try {
+					Thread.sleep(RETRY_DELAY_MS * attempt);
+				} catch (InterruptedException interrupted) {
+					Thread.currentThread().interrupt();
+					future.completeExceptionally(interrupted);
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param order to get the invoice status of
+	 * @return current InvoiceStatus, FAILED if there is no pdf and none is being rendered
+	 */
+	public InvoiceStatus getStatus(@NonNull ShopOrder order) {
+		CompletableFuture<String> future = invoices.get(Objects.requireNonNull(order.getId()).getIdentifier());
+		if (future != null && !future.isDone()) {
+			return InvoiceStatus.PENDING;
+		}
+		//done or not rendered since startup, a failed rendering leaves no pdf
+		return invoiceHandler.exists(order.getInvoiceFilename()) ? InvoiceStatus.READY : InvoiceStatus.FAILED;
+	}
+
+	/**
+	 * Waits at most timeout for a pending invoice
+	 * @param order to wait for
+	 * @param timeout max time to block
+	 * @return InvoiceStatus after waiting
+	 */
+	public InvoiceStatus await(@NonNull ShopOrder order, @NonNull Duration timeout) {
+		CompletableFuture<String> future = invoices.get(Objects.requireNonNull(order.getId()).getIdentifier());
+		if (future != null) {
+			try {
+				future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException | TimeoutException ignored) {
+				//reflected by the status
+			}
+		}
+		return getStatus(order);
+	}
+
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		executor.shutdown();
+		if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,8 @@
+package papapizza.order;
+
+/**
+ * State of an invoice pdf in the {@link InvoicePipeline}
+ */
+public enum InvoiceStatus {
+	PENDING, READY, FAILED
+}
@@ -0,0 +1,138 @@
+package papapizza.order;
+
+import be.quodlibet.boxable.BaseTable;
+import be.quodlibet.boxable.Cell;
+import be.quodlibet.boxable.Row;
+import lombok.Getter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import papapizza.app.exc.PapaPizzaRunException;
+import papapizza.customer.LentDishset;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Everything of the invoice layout that is the same for every order. <br>
+ * The static regions (headline, title row of the header table, dishset info) are drawn once
+ * into a one page pdf, every invoice starts as a copy of it and only gets the dynamic cells drawn on top.
+ */
+final class InvoiceTemplate {
+
+	static final PDRectangle PAGE_SIZE = PDRectangle.A4;
+	static final float PAGE_HEIGHT = PAGE_SIZE.getHeight();
+	static final float MARGIN = 50f;
+	static final float BOTTOM_MARGIN = 70f;
+	static final float TABLE_WIDTH = PAGE_SIZE.getWidth() - (2 * MARGIN);
+	static final float Y_START_NEW_PAGE = PAGE_HEIGHT - (2 * MARGIN);
+	static final float HEADLINE_Y = PAGE_HEIGHT - 40f;
+	static final float HEADER_TABLE_Y = PAGE_HEIGHT - 60f;
+
+	static final PDFont FONT = PDType1Font.HELVETICA;
+	static final PDFont FONT_BOLD = PDType1Font.HELVETICA_BOLD;
+	static final float TOTAL_FONT_SIZE = 14f;
+
+	static final String HEADLINE = "PapaPizza Invoice";
+	static final String ORDER_DETAILS = "ORDER DETAILS";
+	static final String INFO_TEXT = String.format("Please keep in mind that lent dishsets must be returned within %d days!",
+			LentDishset.RETURN_TIME/86400);
+
+	//body table columns: product info, quantity, price
+	static final float[] BODY_COLUMN_WIDTHS = {50f, 20f, 30f};
+	static final String[] BODY_LABELS = {"PRODUCT", "QUANTITY", "PRICE"};
+
+	static final String INVOICE_DETAIL_LABELS = String.join("<br>",
+			"INVOICE #:",
+			"INVOICE DATE:",
+			"USED TAN:",
+			"<b>NEW TAN:</b>");
+
+	static final DateTimeFormatter INVOICE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+	private static final String TOTAL_PREFIX = "TOTAL: ";
+
+	//the prebuilt page, loaded again for every invoice
+	private final byte[] page;
+
+	/**
+	 * y position of the header table's details row, right below the prebuilt title row
+	 */
+	@Getter
+	private final float detailsRowY;
+
+	InvoiceTemplate() {
+		try (PDDocument doc = new PDDocument()) {
+			PDPage templatePage = new PDPage(PAGE_SIZE);
+			doc.addPage(templatePage);
+
+			try (PDPageContentStream cont = new PDPageContentStream(doc, templatePage)) {
+				cont.beginText();
+				cont.newLineAtOffset(MARGIN, HEADLINE_Y);
+				cont.setFont(FONT_BOLD, 20);
+				cont.showText(HEADLINE);
+				cont.endText();
+
+				//Dishset return info
+				//TODO if actually lent
+				cont.beginText();
+				cont.setFont(FONT, 10f);
+				cont.newLineAtOffset(MARGIN, 20f);
+				cont.showText(INFO_TEXT);
+				cont.endText();
+			}
+
+			//the header table has no cell lines, so its title row can be drawn on its own
+			BaseTable titleTable = new BaseTable(HEADER_TABLE_Y, Y_START_NEW_PAGE, BOTTOM_MARGIN,
+					TABLE_WIDTH, MARGIN, doc, templatePage, false, true);
+			Row<PDPage> titleRow = titleTable.createRow(12f);
+			for (String title : new String[]{"INVOICE TO", "INVOICE DETAILS"}) {
+				Cell<PDPage> cell = titleRow.createCell(50, title);
+				cell.setTextColor(Color.gray);
+				cell.setFontSize(12);
+			}
+			titleTable.draw();
+			detailsRowY = HEADER_TABLE_Y - titleTable.getHeaderAndDataHeight();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			doc.save(out);
+			page = out.toByteArray();
+		} catch (IOException e) {
+			throw new PapaPizzaRunException("Invoice template could not be built", e);
+		}
+	}
+
+	/**
+	 * @return new document holding a copy of the prebuilt page, has to be closed by the caller
+	 * @throws IOException if the prebuilt page can not be read
+	 */
+	PDDocument newDocument() throws IOException {
+		return PDDocument.load(page);
+	}
+
+	/**
+	 * @param total formatted total of the invoice
+	 * @return total line printed below the order details
+	 */
+	String totalLine(String total) {
+		return TOTAL_PREFIX + total;
+	}
+
+	/**
+	 * @param total formatted total of the invoice, same as given to {@link #totalLine(String)}
+	 * @return width of the total line in points, used to underline it
+	 */
+	float totalLineWidth(String total) {
+		//the font caches its metrics itself
+		try {
+			return FONT_BOLD.getStringWidth(totalLine(total)) / 1000 * TOTAL_FONT_SIZE;
+		} catch (IOException | IllegalArgumentException e) {
+			throw new PapaPizzaRunException("Invoice text can not be measured: " + total, e);
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package papapizza.order;
+
+/**
+ * A new order was applied by the cashier and is written
+ */
+public class OrderApplied extends ShopOrderEvent {
+
+	public OrderApplied(ShopOrder order) {
+		super(order);
+	}
+}
@@ -0,0 +1,54 @@
+package papapizza.order;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Filter and cursor of the order board at /order. <br>
+ * By default only active orders are shown, {@link #before} and {@link #beforeId} are the keyset cursor pointing
+ * at the creation time and id of the last order of the previous page.
+ */
+@Getter
+@Setter
+public class OrderBoardForm {
+
+	public static final String ACTIVE = "ACTIVE";
+	public static final String ALL = "ALL";
+
+	//ACTIVE, ALL or the name of a ShopOrderState
+	private String state = ACTIVE;
+	private DeliveryType deliveryType;
+
+	@DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+	private LocalDate from;
+	@DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+	private LocalDate to;
+
+	@DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+	private LocalDateTime before;
+	private String beforeId; //orders created at the same time are paged by id
+
+	public List<ShopOrderState> getStates() {
+		if (state != null && state.equals(ALL)) {
+			return Arrays.asList(ShopOrderState.values());
+		}
+		//unknown states (e.g. edited url) show the active orders
+		return Arrays.stream(ShopOrderState.values()).filter(orderState -> orderState.name().equals(state)).findAny()
+				.map(List::of)
+				.orElseGet(() -> Arrays.stream(ShopOrderState.values()).filter(ShopOrderState::isActive).collect(Collectors.toList()));
+	}
+
+	public List<DeliveryType> getDeliveryTypes() {
+		if (deliveryType == null) {
+			return List.of(DeliveryType.DELIVERY, DeliveryType.PICKUP);
+		}
+		return List.of(deliveryType);
+	}
+}
@@ -0,0 +1,11 @@
+package papapizza.order;
+
+/**
+ * The order was cancelled
+ */
+public class OrderCancelled extends ShopOrderEvent {
+
+	public OrderCancelled(ShopOrder order) {
+		super(order);
+	}
+}
@@ -0,0 +1,11 @@
+package papapizza.order;
+
+/**
+ * The order was handed over or delivered
+ */
+public class OrderCompleted extends ShopOrderEvent {
+
+	public OrderCompleted(ShopOrder order) {
+		super(order);
+	}
+}
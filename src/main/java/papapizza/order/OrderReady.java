@@ -0,0 +1,11 @@
+package papapizza.order;
+
+/**
+ * All pizzas of the order are baked, it can be picked up or delivered
+ */
+public class OrderReady extends ShopOrderEvent {
+
+	public OrderReady(ShopOrder order) {
+		super(order);
+	}
+}
@@ -0,0 +1,28 @@
+package papapizza.order;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.money.MonetaryAmount;
+import java.util.Optional;
+
+/**
+ * 10% off for orders picked up by the customer
+ */
+@Component
+@Order(1)
+public class PickupDiscountRule implements DiscountRule {
+
+	@Override
+	public String getDescription() {
+		return "PickupDiscount";
+	}
+
+	@Override
+	public Optional<MonetaryAmount> evaluate(PricedShopOrder order) {
+		if (order.getDeliveryType() != DeliveryType.PICKUP) {
+			return Optional.empty();
+		}
+		return Optional.of(order.getTotal().divide(10).negate());
+	}
+}
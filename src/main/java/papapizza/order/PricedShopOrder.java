@@ -0,0 +1,54 @@
+package papapizza.order;
+
+import lombok.Getter;
+import org.salespointframework.catalog.Product;
+import org.salespointframework.catalog.ProductIdentifier;
+import org.salespointframework.order.OrderLine;
+
+import javax.money.MonetaryAmount;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Snapshot of a {@link ShopOrder} the {@link DiscountRule}s are evaluated on. <br>
+ * Every product of the order is looked up once per evaluation, the total includes the discounts emitted so far.
+ */
+public class PricedShopOrder {
+
+	@Getter
+	private final ShopOrder order;
+	@Getter
+	private MonetaryAmount total;
+	@Getter
+	private final Map<String, MonetaryAmount> discounts = new LinkedHashMap<>();
+
+	private final Map<ProductIdentifier, Product> products = new HashMap<>();
+
+	public PricedShopOrder(ShopOrder order, Function<ProductIdentifier, Product> productLookup) {
+		this.order = order;
+		this.total = order.getTotal();
+		for (OrderLine orderLine : order.getOrderLines()) {
+			products.computeIfAbsent(orderLine.getProductIdentifier(), productLookup);
+		}
+	}
+
+	/**
+	 * @param category of the products
+	 * @return all products of the order having the category
+	 */
+	public List<Product> getProducts(String category) {
+		return products.values().stream()
+				.filter(product -> product != null && product.getCategories().toList().contains(category))
+				.collect(Collectors.toList());
+	}
+
+	public DeliveryType getDeliveryType() {
+		return order.getDeliveryType();
+	}
+
+	void addDiscount(String description, MonetaryAmount amount) {
+		discounts.put(description, amount);
+		total = total.add(amount);
+	}
+}
@@ -1,21 +1,29 @@
 package papapizza.order;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import org.salespointframework.catalog.ProductIdentifier;
 import org.salespointframework.order.Order;
+import org.salespointframework.order.OrderLine;
+import org.salespointframework.quantity.Quantity;
 import org.salespointframework.useraccount.UserAccount;
 import papapizza.customer.Customer;
 import papapizza.delivery.DeliveryManagement;
 import papapizza.employee.Employee;
+import papapizza.inventory.items.PizzaProduct;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.stream.Collectors;
 
 @Entity
+@Table(indexes = {@Index(columnList = "timeCreated"), @Index(columnList = "shopOrderState"),
+		@Index(columnList = "deliveryType")}) //filters and sort of the order board
+@EntityListeners(ShopOrderVersionListener.class)
 @Getter @Setter
 public class ShopOrder extends Order{
 	@OneToOne
@@ -42,17 +50,42 @@ public class ShopOrder extends Order{
 	@Column
 	private Duration openDuration, pendingDuration, readyDuration, inDeliverDuration, totalDuration;
 
+	@Column
+	private LocalDateTime stateSince; //time of the last transition, durations are added up from it
+
 	@Column
 	private Duration kitchenTimeEstimate, deliveryTimeEstimate, timeEstimate;
 
 	@Column
 	private String parentId;
 
+	@Column
+	private String totalAmount; //getTotal() as String, kept up to date by ShopOrderManagement#save for read models
+
 	@Column
 	private String invoiceFilename; //filename of the pdf file, NO! absolute path
 
+	@Column
+	private Long invoiceNo; //set with the first invoice, reprints keep number and tans
+
+	@Column
+	private String invoiceOldTan, invoiceNewTan;
+
 	private String deliveryStrategy;
 
+	@Column(updatable = false)
+	private long revision; //raised by ShopOrderManagement#save and on flush, a stale revision means someone else saved in between
+
+	@Transient
+	private boolean revisionRaised; //raised by save in this transaction, the next flush must not raise it again
+
+	@Column
+	private long changeVersion; //global version of the last flushed change, see ShopOrderVersionListener
+
+	@Transient
+	@Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+	private Map<ProductIdentifier, PizzaProduct> customPizzas = new HashMap<>(); //configured in the draft, not in the catalog yet
+
 	public ShopOrder(){}
 
 	public ShopOrder(@NotNull UserAccount dummy, @NotNull Customer customer) {
@@ -62,4 +95,31 @@ public class ShopOrder extends Order{
 		this.deliveryStrategy = DeliveryManagement.getOrderAssign().toString();
 	}
 
+	/**
+	 * Adds a custom pizza that is not saved to the catalog yet. <br>
+	 * Drafts are discarded often, the pizza is only saved once the order is applied, see {@link #getCustomPizzas()}.
+	 * @param pizza unsaved custom pizza
+	 * @param quantity of the new line
+	 */
+	public void addCustomPizza(PizzaProduct pizza, Quantity quantity) {
+		customPizzas.put(pizza.getId(), pizza);
+		addOrderLine(pizza, quantity);
+	}
+
+	/**
+	 * @param productId of an order line
+	 * @return the unsaved custom pizza of the line, empty for catalog products
+	 */
+	public Optional<PizzaProduct> findCustomPizza(ProductIdentifier productId) {
+		return Optional.ofNullable(customPizzas.get(productId));
+	}
+
+	/**
+	 * @return unsaved custom pizzas still having a line in the order
+	 */
+	public List<PizzaProduct> getCustomPizzas() {
+		Set<ProductIdentifier> ordered = getOrderLines().stream().map(OrderLine::getProductIdentifier).collect(Collectors.toSet());
+		return customPizzas.values().stream().filter(pizza -> ordered.contains(pizza.getId())).collect(Collectors.toList());
+	}
+
 }
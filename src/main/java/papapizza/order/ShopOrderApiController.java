@@ -0,0 +1,98 @@
+package papapizza.order;
+
+import lombok.NonNull;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+/**
+ * Read-only JSON api for counter tablets and kitchen screens. <br>
+ * Every response carries the change version it is up to date with as weak ETag, pollers send it back
+ * as If-None-Match and get a 304 without any database query if nothing changed meanwhile.
+ * @see ShopOrderVersions
+ */
+@RestController
+@RequestMapping("/api/v1/orders")
+@PreAuthorize("hasAnyRole('BOSS','CASHIER','CHEF','DRIVER')")
+public class ShopOrderApiController {
+
+	static final int MAX_CHANGES = 200;
+
+	private final ShopOrderManagement<ShopOrder> shopOrderManagement;
+
+	ShopOrderApiController(@NonNull ShopOrderManagement<ShopOrder> shopOrderManagement) {
+		this.shopOrderManagement = shopOrderManagement;
+	}
+
+	/**
+	 * @return all active orders, oldest first
+	 */
+	@GetMapping
+	public ResponseEntity<ShopOrderFeed> activeOrders(WebRequest request) {
+		long version = shopOrderManagement.getStableVersion();
+		String eTag = eTag(version);
+		if (request.checkNotModified(eTag)) {
+			return notModified(eTag);
+		}
+		List<ShopOrderView> orders = shopOrderManagement.findActive().stream()
+				.map(ShopOrderView::of).collect(Collectors.toList());
+		return ok(eTag).body(new ShopOrderFeed(version, true, orders));
+	}
+
+	@GetMapping("/{orderId}")
+	public ResponseEntity<ShopOrderView> order(@PathVariable String orderId, WebRequest request) {
+		Optional<ShopOrder> order = shopOrderManagement.findByShopOrderId(orderId);
+		if (order.isEmpty()) {
+			throw new ResponseStatusException(NOT_FOUND, "Unable to find order for id " + orderId);
+		}
+		String eTag = eTag(order.get().getChangeVersion());
+		if (request.checkNotModified(eTag)) {
+			return notModified(eTag);
+		}
+		return ok(eTag).body(ShopOrderView.of(order.get()));
+	}
+
+	/**
+	 * Orders changed after the given version, at most {@link #MAX_CHANGES}. Removed orders are not listed,
+	 * they just drop out of {@link #activeOrders(WebRequest)}.
+	 * @param since version of the last response, 0 for everything
+	 */
+	@GetMapping("/changes")
+	public ResponseEntity<ShopOrderFeed> changes(@RequestParam(defaultValue = "0") long since, WebRequest request) {
+		long stable = shopOrderManagement.getStableVersion();
+		if (request.checkNotModified(eTag(stable))) {
+			return notModified(eTag(stable));
+		}
+		List<ShopOrder> changed = shopOrderManagement.findChangedSince(since, MAX_CHANGES);
+		boolean complete = changed.size() < MAX_CHANGES;
+		//never beyond stable, a change in flight below it would be skipped by the next poll
+		long version = complete ? stable : Math.min(stable, changed.get(changed.size() - 1).getChangeVersion());
+		version = Math.max(version, since);
+		List<ShopOrderView> orders = changed.stream().map(ShopOrderView::of).collect(Collectors.toList());
+		return ok(eTag(version)).body(new ShopOrderFeed(version, complete, orders));
+	}
+
+	private static String eTag(long version) {
+		//weak, the active orders at one version still differ while an older change is in flight
+		return "W/\"" + version + "\"";
+	}
+
+	private static ResponseEntity.BodyBuilder ok(String eTag) {
+		//clients may keep the response, but have to ask before using it again
+		return ResponseEntity.ok().eTag(eTag).cacheControl(CacheControl.noCache());
+	}
+
+	private static <T> ResponseEntity<T> notModified(String eTag) {
+		return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(CacheControl.noCache()).build();
+	}
+}
@@ -0,0 +1,78 @@
+package papapizza.order;
+
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Moves finished orders into the {@link ArchivedShopOrder} table, so the live table only holds recent orders. <br>
+ * Orders are archived in batches, each in its own transaction. Orders whose pizzas are still referenced
+ * by an oven are skipped until the kitchen is done with them.
+ */
+@Service
+public class ShopOrderArchiver {
+
+	private final Logger logger = LoggerFactory.getLogger(ShopOrderArchiver.class);
+
+	private final ShopOrderManagement<ShopOrder> shopOrderManagement;
+	private final TransactionTemplate transactionTemplate;
+	private final int archiveAfterDays;
+	private final int batchSize;
+
+	public ShopOrderArchiver(@NonNull ShopOrderManagement<ShopOrder> shopOrderManagement,
+							 @NonNull PlatformTransactionManager transactionManager,
+							 @Value("${papapizza.order.archive-after-days:30}") int archiveAfterDays,
+							 @Value("${papapizza.order.archive-batch-size:200}") int batchSize) {
+		if (archiveAfterDays < 0) {
+			throw new IllegalArgumentException("archive age can't be negative, was " + archiveAfterDays);
+		}
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batch size has to be positive, was " + batchSize);
+		}
+		this.shopOrderManagement = shopOrderManagement;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.archiveAfterDays = archiveAfterDays;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Archives orders finished more than the configured amount of days ago
+	 */
+	@Scheduled(cron = "${papapizza.order.archive-cron:0 0 4 * * *}")
+	public void archiveOldOrders() {
+		int archived = archiveCompletedBefore(LocalDateTime.now().minusDays(archiveAfterDays));
+		if (archived > 0) {
+			logger.info("archived " + archived + " orders older than " + archiveAfterDays + " days");
+		}
+	}
+
+	/**
+	 * Archives all completed and cancelled orders finished before the given time
+	 * @param before orders completed before are archived
+	 * @return amount of archived orders
+	 */
+	public int archiveCompletedBefore(@NonNull LocalDateTime before) {
+		int archived = 0;
+		int batch;
+		do {
+			batch = Objects.requireNonNull(transactionTemplate.execute(status -> archiveBatch(before)));
+			archived += batch;
+		} while (batch == batchSize);
+		return archived;
+	}
+
+	private int archiveBatch(LocalDateTime before) {
+		List<ShopOrder> orders = shopOrderManagement.findArchivable(before, batchSize);
+		orders.forEach(shopOrderManagement::archive);
+		return orders.size();
+	}
+}
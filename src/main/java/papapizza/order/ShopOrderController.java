@@ -4,23 +4,32 @@ import com.mysema.commons.lang.Assert;
 import lombok.NonNull;
 import org.javamoney.moneta.Money;
 import org.salespointframework.catalog.Product;
+import org.salespointframework.catalog.ProductIdentifier;
 import org.salespointframework.order.OrderIdentifier;
+import org.salespointframework.order.OrderLine;
 import org.salespointframework.quantity.Quantity;
 import org.salespointframework.useraccount.UserAccount;
 import org.salespointframework.useraccount.web.LoggedIn;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Slice;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.bind.support.SessionStatus;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
-import papapizza.customer.Customer;
 import papapizza.customer.CustomerManagement;
 import papapizza.delivery.DeliveryManagement;
 import papapizza.employee.EmployeeManagement;
@@ -30,19 +39,24 @@ import papapizza.inventory.items.ToppingProduct;
 import papapizza.kitchen.KitchenManagement;
 
 import javax.validation.Valid;
-import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 
 @Controller
-@SessionAttributes("newShopOrderId")
+@SessionAttributes({"newShopOrderId", "newShopOrder"})
 public class ShopOrderController {
 
 	private final Logger logger = LoggerFactory.getLogger(ShopOrderController.class);
 
+	private static final Duration INVOICE_WAIT = Duration.ofSeconds(2);
+
 	private final ShopOrderManagement<ShopOrder> shopOrderManagement;
 	private final CustomerManagement customerManagement;
 	private final EmployeeManagement employeeManagement;
@@ -50,6 +64,11 @@ public class ShopOrderController {
 	private final DeliveryManagement deliveryManagement;
 	private final KitchenManagement kitchenManagement;
 	private InvoiceHandler invoiceHandler;
+	private InvoicePipeline invoicePipeline;
+	private InvoiceExporter invoiceExporter;
+	private DiscountEngine discountEngine;
+	private ShopOrderJanitor shopOrderJanitor;
+	private TimeEstimateTracker timeEstimateTracker;
 
 	@Autowired
 	public ShopOrderController(ShopOrderManagement<ShopOrder> shopOrderManagement, CustomerManagement customerManagement, EmployeeManagement employeeManagement, ShopCatalogManagement catalogManagement,
@@ -69,19 +88,54 @@ public class ShopOrderController {
 		this.invoiceHandler = invoiceHandler;
 	}
 
+	@Autowired
+	public void setInvoicePipeline(@NonNull InvoicePipeline invoicePipeline) {
+		this.invoicePipeline = invoicePipeline;
+	}
+
+	@Autowired
+	public void setInvoiceExporter(@NonNull InvoiceExporter invoiceExporter) {
+		this.invoiceExporter = invoiceExporter;
+	}
+
+	@Autowired
+	public void setDiscountEngine(@NonNull DiscountEngine discountEngine) {
+		this.discountEngine = discountEngine;
+	}
+
+	@Autowired
+	public void setShopOrderJanitor(@NonNull ShopOrderJanitor shopOrderJanitor) {
+		this.shopOrderJanitor = shopOrderJanitor;
+	}
+
+	@Autowired
+	public void setTimeEstimateTracker(@NonNull TimeEstimateTracker timeEstimateTracker) {
+		this.timeEstimateTracker = timeEstimateTracker;
+	}
+
 	//********** ORDER ************
 
 	@GetMapping("/order")
-	String order(Model model) {
-		List<DisplayableShopOrder> displayableShopOrders = ShopOrderDisplayer.display(shopOrderManagement.findAll().stream()
-				.filter(order -> order.getCustomer().getMeta() == Customer.Meta.NORMAL));
-
-		//TODO filter out completed and cancelled orders, when analytics is added
-		//here sorting / filtering etc...
+	String order(Model model, @ModelAttribute("filter") OrderBoardForm filter) {
+		Slice<ShopOrderSummary> orderSlice = shopOrderManagement.findBoardSlice(filter);
+		List<DisplayableShopOrder> displayableShopOrders = ShopOrderDisplayer.display(orderSlice.getContent(),
+				shopOrderManagement.findChefNames(orderSlice.map(ShopOrderSummary::getId).getContent()));
+		//live, follows every oven and vehicle change instead of the estimate taken at apply
+		displayableShopOrders.stream()
+				.filter(order -> ShopOrderState.valueOf(order.getOrderState()).isActive())
+				.forEach(order -> order.setEtaMinutes(timeEstimateTracker.getEstimate(order.getOrderId()).toMinutes()));
 
 		logger.info(String.valueOf(displayableShopOrders.size()));
 
 		model.addAttribute("orders", displayableShopOrders);
+		model.addAttribute("states", Arrays.stream(ShopOrderState.values()).map(Enum::name).collect(Collectors.toList()));
+		model.addAttribute("deliveryTypes", List.of(DeliveryType.DELIVERY, DeliveryType.PICKUP));
+		if (orderSlice.hasNext()) {
+			//keyset cursor: creation time and id of the last order on this page
+			ShopOrderSummary last = orderSlice.getContent().get(orderSlice.getNumberOfElements() - 1);
+			model.addAttribute("nextCursor", last.getTimeCreated().toString());
+			model.addAttribute("nextCursorId", last.getId().getIdentifier());
+		}
 
 		return "order/order";
 	}
@@ -106,13 +160,55 @@ public class ShopOrderController {
 
 	@GetMapping(value = "/downloadInvoice")
 	@PreAuthorize("hasAnyRole('BOSS','CASHIER','DRIVER')")
-	public ResponseEntity<InputStreamResource> downloadInvoice(@RequestParam(name="orderId") OrderIdentifier orderId){
+	public ResponseEntity<Resource> downloadInvoice(@RequestParam(name="orderId") OrderIdentifier orderId, WebRequest request){
 		Optional<ShopOrder> order = shopOrderManagement.get(orderId);
 		if(order.isEmpty()){ //requested order doesnt exist
 			throw new ResponseStatusException(NOT_FOUND);
 		}
 
-		return invoiceHandler.getInvoiceResponse(order.get().getInvoiceFilename());
+		//applied, but the invoice is not snapshotted yet
+		if(order.get().getInvoiceNo() == null){
+			return invoicePending();
+		}
+
+		//invoice is rendered in the background, wait a moment for it
+		InvoiceStatus status = invoicePipeline.await(order.get(), INVOICE_WAIT);
+		if(status == InvoiceStatus.FAILED){
+			//pdf is missing or broken, render it again from the stored order, unless someone else just did
+			shopOrderManagement.update(orderId.getIdentifier(), stored -> {
+				invoicePipeline.submit(stored);
+				return shopOrderManagement.save(stored);
+			});
+			status = invoicePipeline.await(order.get(), INVOICE_WAIT);
+		}
+		if(status == InvoiceStatus.READY){
+			return invoiceHandler.getInvoiceResponse(order.get().getInvoiceFilename(), request);
+		}
+		return invoicePending();
+	}
+
+	private static ResponseEntity<Resource> invoicePending(){
+		//client can come back later
+		return ResponseEntity.accepted()
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(INVOICE_WAIT.toSeconds()))
+				.build();
+	}
+
+	@GetMapping(value = "/invoices/export")
+	@PreAuthorize("hasRole('BOSS')")
+	public ResponseEntity<StreamingResponseBody> exportInvoices(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+																@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to){
+		if(to.isBefore(from)){
+			throw new ResponseStatusException(BAD_REQUEST, "to must not be before from");
+		}
+
+		//zip is written straight to the response
+		StreamingResponseBody body = out -> invoiceExporter.export(from, to, out);
+		return ResponseEntity.ok()
+				.contentType(MediaType.parseMediaType("application/zip"))
+				.header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+						.filename(String.format("invoices_%s_%s.zip", from, to)).build().toString())
+				.body(body);
 	}
 
 	//-cancel
@@ -123,17 +219,22 @@ public class ShopOrderController {
 
 		//TODO solve JdbcSQLIntegrityConstraintViolationException
 
-		Optional<ShopOrder> order = shopOrderManagement.findByShopOrderId(orderId);
+		//chef or driver might change the order at the same time, the state is checked on the current order
+		Optional<Boolean> cancelled = shopOrderManagement.update(orderId, order -> {
+			if (!order.getShopOrderState().canTransitionTo(ShopOrderState.CANCELLED)) {
+				return false;
+			}
+			//pizzas and tan are reverted by the listeners of OrderCancelled
+			shopOrderManagement.setShopOrderState(order, ShopOrderState.CANCELLED);
+			return true;
+		});
 
-		if (order.isEmpty()) {
+		if (cancelled.isEmpty()) {
 
 			//where is this handled? (so nice exception page is shown)
 			throw new ResponseStatusException(NOT_FOUND, "Unable to find order for id " + orderId);
-		} else {
-			order.get().setTimeCompleted(LocalDateTime.now());
-			kitchenManagement.cancelPizzasForOrder(order.get());
-			shopOrderManagement.setShopOrderState(order.get(), ShopOrderState.CANCELLED);
-			customerManagement.revertOldTan(order.get().getCustomer());
+		} else if (!cancelled.get()) {
+			throw new ResponseStatusException(CONFLICT, "Order " + orderId + " can not be cancelled anymore");
 		}
 
 		return "redirect:/order";
@@ -156,6 +257,7 @@ public class ShopOrderController {
 		if (!order.get().getShopOrderState().equals(ShopOrderState.INVALID))
 			throw new IllegalArgumentException("ShopOrder with id: " + orderId + " is already applied.");
 		model.addAttribute("newShopOrderId", orderId);
+		model.addAttribute("newShopOrder", order.get());
 
 
 		return "redirect:/order/newOrder";
@@ -167,14 +269,14 @@ public class ShopOrderController {
 	@PreAuthorize("hasAnyRole('BOSS','CASHIER')")
 	String completeShopOrder(@PathVariable final String orderId) {
 
-		if (shopOrderManagement.findByShopOrderId(orderId).isEmpty())
-			throw new ResponseStatusException(NOT_FOUND, "Unable to find order for id " + orderId);
-		else {
-			ShopOrder shopOrder = shopOrderManagement.findByShopOrderId(orderId).get();
+		Optional<ShopOrder> completed = shopOrderManagement.update(orderId, shopOrder -> {
 			if (shopOrder.getDeliveryType().equals(DeliveryType.PICKUP) && shopOrder.getShopOrderState().equals(ShopOrderState.READYPICKUP)) {
 				shopOrderManagement.setShopOrderState(shopOrder, ShopOrderState.COMPLETED);
 			}
-		}
+			return shopOrder;
+		});
+		if (completed.isEmpty())
+			throw new ResponseStatusException(NOT_FOUND, "Unable to find order for id " + orderId);
 
 		return "redirect:/order";
 	}
@@ -185,9 +287,8 @@ public class ShopOrderController {
 	@PreAuthorize("hasAnyRole('BOSS','CASHIER')")
 	String cleanupInvalids() {
 
-		for (ShopOrder order : shopOrderManagement.findAll()) {
-			if (order.getShopOrderState().equals(ShopOrderState.INVALID)) shopOrderManagement.delete(order);
-		}
+		//all drafts, not only the ones the janitor would remove
+		shopOrderJanitor.removeDraftsCreatedBefore(LocalDateTime.now());
 
 		return "redirect:/order";
 	}
@@ -222,18 +323,18 @@ public class ShopOrderController {
 
 		if (customerManagement.verifyCustomerByTan(customerVerificationForm.getPhone(), Integer.parseInt(customerVerificationForm.getTan()))) {
 			//when customer alr has orders not completed or cancelled
-			if (!shopOrderManagement.findBy(customerManagement.findByPhone(customerVerificationForm.getPhone()).get(0))
-					.filter(shopOrder -> shopOrder.getShopOrderState().isActive()).isEmpty())
+			if (shopOrderManagement.hasActiveOrders(customerManagement.findByPhone(customerVerificationForm.getPhone()).get(0)))
 				model.addAttribute("verificationSuccess", "failedAlrActiveOrder");
 
 			else {
 				model.addAttribute("verificationSuccess", "success");
-				model.addAttribute("newShopOrderId", shopOrderManagement.save(shopOrderManagement.create(
+				//the new order is only kept in the session until it is applied
+				ShopOrder newShopOrder = shopOrderManagement.create(
 						employeeManagement.findByUsername(loggedInUser.get().getUsername()).get(),
-						customerManagement.findByPhoneAndTan(customerVerificationForm.getPhone(), Integer.parseInt(customerVerificationForm.getTan())).get()))
-						.getId().getIdentifier());
-				shopOrderManagement.setShopOrderState(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get(), ShopOrderState.INVALID);
-				shopOrderManagement.save(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get());
+						customerManagement.findByPhoneAndTan(customerVerificationForm.getPhone(), Integer.parseInt(customerVerificationForm.getTan())).get());
+				newShopOrder.setShopOrderState(ShopOrderState.INVALID);
+				model.addAttribute("newShopOrderId", newShopOrder.getId().getIdentifier());
+				model.addAttribute("newShopOrder", newShopOrder);
 
 				return "redirect:/order/newOrder";
 			}
@@ -255,54 +356,37 @@ public class ShopOrderController {
 	@PreAuthorize("hasAnyRole('BOSS','CASHIER')")
 	String newOrder(Model model) {
 
-		if (model.getAttribute("newShopOrderId") == null)
-			throw new RuntimeException("No newShopOrderId session attribute found");
-		if (shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).isEmpty())
-			throw new RuntimeException("newShopOrderId does not correspond persistently stored ShopOrder");
-
 		NewShopOrderForm form = new NewShopOrderForm();
 
-		ShopOrder newShopOrder = shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get();
+		ShopOrder newShopOrder = getDraft(model);
 
 		//parsing order to form
 		{
 			Map<String, Integer> consumables = new HashMap<>();
 			catalogManagement.findByCategory("Consumable").forEach(product -> consumables.put(product.getName(), 0));
-			newShopOrder.getOrderLines().stream().filter(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier())
-					.getCategories().stream().anyMatch(category -> category.equals("Consumable")));
-			catalogManagement.findByCategory("Consumable").forEach(product -> consumables.put(product.getName(), 0));
 			logger.info("[NewOrder] Map of consumables:" + consumables);
-			newShopOrder.getOrderLines().stream().filter(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier()).getCategories().stream().anyMatch(category -> category.equals("Consumable")))
+			newShopOrder.getOrderLines().stream().filter(orderLine -> findProduct(newShopOrder, orderLine.getProductIdentifier()).getCategories().stream().anyMatch(category -> category.equals("Consumable")))
 					.forEach(orderLine -> consumables
 							.put(orderLine.getProductName(), orderLine.getQuantity().getAmount().intValue()));
 			form.setConsumables(consumables);
 
 			Map<String, Integer> pizzaPresets = new HashMap<>();
 			catalogManagement.findByCategory("Pizza").forEach(product -> pizzaPresets.put(product.getName(), 0));
-			newShopOrder.getOrderLines().stream().filter(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier())
-					.getCategories().stream().anyMatch(category -> category.equals("Pizza")));
-			catalogManagement.findByCategory("Pizza").forEach(product -> pizzaPresets.put(product.getName(), 0));
-			newShopOrder.getOrderLines().stream().filter(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier()).getCategories().stream().anyMatch(category -> category.equals("Pizza")))
+			newShopOrder.getOrderLines().stream().filter(orderLine -> findProduct(newShopOrder, orderLine.getProductIdentifier()).getCategories().stream().anyMatch(category -> category.equals("Pizza")))
 					.forEach(orderLine -> pizzaPresets
 							.put(orderLine.getProductName(), orderLine.getQuantity().getAmount().intValue()));
 			form.setPizzaPresets(pizzaPresets);
 
 			Map<String, Integer> drinks = new HashMap<>();
 			catalogManagement.findByCategory("Drink").forEach(product -> drinks.put(product.getName(), 0));
-			newShopOrder.getOrderLines().stream().filter(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier())
-					.getCategories().stream().anyMatch(category -> category.equals("Drink")));
-			catalogManagement.findByCategory("Drink").forEach(product -> drinks.put(product.getName(), 0));
-			newShopOrder.getOrderLines().stream().filter(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier()).getCategories().stream().anyMatch(category -> category.equals("Drink")))
+			newShopOrder.getOrderLines().stream().filter(orderLine -> findProduct(newShopOrder, orderLine.getProductIdentifier()).getCategories().stream().anyMatch(category -> category.equals("Drink")))
 					.forEach(orderLine -> drinks
 							.put(orderLine.getProductName(), orderLine.getQuantity().getAmount().intValue()));
 			form.setDrinks(drinks);
 
 			Map<String, Integer> dishSets = new HashMap<>();
 			catalogManagement.findByCategory("Dishset").forEach(product -> dishSets.put(product.getName(), 0));
-			newShopOrder.getOrderLines().stream().filter(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier())
-					.getCategories().stream().anyMatch(category -> category.equals("Dishset")));
-			catalogManagement.findByCategory("Dishset").forEach(product -> dishSets.put(product.getName(), 0));
-			newShopOrder.getOrderLines().stream().filter(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier()).getCategories().stream().anyMatch(category -> category.equals("Dishset")))
+			newShopOrder.getOrderLines().stream().filter(orderLine -> findProduct(newShopOrder, orderLine.getProductIdentifier()).getCategories().stream().anyMatch(category -> category.equals("Dishset")))
 					.forEach(orderLine -> dishSets
 							.put(orderLine.getProductName(), orderLine.getQuantity().getAmount().intValue()));
 			form.setDishSets(dishSets);
@@ -313,20 +397,18 @@ public class ShopOrderController {
 		form.setToppings(toppings);
 
 		//parsing orderLines
-		form.setShopOrderOrderLines(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getOrderLines().toList());
+		form.setShopOrderOrderLines(newShopOrder.getOrderLines().toList());
 		//parsing chargeLines
-		form.setShopOrderChargeLines(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getChargeLines().toList());
+		form.setShopOrderChargeLines(newShopOrder.getChargeLines().toList());
 
 		//parsing total
-		if (shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getOrderLines().stream().count() == 0) {
+		if (newShopOrder.getOrderLines().stream().count() == 0) {
 			model.addAttribute("newShopOrderTotal", Money.of(0, "EUR"));
 		} else {
-			model.addAttribute("newShopOrderTotal",
-					shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getTotal().toString());
+			model.addAttribute("newShopOrderTotal", newShopOrder.getTotal().toString());
 		}
 
-		boolean freeDrinkPossible = shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get()
-				.getTotal().isGreaterThanOrEqualTo(Money.of(30, "EUR"));
+		boolean freeDrinkPossible = newShopOrder.getTotal().isGreaterThanOrEqualTo(Money.of(30, "EUR"));
 		model.addAttribute("freeDrinkPossible", freeDrinkPossible);
 
 		model.addAttribute("form", form);
@@ -351,7 +433,7 @@ public class ShopOrderController {
 			attributes.addFlashAttribute("error", "error");
 			return "redirect:/order/newOrder";
 		}
-		manipulateShopOrderLines(model, form);
+		manipulateShopOrderLines(getDraft(model), form);
 		return "redirect:/order/newOrder";
 	}
 
@@ -361,23 +443,20 @@ public class ShopOrderController {
 	@PreAuthorize("hasAnyRole('BOSS','CASHIER')")
 	String configurator(Model model, @Valid @ModelAttribute("form") NewShopOrderForm form, final BindingResult result, @RequestParam(name = "selectedToppings", required = false) List<String> selectedToppings, RedirectAttributes attributes) {
 
-		if (form.getDeliveryType().equals("Delivery"))
-			shopOrderManagement.setShopOrderDeliveryType(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get(), DeliveryType.DELIVERY);
-		else
-			shopOrderManagement.setShopOrderDeliveryType(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get(), DeliveryType.PICKUP);
+		ShopOrder newShopOrder = getDraft(model);
 
-		manipulateShopOrderLines(model, form);
+		manipulateShopOrderLines(newShopOrder, form);
 
 		if (selectedToppings == null) selectedToppings = new ArrayList<>();
 
-		PizzaProduct customPizzaProduct = catalogManagement.createPizzaProduct(selectedToppings.stream().map(x -> (ToppingProduct) catalogManagement.findByName(x)).collect(Collectors.toList()));
+		//only saved to the catalog when the order is applied
+		PizzaProduct customPizzaProduct = catalogManagement.newCustomPizza(selectedToppings.stream().map(x -> (ToppingProduct) catalogManagement.findByName(x)).collect(Collectors.toList()));
 
 		//customPizzaProduct.getToppings().forEach(t -> logger.info(t.getName()));
 
-		shopOrderManagement.addLinesByProduct(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-				customPizzaProduct, Quantity.of(Integer.parseInt(form.getCustomPizzaQuantity())));
+		newShopOrder.addCustomPizza(customPizzaProduct, Quantity.of(Integer.parseInt(form.getCustomPizzaQuantity())));
 
-		calculateDiscounts(model, form);
+		discountEngine.applyDiscounts(newShopOrder);
 
 		return "redirect:/order/newOrder";
 	}
@@ -388,22 +467,18 @@ public class ShopOrderController {
 	@PreAuthorize("hasAnyRole('BOSS','CASHIER')")
 	String removeFromSummary(Model model, @Valid @ModelAttribute("form") NewShopOrderForm form, final BindingResult result, @PathVariable final String orderLineProductId, RedirectAttributes attributes) {
 
-		if (form.getDeliveryType().equals("Delivery"))
-			shopOrderManagement.setShopOrderDeliveryType(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get(), DeliveryType.DELIVERY);
-		else
-			shopOrderManagement.setShopOrderDeliveryType(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get(), DeliveryType.PICKUP);
+		ShopOrder newShopOrder = getDraft(model);
 
-		manipulateShopOrderLines(model, form);
+		manipulateShopOrderLines(newShopOrder, form);
 
-		ShopOrder newShopOrder = shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get();
-
-		if (newShopOrder.getOrderLines().stream().map(orderLine -> orderLine.getProductIdentifier().getIdentifier()).collect(Collectors.toList()).contains(orderLineProductId)) {
-			shopOrderManagement.removeLinesByProduct(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-					catalogManagement.findById(orderLineProductId).get());
+		Optional<OrderLine> orderLine = newShopOrder.getOrderLines().stream()
+				.filter(line -> line.getProductIdentifier().getIdentifier().equals(orderLineProductId)).findAny();
+		if (orderLine.isPresent()) {
+			newShopOrder.remove(orderLine.get());
 		} else
 			throw new IllegalArgumentException("No OrderLine with ProductId: " + orderLineProductId + " in newShopOrder found.");
 
-		calculateDiscounts(model, form);
+		discountEngine.applyDiscounts(newShopOrder);
 
 		return "redirect:/order/newOrder";
 	}
@@ -412,14 +487,16 @@ public class ShopOrderController {
 
 	@PostMapping("/newOrder/apply")
 	@PreAuthorize("hasAnyRole('BOSS','CASHIER')")
-	String apply(Model model, @Valid @ModelAttribute("form") NewShopOrderForm form, final BindingResult result, RedirectAttributes attributes) {
-
+	String apply(Model model, @Valid @ModelAttribute("form") NewShopOrderForm form, final BindingResult result, RedirectAttributes attributes, SessionStatus sessionStatus) {
 
-		manipulateShopOrderLines(model, form);
+		ShopOrder draft = getDraft(model);
 
-		ShopOrder newShopOrder = shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get();
+		manipulateShopOrderLines(draft, form);
 
-		shopOrderManagement.setShopOrderState(newShopOrder, ShopOrderState.OPEN);
+		//first and only time the new order and its custom pizzas are written
+		draft.getCustomPizzas().forEach(catalogManagement::save);
+		shopOrderManagement.transition(draft, ShopOrderState.OPEN);
+		ShopOrder newShopOrder = shopOrderManagement.save(draft);
 		//overwriting default (ShopOrderState.OPEN) when no Pizza exists in newShopOrder
 		if (newShopOrder.getOrderLines().stream().filter(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier())
 				.getCategories().toList().contains("Pizza") || catalogManagement.findById(orderLine.getProductIdentifier())
@@ -429,19 +506,14 @@ public class ShopOrderController {
 
 		deliveryManagement.assignDriver(newShopOrder);
 		kitchenManagement.assignOvens(newShopOrder);
-		shopOrderManagement.save(newShopOrder);
 		shopOrderManagement.calcTimeEstimate(newShopOrder);
 
-		//give customer new tan
-		customerManagement.renewCustomerTan(newShopOrder.getCustomer());
-		//create invoice for the just created order
-		try {
-			String filename = invoiceHandler.createInvoice(newShopOrder);
-			newShopOrder.setInvoiceFilename(filename);
-			shopOrderManagement.save(newShopOrder);
-		} catch (IOException ignored) {
-			//TODO
-		}
+		//last write, new tan and invoice are created by a listener of OrderApplied after commit
+		shopOrderManagement.apply(newShopOrder);
+
+		//draft is done, remove it from the session
+		sessionStatus.setComplete();
+
 		attributes.addFlashAttribute("orderCreated", newShopOrder);
 		attributes.addFlashAttribute("timeEstimate", newShopOrder.getTimeEstimate().toMinutes());
 
@@ -450,74 +522,48 @@ public class ShopOrderController {
 
 	//*********  ADDITIONAL LOGIC  **********
 
-	private void calculateDiscounts(Model model, @NonNull @Valid NewShopOrderForm form) {
-		//PickupDiscount
-		shopOrderManagement.removeLinesByDescription(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-				"PickupDiscount");
-
-		if (form.getDeliveryType().equals("Pickup"))
-			shopOrderManagement.addLinesByTotal(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-					shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get()
-							.getTotal().divide(10).negate(), "PickupDiscount");
-
-		//DrinkDiscount
-		shopOrderManagement.removeLinesByDescription(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-				"FreeDrinkDiscount");
-
-		if (shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getTotal().isGreaterThanOrEqualTo(Money.of(30, "EUR"))) {
-			List<Product> drinkProducts = shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getOrderLines().stream().map(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier()))
-					.filter(product -> product.getCategories().toList().contains("Drink")).collect(Collectors.toList());
-			if (!drinkProducts.isEmpty()) {
-				Product cheapestDrink = drinkProducts.get(0);
-				for (Product drink : drinkProducts) {
-					if (drink.getPrice().isLessThan(cheapestDrink.getPrice())) cheapestDrink = drink;
-				}
-				if (shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getTotal().subtract(cheapestDrink.getPrice()).isGreaterThanOrEqualTo(Money.of(30, "EUR"))) {
-					shopOrderManagement.addLinesByTotal(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-							cheapestDrink.getPrice().negate(), "FreeDrinkDiscount");
-				}
-			}
+	/**
+	 * Returns the order currently being created in this session. <br>
+	 * New orders only live in the session until they are applied. If the session
+	 * holds just an id (editing a persisted INVALID order), the order is loaded once and kept as draft.
+	 */
+	private ShopOrder getDraft(Model model) {
+		String newShopOrderId = (String) model.getAttribute("newShopOrderId");
+		if (newShopOrderId == null)
+			throw new RuntimeException("No newShopOrderId session attribute found");
+
+		ShopOrder draft = (ShopOrder) model.getAttribute("newShopOrder");
+		if (draft == null || !Objects.requireNonNull(draft.getId()).getIdentifier().equals(newShopOrderId)) {
+			draft = shopOrderManagement.findByShopOrderId(newShopOrderId)
+					.orElseThrow(() -> new RuntimeException("newShopOrderId does not correspond to a draft or persistently stored ShopOrder"));
+			//initialize lines, the draft outlives this request
+			draft.getTotal();
+			model.addAttribute("newShopOrder", draft);
 		}
+		return draft;
 	}
 
-	private void manipulateShopOrderLines(Model model, @NonNull @Valid NewShopOrderForm form) {
-		if (model.getAttribute("newShopOrderId") == null)
-			throw new RuntimeException("No newShopOrderId session attribute found");
-		if (shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).isEmpty())
-			throw new RuntimeException("newShopOrderId does not correspond persistently stored ShopOrder");
+	//custom pizzas of a draft are not in the catalog yet
+	private Product findProduct(ShopOrder draft, ProductIdentifier productId) {
+		return draft.findCustomPizza(productId).map(Product.class::cast).orElseGet(() -> catalogManagement.findById(productId));
+	}
 
+	private void manipulateShopOrderLines(ShopOrder newShopOrder, @NonNull @Valid NewShopOrderForm form) {
 		if (form.getDeliveryType().equals("Delivery"))
-			shopOrderManagement.setShopOrderDeliveryType(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get(), DeliveryType.DELIVERY);
+			newShopOrder.setDeliveryType(DeliveryType.DELIVERY);
 		else
-			shopOrderManagement.setShopOrderDeliveryType(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get(), DeliveryType.PICKUP);
+			newShopOrder.setDeliveryType(DeliveryType.PICKUP);
 
-
-		//calling of shopOrderManagement.setProductAndQuantityAsLines for each entry
-		for (Map.Entry<String, Integer> entry : form.getConsumables().entrySet()) {
-			shopOrderManagement.setProductAndQuantityAsLines(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-					catalogManagement.findByName(entry.getKey()),
-					Quantity.of(entry.getValue().longValue()));
-		}
-
-		for (Map.Entry<String, Integer> entry : form.getPizzaPresets().entrySet()) {
-			shopOrderManagement.setProductAndQuantityAsLines(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-					catalogManagement.findByName(entry.getKey()),
-					Quantity.of(entry.getValue().longValue()));
-		}
-
-		for (Map.Entry<String, Integer> entry : form.getDrinks().entrySet()) {
-			shopOrderManagement.setProductAndQuantityAsLines(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-					catalogManagement.findByName(entry.getKey()),
-					Quantity.of(entry.getValue().longValue()));
-		}
-
-		for (Map.Entry<String, Integer> entry : form.getDishSets().entrySet()) {
-			shopOrderManagement.setProductAndQuantityAsLines(shopOrderManagement.findByShopOrderId((String) model.getAttribute("newShopOrderId")).get().getId(),
-					catalogManagement.findByName(entry.getKey()),
-					Quantity.of(entry.getValue().longValue()));
+		//setting every card entry as line of the draft
+		Map<Product, Quantity> lines = new HashMap<>();
+		for (Map<String, Integer> card : List.of(form.getConsumables(), form.getPizzaPresets(), form.getDrinks(), form.getDishSets())) {
+			for (Map.Entry<String, Integer> entry : card.entrySet()) {
+				lines.put(catalogManagement.findByName(entry.getKey()), Quantity.of(entry.getValue().longValue()));
+			}
 		}
+		shopOrderManagement.applyLineChanges(newShopOrder, lines);
 
-		calculateDiscounts(model, form);
+		discountEngine.applyDiscounts(newShopOrder);
 	}
 
 }
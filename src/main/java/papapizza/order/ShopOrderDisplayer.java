@@ -1,10 +1,12 @@
 package papapizza.order;
 
+import org.salespointframework.order.OrderIdentifier;
 import org.salespointframework.order.OrderLine;
 import papapizza.employee.Employee;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -55,6 +57,44 @@ public class ShopOrderDisplayer {
 		return displayableShopOrders;
 	}
 
+	/**
+	 * Builds displayable orders from the order board read model without touching any entity
+	 * @param summaries rows of the order board
+	 * @param chefNames usernames of the chefs per order
+	 * @return List of DisplayableShopOrders in the order of the summaries
+	 */
+	public static List<DisplayableShopOrder> display(List<ShopOrderSummary> summaries, Map<OrderIdentifier, List<String>> chefNames){
+
+		List<DisplayableShopOrder> displayableShopOrders = new ArrayList<>();
+
+		for (ShopOrderSummary summary : summaries){
+			if(summary.getDeliveryType() == DeliveryType.RETURN_ORDER) continue;
+
+			DisplayableShopOrder displayableShopOrder = new DisplayableShopOrder();
+			displayableShopOrder.setOrderId(summary.getId().getIdentifier());
+			displayableShopOrder.setOrderState(summary.getShopOrderState().toString());
+			displayableShopOrder.setDeliveryType(summary.getDeliveryType().toString());
+			displayableShopOrder.setTotal(summary.getTotalAmount());
+
+			displayableShopOrder.setLastname(summary.getLastname());
+			displayableShopOrder.setFirstname(summary.getFirstname());
+			displayableShopOrder.setPhone(summary.getPhone());
+			displayableShopOrder.setAddress(summary.getAddress());
+
+			displayableShopOrder.setInvoiceFilename(summary.getInvoiceFilename());
+
+			displayableShopOrder.setCashierName(summary.getCashierName());
+			displayableShopOrder.setChefNames(chefNames.getOrDefault(summary.getId(), new ArrayList<>()));
+			List<String> driverNames = new ArrayList<>();
+			if(summary.getDriverName() != null) driverNames.add(summary.getDriverName());
+			displayableShopOrder.setDriverNames(driverNames);
+
+			displayableShopOrders.add(displayableShopOrder);
+		}
+
+		return displayableShopOrders;
+	}
+
 	public static DisplayableShopOrder display(ShopOrder shopOrder){
 
 		//german/english not respected
@@ -0,0 +1,26 @@
+package papapizza.order;
+
+import lombok.Getter;
+
+import java.util.Objects;
+
+/**
+ * Base of all order lifecycle events. <br>
+ * Events are published inside the transaction changing the order and handled by
+ * {@code @TransactionalEventListener}s after commit, most of them asynchronously.
+ * They only carry the id, listeners load the order themselves.
+ */
+@Getter
+public abstract class ShopOrderEvent {
+
+	private final String orderId;
+
+	protected ShopOrderEvent(ShopOrder order) {
+		this.orderId = Objects.requireNonNull(order.getId()).getIdentifier();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[" + orderId + "]";
+	}
+}
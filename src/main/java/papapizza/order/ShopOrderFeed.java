@@ -0,0 +1,23 @@
+package papapizza.order;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Orders returned by the order api, together with the change version they are up to date with.
+ * Pollers pass the version as {@code since} on their next request.
+ */
+@Getter
+public class ShopOrderFeed {
+
+	private final long version;
+	private final boolean complete; //false if the limit was hit, there are more changes after version
+	private final List<ShopOrderView> orders;
+
+	public ShopOrderFeed(long version, boolean complete, List<ShopOrderView> orders) {
+		this.version = version;
+		this.complete = complete;
+		this.orders = orders;
+	}
+}
@@ -0,0 +1,133 @@
+package papapizza.order;
+
+import lombok.NonNull;
+import org.salespointframework.catalog.Product;
+import org.salespointframework.catalog.ProductIdentifier;
+import org.salespointframework.order.OrderLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import papapizza.inventory.ProductCategory;
+import papapizza.inventory.ShopCatalogManagement;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Removes custom pizzas no order refers to anymore. <br>
+ * Custom pizzas are saved when their order is applied and stay in the catalog after the order is deleted
+ * or archived, or when the apply failed halfway. They are removed once older than the ttl, in batches
+ * each in its own transaction. INVALID orders still stored from before drafts lived in the session are
+ * removed the same way.
+ */
+@Service
+public class ShopOrderJanitor {
+
+	private final Logger logger = LoggerFactory.getLogger(ShopOrderJanitor.class);
+
+	private final ShopOrderManagement<ShopOrder> shopOrderManagement;
+	private final ShopCatalogManagement catalogManagement;
+	private final TransactionTemplate transactionTemplate;
+	private final Duration draftTtl;
+	private final int batchSize;
+
+	public ShopOrderJanitor(@NonNull ShopOrderManagement<ShopOrder> shopOrderManagement,
+							@NonNull ShopCatalogManagement catalogManagement,
+							@NonNull PlatformTransactionManager transactionManager,
+							@Value("${papapizza.order.draft-ttl:PT2H}") Duration draftTtl,
+							@Value("${papapizza.order.janitor-batch-size:100}") int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batch size has to be positive, was " + batchSize);
+		}
+		this.shopOrderManagement = shopOrderManagement;
+		this.catalogManagement = catalogManagement;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+		this.draftTtl = draftTtl;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Removes drafts and unreferenced custom pizzas older than the configured ttl
+	 */
+	@Scheduled(fixedDelayString = "${papapizza.order.janitor-delay:PT10M}", initialDelayString = "${papapizza.order.janitor-delay:PT10M}")
+	public void sweep() {
+		LocalDateTime before = LocalDateTime.now().minus(draftTtl);
+		int drafts = removeDraftsCreatedBefore(before);
+		int pizzas = removeCustomPizzasCreatedBefore(before);
+		if (drafts > 0 || pizzas > 0) {
+			logger.info("removed " + drafts + " drafts and " + pizzas + " custom pizzas older than " + draftTtl);
+		}
+	}
+
+	/**
+	 * Removes all drafts created before the given time
+	 * @param before drafts created before are removed
+	 * @return amount of removed drafts
+	 */
+	public int removeDraftsCreatedBefore(@NonNull LocalDateTime before) {
+		int removed = 0;
+		int batch;
+		do {
+			batch = Objects.requireNonNull(transactionTemplate.execute(status -> removeBatch(before)));
+			removed += batch;
+		} while (batch == batchSize);
+		return removed;
+	}
+
+	/**
+	 * Removes all custom pizzas created before the given time which are on no order line
+	 * @param before custom pizzas created before are removed
+	 * @return amount of removed custom pizzas
+	 */
+	public int removeCustomPizzasCreatedBefore(@NonNull LocalDateTime before) {
+		//only ids are loaded, referenced ones stay in the catalog and would block paging
+		List<ProductIdentifier> pizzaIds = catalogManagement.findCustomPizzasCreatedBefore(before);
+		int removed = 0;
+		for (int from = 0; from < pizzaIds.size(); from += batchSize) {
+			Set<ProductIdentifier> batch = new HashSet<>(pizzaIds.subList(from, Math.min(from + batchSize, pizzaIds.size())));
+			removed += Objects.requireNonNull(transactionTemplate.execute(status -> removeUnreferencedCustomPizzas(batch)));
+		}
+		return removed;
+	}
+
+	private int removeBatch(LocalDateTime before) {
+		List<ShopOrder> drafts = shopOrderManagement.findDraftsCreatedBefore(before, batchSize);
+		if (drafts.isEmpty()) {
+			return 0;
+		}
+
+		Set<ProductIdentifier> productIds = drafts.stream()
+				.flatMap(draft -> draft.getOrderLines().stream())
+				.map(OrderLine::getProductIdentifier)
+				.collect(Collectors.toSet());
+
+		drafts.forEach(shopOrderManagement::delete);
+
+		//custom pizzas of the drafts go right away, not only once they are older than the ttl
+		removeUnreferencedCustomPizzas(productIds);
+		return drafts.size();
+	}
+
+	private int removeUnreferencedCustomPizzas(Set<ProductIdentifier> productIds) {
+		//keep what is still on the lines of an order
+		productIds.removeAll(shopOrderManagement.findReferencedProducts(productIds));
+		int removed = 0;
+		for (ProductIdentifier productId : productIds) {
+			Product product = catalogManagement.findById(productId);
+			if (product != null && product.getCategories().toList().contains(ProductCategory.CUSTOM_PIZZA.toString())) {
+				catalogManagement.deleteHardById(productId);
+				removed++;
+			}
+		}
+		return removed;
+	}
+}
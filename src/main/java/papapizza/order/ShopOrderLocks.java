@@ -0,0 +1,42 @@
+package papapizza.order;
+
+import lombok.NonNull;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks, an order id always gets the same one. <br>
+ * Staff working on the same order wait for each other, different orders only
+ * if they happen to share a stripe. Locks are reentrant and only valid in this process.
+ */
+final class ShopOrderLocks {
+
+	static final int DEFAULT_STRIPES = 64;
+
+	private final Lock[] stripes;
+
+	ShopOrderLocks() {
+		this(DEFAULT_STRIPES);
+	}
+
+	ShopOrderLocks(int stripes) {
+		if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+			throw new IllegalArgumentException("stripe count has to be a power of two, was " + stripes);
+		}
+		this.stripes = new Lock[stripes];
+		for (int i = 0; i < stripes; i++) {
+			this.stripes[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * @param orderId identifier of the order
+	 * @return the lock of the stripe the order belongs to
+	 */
+	Lock get(@NonNull String orderId) {
+		int hash = orderId.hashCode();
+		hash ^= hash >>> 16; //ids share prefixes, spread the upper bits
+		return stripes[hash & (stripes.length - 1)];
+	}
+}
@@ -2,6 +2,7 @@ package papapizza.order;
 
 import lombok.NonNull;
 import org.salespointframework.catalog.Product;
+import org.salespointframework.catalog.ProductIdentifier;
 import org.salespointframework.order.*;
 import org.salespointframework.quantity.Quantity;
 import org.salespointframework.time.BusinessTime;
@@ -10,23 +11,36 @@ import org.salespointframework.useraccount.UserAccount;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.util.Streamable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import papapizza.customer.Customer;
-import papapizza.customer.CustomerManagement;
-import papapizza.delivery.DeliveryManagement;
 import papapizza.employee.Employee;
 import papapizza.employee.EmployeeManagement;
 import papapizza.inventory.ShopCatalogManagement;
-import papapizza.kitchen.KitchenManagement;
+import papapizza.inventory.items.VehicleProduct;
 
 import javax.money.MonetaryAmount;
+import javax.persistence.OptimisticLockException;
+import java.math.BigDecimal;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -36,24 +50,50 @@ public class ShopOrderManagement<T extends ShopOrder> { //FIXME no dynamic
 
 	private final Logger logger = LoggerFactory.getLogger(ShopOrderManagement.class);
 
+	private static final List<ShopOrderState> ACTIVE_STATES = Arrays.stream(ShopOrderState.values())
+			.filter(ShopOrderState::isActive).collect(Collectors.toList());
+	/**
+	 * Amount of orders shown on one page of the order board
+	 */
+	public static final int BOARD_PAGE_SIZE = 25;
+	private static final LocalDateTime BOARD_MIN_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+	private static final LocalDateTime BOARD_MAX_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+	/**
+	 * Tries of {@link #update(String, Function)} before a conflict is given up
+	 */
+	static final int MAX_UPDATE_ATTEMPTS = 3;
+
+	private static final List<ShopOrderState> HISTORICAL_STATES = List.of(ShopOrderState.COMPLETED, ShopOrderState.CANCELLED);
+
 	private final BusinessTime businessTime;
 
 	private final ShopOrderRepository shopOrderRepository;
+	private final ShopOrderTransitionRepository transitionRepository;
+	private final ArchivedShopOrderRepository archiveRepository;
 	private final OrderManagement<ShopOrder> orderManagement;
 	private ShopCatalogManagement catalogManagement;
 	private EmployeeManagement employeeManagement;
-	private KitchenManagement kitchenManagement;
-	private DeliveryManagement deliveryManagement;
 	private InvoiceHandler invoiceHandler;
-	private CustomerManagement customerManagement;
+	private ApplicationEventPublisher events;
+	private TimeEstimateTracker timeEstimateTracker;
+	private TransactionTemplate transactionTemplate;
+	private final ShopOrderLocks locks = new ShopOrderLocks();
+	private final ShopOrderVersions versions;
 
 	@Autowired
 	public ShopOrderManagement(@NonNull final BusinessTime businessTime,
 							   @NonNull final ShopOrderRepository shopOrderRepository,
+							   @NonNull final ShopOrderTransitionRepository transitionRepository,
+							   @NonNull final ArchivedShopOrderRepository archiveRepository,
 							   @NonNull final OrderManagement<ShopOrder> orderManagement) {
 		this.businessTime = businessTime;
 		this.shopOrderRepository = shopOrderRepository;
+		this.transitionRepository = transitionRepository;
+		this.archiveRepository = archiveRepository;
 		this.orderManagement = orderManagement;
+		Long stored = shopOrderRepository.findMaxChangeVersion();
+		this.versions = new ShopOrderVersions(stored == null ? 0 : stored);
 	}
 
 	@Autowired
@@ -67,23 +107,23 @@ public class ShopOrderManagement<T extends ShopOrder> { //FIXME no dynamic
 	}
 
 	@Autowired
-	public void setKitchenManagement(@NonNull KitchenManagement kitchenManagement){
-		this.kitchenManagement = kitchenManagement;
+	public void setInvoiceHandler(@NonNull InvoiceHandler invoiceHandler){
+		this.invoiceHandler = invoiceHandler;
 	}
 
 	@Autowired
-	public void setDeliveryManagement(@NonNull DeliveryManagement deliveryManagement){
-		this.deliveryManagement = deliveryManagement;
+	public void setEventPublisher(@NonNull ApplicationEventPublisher events) {
+		this.events = events;
 	}
 
 	@Autowired
-	public void setInvoiceHandler(@NonNull InvoiceHandler invoiceHandler){
-		this.invoiceHandler = invoiceHandler;
+	public void setTimeEstimateTracker(@NonNull TimeEstimateTracker timeEstimateTracker) {
+		this.timeEstimateTracker = timeEstimateTracker;
 	}
 
 	@Autowired
-	public void setCustomerManagement(@NonNull CustomerManagement customerManagement) {
-		this.customerManagement = customerManagement;
+	public void setTransactionManager(@NonNull PlatformTransactionManager transactionManager) {
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
 	}
 
 	//=============================
@@ -100,10 +140,106 @@ public class ShopOrderManagement<T extends ShopOrder> { //FIXME no dynamic
 		return this.shopOrderRepository.findByShopOrderState(shopOrderState);
 	}
 
+	/**
+	 * Oldest INVALID drafts, i.e. left behind by abandoned verifications
+	 * @param before drafts created before
+	 * @param limit maximum amount returned
+	 * @return drafts, oldest first
+	 */
+	public List<ShopOrder> findDraftsCreatedBefore(@NonNull LocalDateTime before, int limit) {
+		return shopOrderRepository.findByShopOrderStateAndTimeCreatedBefore(ShopOrderState.INVALID, before,
+				PageRequest.of(0, limit, Sort.by("timeCreated")));
+	}
+
+	/**
+	 * @param productIds products to look for
+	 * @return those of the products which are on an order line of any order
+	 */
+	public Set<ProductIdentifier> findReferencedProducts(@NonNull Collection<ProductIdentifier> productIds) {
+		if (productIds.isEmpty()) {
+			return Collections.emptySet();
+		}
+		return new HashSet<>(shopOrderRepository.findReferencedProducts(productIds));
+	}
+
 	//stupid pass through
 
+	/**
+	 * Saves the order, optimistically: the revision of the order has to match the stored one
+	 * and is raised by one. New orders are just inserted. <br>
+	 * Changes flushed without save are checked the same way, see {@link ShopOrderVersionListener}.
+	 * @param order to save
+	 * @return saved order
+	 * @throws ObjectOptimisticLockingFailureException if the order was saved by someone else since it was loaded
+	 */
 	public ShopOrder save(@NonNull ShopOrder order) {
-		return orderManagement.save(order);
+		OrderIdentifier id = Objects.requireNonNull(order.getId());
+		order.setTotalAmount(order.getTotal().toString());
+		//pending changes are flushed before the check, that flush must not raise the revision as well
+		order.setRevisionRaised(true);
+		if (shopOrderRepository.incrementRevision(id, order.getRevision()) == 1) {
+			order.setRevision(order.getRevision() + 1);
+		} else if (shopOrderRepository.existsById(id)) {
+			throw new ObjectOptimisticLockingFailureException(ShopOrder.class, id.getIdentifier());
+		}
+		//change version is taken on flush by ShopOrderVersionListener
+		ShopOrder saved = orderManagement.save(order);
+		saved.setRevisionRaised(true); //a merged copy
+		return saved;
+	}
+
+	/**
+	 * Checks and raises the revision of an order changed without {@link #save}, on flush. <br>
+	 * Must not run anything that flushes, see {@link ShopOrderVersionListener}.
+	 * @param order stored order about to be updated
+	 * @throws OptimisticLockException if the order was saved by someone else since it was loaded
+	 */
+	void raiseRevisionOnFlush(ShopOrder order) {
+		if (order.isRevisionRaised()) {
+			//save already checked it in this transaction, the row is locked by us since
+			order.setRevisionRaised(false);
+			return;
+		}
+		OrderIdentifier id = Objects.requireNonNull(order.getId());
+		if (shopOrderRepository.incrementRevisionOnFlush(id, order.getRevision()) != 1) {
+			//translated by spring like hibernate's own version check
+			throw new OptimisticLockException("order " + id + " was saved by someone else since it was loaded", null, order);
+		}
+		order.setRevision(order.getRevision() + 1);
+	}
+
+	/**
+	 * Runs a change of an order under the lock of the order. <br>
+	 * Without a surrounding transaction every try gets its own and the change is
+	 * repeated on a freshly loaded order, if someone else saved it in between.
+	 * Inside a transaction it is run once, a conflict fails the surrounding transaction.
+	 * @param orderId identifier of the order
+	 * @param change work on the order, has to save it and may run more than once
+	 * @param <R> result of the change
+	 * @return result of the change, empty if the order does not exist or the change returned null
+	 * @throws ObjectOptimisticLockingFailureException if every try ran into a conflict
+	 */
+	@Transactional(propagation = Propagation.SUPPORTS)
+	public <R> Optional<R> update(@NonNull String orderId, @NonNull Function<ShopOrder, R> change) {
+		Lock lock = locks.get(orderId);
+		lock.lock();
+		try {
+			if (TransactionSynchronizationManager.isActualTransactionActive()) {
+				return findByShopOrderId(orderId).map(change);
+			}
+			for (int attempt = 1; ; attempt++) {
+				try {
+					return transactionTemplate.execute(status -> findByShopOrderId(orderId).map(change));
+				} catch (OptimisticLockingFailureException e) {
+					if (attempt >= MAX_UPDATE_ATTEMPTS) {
+						throw e;
+					}
+					logger.debug("order " + orderId + " was changed concurrently, try " + (attempt + 1));
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	public Optional<ShopOrder> get(@NonNull OrderIdentifier orderIdentifier) {
@@ -130,11 +266,19 @@ public class ShopOrderManagement<T extends ShopOrder> { //FIXME no dynamic
 		return orderManagement.findBy(userAccount, interval);
 	}
 
+	/**
+	 * Finds a ShopOrder by the String representation of its {@link OrderIdentifier}. <br>
+	 * This is a single primary key read, repeated lookups of the same id within one request
+	 * are answered by the persistence context without hitting the database again.
+	 * @param shopOrderId identifier String of the order
+	 * @return Optional of found ShopOrder
+	 */
 	public Optional<ShopOrder> findByShopOrderId(@NonNull String shopOrderId){
-		return this.findAll(Pageable.ofSize(Integer.MAX_VALUE)).stream().filter(shopOrder -> Objects.requireNonNull(shopOrder.getId()).toString().equals(shopOrderId)).findAny();
+		return shopOrderRepository.findById(OrderIdentifier.of(shopOrderId));
 	}
 
 	public ShopOrder delete(@NonNull ShopOrder order) {
+		versions.next(); //lists without the order are a change too
 		return orderManagement.delete(order);
 	}
 
@@ -142,19 +286,235 @@ public class ShopOrderManagement<T extends ShopOrder> { //FIXME no dynamic
 		return shopOrderRepository.findByCustomer(customer);
 	}
 
+	/**
+	 * Finds all orders the employee took part in, no matter as cashier, chef or driver. <br>
+	 * Every order is contained only once.
+	 * @param employee to look for
+	 * @return Stream of the employee's orders
+	 */
 	public Stream<ShopOrder> findBy(@NonNull Employee employee) {
-		List<ShopOrder> shopOrders = this.findAll();
-		List<ShopOrder> returnShopOrders = new ArrayList<>();
-		for (ShopOrder order : shopOrders) {
-			if (order.getCashier() != null) if (order.getCashier().equals(employee)) returnShopOrders.add(order);
-			if (order.getChefs() != null) if (order.getChefs().contains(employee)) returnShopOrders.add(order);
-			if (order.getDriver() != null) if (order.getDriver().equals(employee)) returnShopOrders.add(order);
+		return shopOrderRepository.findByEmployee(employee).stream();
+	}
+
+	/**
+	 * Finds the active orders (see {@link ShopOrderState#isActive()}) the employee takes part in with the given role
+	 * @param employee to look for
+	 * @param role the employee has in the orders
+	 * @param pageable page to fetch
+	 * @return Page of active orders
+	 */
+	public Page<ShopOrder> findActiveBy(@NonNull Employee employee, @NonNull EmployeeOrderRole role, @NonNull Pageable pageable) {
+		return findBy(employee, role, ACTIVE_STATES, pageable);
+	}
+
+	/**
+	 * Finds the completed and cancelled orders the employee took part in with the given role
+	 * @param employee to look for
+	 * @param role the employee had in the orders
+	 * @param pageable page to fetch
+	 * @return Page of historical orders
+	 */
+	public Page<ShopOrder> findHistoricalBy(@NonNull Employee employee, @NonNull EmployeeOrderRole role, @NonNull Pageable pageable) {
+		return findBy(employee, role, HISTORICAL_STATES, pageable);
+	}
+
+	/**
+	 * @param employee to look for
+	 * @return true if the employee takes part in any active order, no matter the role
+	 */
+	public boolean hasActiveOrders(@NonNull Employee employee) {
+		return shopOrderRepository.countByEmployeeAndShopOrderStateIn(employee, ACTIVE_STATES) > 0;
+	}
+
+	/**
+	 * @param customer to look for
+	 * @return true if the customer has any active order
+	 */
+	public boolean hasActiveOrders(@NonNull Customer customer) {
+		return shopOrderRepository.countByCustomerAndShopOrderStateIn(customer, ACTIVE_STATES) > 0;
+	}
+
+	/**
+	 * @return all active orders, oldest first
+	 */
+	public List<ShopOrder> findActive() {
+		return shopOrderRepository.findByShopOrderStateInOrderByTimeCreated(ACTIVE_STATES);
+	}
+
+	/**
+	 * Orders saved after the given change version, for pollers
+	 * @param version last version the caller has seen
+	 * @param limit maximum amount returned
+	 * @return orders ordered by their change version
+	 * @see #getStableVersion()
+	 */
+	public List<ShopOrder> findChangedSince(long version, int limit) {
+		return shopOrderRepository.findByChangeVersionGreaterThanOrderByChangeVersion(version, PageRequest.of(0, limit));
+	}
+
+	/**
+	 * @return highest change version every change up to is committed, changes made later get higher versions
+	 */
+	public long getStableVersion() {
+		return versions.stable();
+	}
+
+	//every flushed change of an order, see ShopOrderVersionListener
+	long nextChangeVersion() {
+		return versions.next();
+	}
+
+	/**
+	 * @param vehicle to look for
+	 * @return live orders whose driver has the vehicle, oldest first
+	 */
+	public List<ShopOrder> findBy(@NonNull VehicleProduct vehicle) {
+		return shopOrderRepository.findByVehicle(vehicle);
+	}
+
+	//=============================
+	//archive
+	//=============================
+
+	/**
+	 * Finished orders of both the live table and the archive, for analytics
+	 * @param state COMPLETED or CANCELLED
+	 * @param from completed at or after
+	 * @param to completed before
+	 * @return orders ordered by completion, archived ones first
+	 */
+	public List<ArchivedShopOrder> findFinished(@NonNull ShopOrderState state, @NonNull LocalDateTime from, @NonNull LocalDateTime to) {
+		List<ArchivedShopOrder> orders = new ArrayList<>(archiveRepository
+				.findByShopOrderStateAndCompletedAtGreaterThanEqualAndCompletedAtLessThanOrderByCompletedAt(state,
+						ArchivedShopOrder.toEpochSecond(from), ArchivedShopOrder.toEpochSecond(to)));
+		shopOrderRepository.findFinished(state, from, to).forEach(order -> orders.add(ArchivedShopOrder.of(order)));
+		return orders;
+	}
+
+	public Optional<ArchivedShopOrder> findArchived(@NonNull String orderId) {
+		return archiveRepository.findById(orderId);
+	}
+
+	/**
+	 * Moves all orders of a customer, live and archived, to another customer. <br>
+	 * Used before a customer is deleted, archived orders carry a copy of the customer's
+	 * name and phone which is replaced by the other customer's.
+	 * @param from customer whose orders are moved
+	 * @param to customer the orders are moved to, usually the delete link customer
+	 */
+	public void relinkCustomer(@NonNull Customer from, @NonNull Customer to) {
+		for (ShopOrder order : findBy(from)) {
+			order.setCustomer(to);
+			save(order);
+		}
+		archiveRepository.relinkCustomer(from.getId(), to.getId(), to.getLastname(), to.getFirstname(), to.getPhone());
+	}
+
+	/**
+	 * Oldest finished orders which may be moved to the archive
+	 * @param before completed before
+	 * @param limit maximum amount returned
+	 * @return orders, oldest first
+	 */
+	public List<ShopOrder> findArchivable(@NonNull LocalDateTime before, int limit) {
+		return shopOrderRepository.findArchivable(HISTORICAL_STATES, before, PageRequest.of(0, limit));
+	}
+
+	/**
+	 * Moves a finished order out of the live table into the archive
+	 * @param order completed or cancelled order
+	 * @return the archived copy
+	 */
+	public ArchivedShopOrder archive(@NonNull ShopOrder order) {
+		if (!order.getShopOrderState().isFinal()) {
+			throw new IllegalArgumentException("order " + order.getId() + " is not finished yet");
+		}
+		ArchivedShopOrder archived = archiveRepository.save(ArchivedShopOrder.of(order).stored());
+		delete(order);
+		return archived;
+	}
+
+	private Page<ShopOrder> findBy(Employee employee, EmployeeOrderRole role, List<ShopOrderState> states, Pageable pageable) {
+		switch (role) {
+			case CASHIER:
+				return shopOrderRepository.findByCashierAndShopOrderStateIn(employee, states, pageable);
+			case CHEF:
+				return shopOrderRepository.findByChefAndShopOrderStateIn(employee, states, pageable);
+			case DRIVER:
+				return shopOrderRepository.findByDriverAndShopOrderStateIn(employee, states, pageable);
+			default:
+				throw new IllegalArgumentException("Unknown role " + role);
 		}
-		return returnShopOrders.stream();
+	}
+
+	/**
+	 * Fetches one page of the order board, newest orders first. <br>
+	 * The page is addressed by keyset ({@link OrderBoardForm#getBefore()} and {@link OrderBoardForm#getBeforeId()})
+	 * instead of an offset, so fetching any page costs the same no matter how many orders exist.
+	 * Only the displayed columns are read, no {@link ShopOrder} entity is hydrated.
+	 * Orders of meta customers and return orders are never part of the board.
+	 * @param filter states, delivery type, date range and cursor of the page
+	 * @return Slice of at most {@link #BOARD_PAGE_SIZE} order summaries
+	 */
+	public Slice<ShopOrderSummary> findBoardSlice(@NonNull OrderBoardForm filter) {
+		LocalDateTime from = filter.getFrom() == null ? BOARD_MIN_TIME : filter.getFrom().atStartOfDay();
+		LocalDateTime to = filter.getTo() == null ? BOARD_MAX_TIME : filter.getTo().plusDays(1).atStartOfDay();
+		//no id sorts before the empty one, so only orders created before to
+		String toId = "";
+		if (filter.getBefore() != null && filter.getBefore().isBefore(to)) {
+			to = filter.getBefore();
+			toId = filter.getBeforeId() == null ? "" : filter.getBeforeId();
+		}
+		return shopOrderRepository.findBoardSlice(Customer.Meta.NORMAL, filter.getStates(), filter.getDeliveryTypes(),
+				from, to, toId, PageRequest.of(0, BOARD_PAGE_SIZE));
+	}
+
+	/**
+	 * Reads the usernames of the chefs of all given orders in one query
+	 * @param orderIds orders to look up
+	 * @return Map of order id to chef usernames, orders without chefs are missing
+	 */
+	public Map<OrderIdentifier, List<String>> findChefNames(@NonNull Collection<OrderIdentifier> orderIds) {
+		Map<OrderIdentifier, List<String>> chefNames = new HashMap<>();
+		if (orderIds.isEmpty()) {
+			return chefNames;
+		}
+		for (Object[] row : shopOrderRepository.findChefAccounts(orderIds)) {
+			chefNames.computeIfAbsent((OrderIdentifier) row[0], id -> new ArrayList<>())
+					.add((String) row[1]);
+		}
+		return chefNames;
+	}
+
+	/**
+	 * Reads the invoice filenames of all orders created between two days, without loading the orders
+	 * @param from first day, inclusive
+	 * @param to last day, inclusive
+	 * @return Map of order id to invoice filename, ordered by creation time
+	 */
+	public Map<OrderIdentifier, String> findInvoiceFilenames(@NonNull LocalDate from, @NonNull LocalDate to) {
+		Map<OrderIdentifier, String> filenames = new LinkedHashMap<>();
+		for (Object[] row : shopOrderRepository.findInvoiceFilenames(from.atStartOfDay(), to.plusDays(1).atStartOfDay())) {
+			filenames.put((OrderIdentifier) row[0], (String) row[1]);
+		}
+		//archived orders are older than live ones, they go first
+		Map<OrderIdentifier, String> all = new LinkedHashMap<>();
+		archiveRepository.findByInvoiceFilenameNotNullAndCreatedAtGreaterThanEqualAndCreatedAtLessThanOrderByCreatedAt(
+				ArchivedShopOrder.toEpochSecond(from.atStartOfDay()), ArchivedShopOrder.toEpochSecond(to.plusDays(1).atStartOfDay()))
+				.forEach(archived -> all.put(OrderIdentifier.of(archived.getOrderId()), archived.getInvoiceFilename()));
+		all.putAll(filenames);
+		return all;
 	}
 
 	public Stream<ShopOrder> findByParentId(@NonNull String parentId){
-		return this.findAll().stream().filter(o -> (o.getParentId() != null) || (o.getParentId().equals(parentId)));
+		return shopOrderRepository.findByParentId(parentId).stream();
+	}
+
+	/**
+	 * @return all parts of split orders
+	 */
+	public Streamable<ShopOrder> findSplitOrders(){
+		return shopOrderRepository.findByParentIdNotNull();
 	}
 
 	public Page<ShopOrder> findAll(@NonNull Pageable pageable) {
@@ -191,24 +551,60 @@ public class ShopOrderManagement<T extends ShopOrder> { //FIXME no dynamic
 	}
 
 	public void setProductAndQuantityAsLines(@NonNull OrderIdentifier orderIdentifier, @NonNull Product product, @NonNull Quantity quantity){
-		if (this.get(orderIdentifier).isEmpty()) throw new NoSuchElementException("ShopOrder is not persistently stored");
+		if (!this.contains(orderIdentifier)) throw new NoSuchElementException("ShopOrder is not persistently stored");
 		try {
 			catalogManagement.findById(product.getId());
 		} catch (NoSuchElementException e) {throw new NoSuchElementException("Product is not persistently stored");}
 
-		ShopOrder shopOrder = this.get(orderIdentifier).get();
+		applyLineChanges(orderIdentifier, Map.of(product, quantity));
+	}
+
+	/**
+	 * Sets the quantity of every given product as the order's line of that product,
+	 * a quantity of zero removes the line. <br>
+	 * Lines already matching the requested quantity are left untouched.
+	 * The order is loaded and saved at most once.
+	 * @param orderIdentifier id of the persisted order
+	 * @param lines requested quantity per product
+	 * @return true if any line changed
+	 */
+	public boolean applyLineChanges(@NonNull OrderIdentifier orderIdentifier, @NonNull Map<? extends Product, Quantity> lines){
+		ShopOrder shopOrder = this.get(orderIdentifier)
+				.orElseThrow(() -> new NoSuchElementException("ShopOrder is not persistently stored"));
 
-		if (quantity.getAmount().intValue() > 0){
-			if (shopOrder.getOrderLines(product).stream().count() > 0) {
-				removeLinesByProduct(orderIdentifier, product);
+		if (!applyLineChanges(shopOrder, lines)) {
+			return false;
+		}
+		this.save(shopOrder);
+		return true;
+	}
+
+	/**
+	 * Same as {@link #applyLineChanges(OrderIdentifier, Map)} but only changes the given instance without saving it,
+	 * e.g. for orders that are not persisted yet.
+	 * @param shopOrder order to change
+	 * @param lines requested quantity per product
+	 * @return true if any line changed
+	 */
+	public boolean applyLineChanges(@NonNull ShopOrder shopOrder, @NonNull Map<? extends Product, Quantity> lines){
+		boolean changed = false;
+		for (Map.Entry<? extends Product, Quantity> entry : lines.entrySet()) {
+			List<OrderLine> currentLines = shopOrder.getOrderLines(entry.getKey()).toList();
+			BigDecimal amount = entry.getValue().getAmount();
+
+			boolean unchanged = currentLines.isEmpty() ? amount.signum() <= 0 :
+					currentLines.size() == 1 && currentLines.get(0).getQuantity().getAmount().compareTo(amount) == 0;
+			if (unchanged) {
+				continue;
 			}
-			addLinesByProduct(orderIdentifier, product, quantity);
-		} else {
-			if (shopOrder.getOrderLines(product).stream().count() > 0){
-				removeLinesByProduct(orderIdentifier, product);
+
+			currentLines.forEach(shopOrder::remove);
+			if (amount.signum() > 0) {
+				shopOrder.addOrderLine(entry.getKey(), entry.getValue());
 			}
+			changed = true;
 		}
-
+		return changed;
 	}
 
 	public void removeLinesByProduct(@NonNull OrderIdentifier orderIdentifier, @NonNull Product product){
@@ -264,17 +660,22 @@ public class ShopOrderManagement<T extends ShopOrder> { //FIXME no dynamic
 		} else return null;
 	}
 
+	/**
+	 * Stores the current time estimate of the order, taken from the {@link TimeEstimateTracker}. <br>
+	 * Ovens and driver have to be assigned before.
+	 * @param order to estimate
+	 * @return estimated time until delivered or ready for pickup
+	 */
 	public Duration calcTimeEstimate(@NonNull ShopOrder order){
-		logger.info("kitchen Time Estimate: " + kitchenManagement.kitchenShopOrderTimeEstimate(order).toSeconds());
-		logger.info("delivery Time Estimate: " + deliveryManagement.deliveryShopOrderTimeEstimate(order).toSeconds());
-		Duration duration = Duration.ofSeconds(kitchenManagement.kitchenShopOrderTimeEstimate(order).toSeconds() +
-				deliveryManagement.deliveryShopOrderTimeEstimate(order).toSeconds());
+		String orderId = Objects.requireNonNull(order.getId()).getIdentifier();
+		Duration kitchen = timeEstimateTracker.getKitchenEstimate(orderId);
+		Duration delivery = timeEstimateTracker.getDeliveryEstimate(orderId);
+		logger.debug("time estimate of " + orderId + ": kitchen " + kitchen.toSeconds() + "s, delivery " + delivery.toSeconds() + "s");
 
-		logger.info("time spent in kitchen: "+kitchenManagement.kitchenShopOrderTimeEstimate(order).toSeconds()); // 0 //debug
-		order.setTimeEstimate(duration);
-		order.setKitchenTimeEstimate(kitchenManagement.kitchenShopOrderTimeEstimate(order));
-		order.setDeliveryTimeEstimate(deliveryManagement.deliveryShopOrderTimeEstimate(order));
-		return duration;
+		order.setKitchenTimeEstimate(kitchen);
+		order.setDeliveryTimeEstimate(delivery);
+		order.setTimeEstimate(kitchen.plus(delivery));
+		return order.getTimeEstimate();
 	}
 
 	public void setOrderReady(ShopOrder order){
@@ -286,27 +687,100 @@ public class ShopOrderManagement<T extends ShopOrder> { //FIXME no dynamic
 	}
 
 	public void setShopOrderState(ShopOrder order, ShopOrderState state){
+		//follow-ups, i.e. dishsets on completion, are done by the listeners of the published event
+		transition(order, state);
+		save(order); //changes should be saved, right? RIGHT?
+	}
+
+	/**
+	 * Saves a just applied order and publishes {@link OrderApplied}, its listeners run after commit. <br>
+	 * Should be the last write of the request, listeners may change the order as well.
+	 * @param order applied order
+	 * @return saved order
+	 */
+	public ShopOrder apply(@NonNull ShopOrder order){
+		ShopOrder saved = save(order);
+		events.publishEvent(new OrderApplied(saved));
+		return saved;
+	}
+
+	/**
+	 * Moves the order to another state as allowed by {@link ShopOrderState#canTransitionTo(ShopOrderState)}. <br>
+	 * The transition is appended to the transition log and the time spent in the old state is added
+	 * to its duration, final states set timeCompleted and totalDuration. Ready, completed and cancelled
+	 * orders publish their {@link ShopOrderEvent}. Does not save the order.
+	 * @param order to change
+	 * @param state new state, nothing happens if the order is in it already
+	 * @throws ShopOrderTransitionException if the transition is not allowed
+	 */
+	public void transition(@NonNull ShopOrder order, @NonNull ShopOrderState state){
+		ShopOrderState from = order.getShopOrderState();
+		if(from == state){
+			return;
+		}
+		if(!from.canTransitionTo(state)){
+			throw new ShopOrderTransitionException(from, state);
+		}
+
+		LocalDateTime now = LocalDateTime.now();
+		LocalDateTime since = order.getStateSince() == null ? order.getTimeCreated() : order.getStateSince();
+		addStageDuration(order, from, Duration.between(since, now));
+		if(state.isFinal()){
+			order.setTimeCompleted(now);
+			order.setTotalDuration(Duration.between(order.getTimeCreated(), now));
+		}
 		order.setShopOrderState(state);
+		order.setStateSince(now);
+
+		transitionRepository.save(new ShopOrderTransition(Objects.requireNonNull(order.getId()).getIdentifier(), from, state, now));
+
 		switch (state){
+			case READYPICKUP:
+			case READYDELIVER:
+				events.publishEvent(new OrderReady(order));
+				break;
 			case COMPLETED:
-				order.setTimeCompleted(LocalDateTime.now());
-				if(order.getDeliveryType() != DeliveryType.RETURN_ORDER) {
-					customerManagement.addNewDishsets(order); //add new lent dishsets to customer
-				}
-				if(!deliveryManagement.getNoVehicleAssignedOrders().isEmpty()){
-					//TODO: check if there are available spaces to fit another order
-					//TODO: unassign is not always triggered?! (maybe it is and, I might just be dumb)
-					//->Whenever an order gets set to complete, its might be the last order of a given delivery and therefore free up a vehicle
-					if(deliveryManagement.getOrdersFromVehicle(order.getDriver().getVehicle()).stream().noneMatch(o -> o.getShopOrderState() != ShopOrderState.COMPLETED)){//No order in vehicle is not completed -> vehicle is available for queued orders
-
-					}
-				}
+				events.publishEvent(new OrderCompleted(order));
 				break;
 			case CANCELLED:
-				order.setTimeCompleted(LocalDateTime.now());
+				events.publishEvent(new OrderCancelled(order));
+				break;
+			default:
 				break;
 		}
-		save(order); //changes should be saved, right? RIGHT?
+	}
+
+	private void addStageDuration(ShopOrder order, ShopOrderState stage, Duration duration){
+		switch (stage){
+			case OPEN:
+				order.setOpenDuration(plus(order.getOpenDuration(), duration));
+				break;
+			case PENDING:
+				order.setPendingDuration(plus(order.getPendingDuration(), duration));
+				break;
+			case READYPICKUP:
+			case READYDELIVER:
+				order.setReadyDuration(plus(order.getReadyDuration(), duration));
+				break;
+			case INDELIVERY:
+				order.setInDeliverDuration(plus(order.getInDeliverDuration(), duration));
+				break;
+			default:
+				//drafts and final states are not timed
+				break;
+		}
+	}
+
+	private static Duration plus(Duration current, Duration duration){
+		return current == null ? duration : current.plus(duration);
+	}
+
+	/**
+	 * @param order to get the state changes of
+	 * @return all transitions of the order, oldest first
+	 */
+	public List<ShopOrderTransition> findTransitions(@NonNull ShopOrder order){
+		return transitionRepository.findByOrderIdOrderByIdAsc(Objects.requireNonNull(order.getId()).getIdentifier());
 	}
 
 }
@@ -1,16 +1,27 @@
 package papapizza.order;
 
+import org.salespointframework.catalog.ProductIdentifier;
 import org.salespointframework.order.OrderIdentifier;
 import org.salespointframework.order.OrderStatus;
 import org.salespointframework.useraccount.UserAccount;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.util.Streamable;
 import papapizza.customer.Customer;
+import papapizza.employee.Employee;
+import papapizza.inventory.items.VehicleProduct;
 
+import javax.persistence.QueryHint;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 interface ShopOrderRepository extends Repository<ShopOrder, OrderIdentifier> {
 	@Query("select o from #{#entityName} o")
@@ -18,6 +29,27 @@ interface ShopOrderRepository extends Repository<ShopOrder, OrderIdentifier> {
 
 	Page<ShopOrder> findAll(Pageable pageable);
 
+	Optional<ShopOrder> findById(OrderIdentifier id);
+
+	boolean existsById(OrderIdentifier id);
+
+	@Modifying(flushAutomatically = true)
+	@Query("update #{#entityName} o set o.revision = o.revision + 1 where o.id = :id and o.revision = :revision")
+	int incrementRevision(@Param("id") OrderIdentifier id, @Param("revision") long revision);
+
+	//same as incrementRevision, run while hibernate flushes, so it must not flush itself
+	@Modifying
+	@QueryHints(@QueryHint(name = "org.hibernate.flushMode", value = "COMMIT"))
+	@Query("update #{#entityName} o set o.revision = o.revision + 1 where o.id = :id and o.revision = :revision")
+	int incrementRevisionOnFlush(@Param("id") OrderIdentifier id, @Param("revision") long revision);
+
+	@Query("select max(o.changeVersion) from #{#entityName} o")
+	Long findMaxChangeVersion();
+
+	List<ShopOrder> findByShopOrderStateInOrderByTimeCreated(Collection<ShopOrderState> states);
+
+	List<ShopOrder> findByChangeVersionGreaterThanOrderByChangeVersion(long changeVersion, Pageable pageable);
+
 	Streamable<ShopOrder> findByDateCreatedBetween(LocalDateTime from, LocalDateTime to);
 
 	Streamable<ShopOrder> findByOrderStatus(OrderStatus orderStatus);
@@ -28,5 +60,62 @@ interface ShopOrderRepository extends Repository<ShopOrder, OrderIdentifier> {
 
 	Streamable<ShopOrder> findByShopOrderState(ShopOrderState shopOrderState);
 
+	Streamable<ShopOrder> findByParentId(String parentId);
+
+	Streamable<ShopOrder> findByParentIdNotNull();
+
+	@Query("select o from #{#entityName} o where o.driver.vehicle = :vehicle order by o.timeCreated")
+	List<ShopOrder> findByVehicle(@Param("vehicle") VehicleProduct vehicle);
+
+	long countByCustomerAndShopOrderStateIn(Customer customer, Collection<ShopOrderState> states);
+
+	@Query("select o from #{#entityName} o where o.shopOrderState = :state and o.timeCompleted >= :from and o.timeCompleted < :to"
+			+ " order by o.timeCompleted")
+	List<ShopOrder> findFinished(@Param("state") ShopOrderState state, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+	//kitchen tickets still point to their order, those are kept until the pizza is gone
+	@Query("select o from #{#entityName} o where o.shopOrderState in :states and o.timeCompleted < :before"
+			+ " and not exists (select t from KitchenTicket t where t.order = o) order by o.timeCompleted")
+	List<ShopOrder> findArchivable(@Param("states") Collection<ShopOrderState> states, @Param("before") LocalDateTime before, Pageable pageable);
+
+	List<ShopOrder> findByShopOrderStateAndTimeCreatedBefore(ShopOrderState shopOrderState, LocalDateTime before, Pageable pageable);
+
+	@Query("select distinct l.productIdentifier from #{#entityName} o join o.orderLines l where l.productIdentifier in :ids")
+	List<ProductIdentifier> findReferencedProducts(@Param("ids") Collection<ProductIdentifier> ids);
+
 	Streamable<ShopOrder> findByCustomer(Customer customer);
+
+	@Query("select o from #{#entityName} o where o.cashier = :employee or o.driver = :employee or :employee member of o.chefs")
+	Streamable<ShopOrder> findByEmployee(@Param("employee") Employee employee);
+
+	@Query("select count(o) from #{#entityName} o where (o.cashier = :employee or o.driver = :employee or :employee member of o.chefs)"
+			+ " and o.shopOrderState in :states")
+	long countByEmployeeAndShopOrderStateIn(@Param("employee") Employee employee, @Param("states") Collection<ShopOrderState> states);
+
+	@Query("select new papapizza.order.ShopOrderSummary(o.id, o.shopOrderState, o.deliveryType, o.totalAmount,"
+			+ " c.lastname, c.firstname, c.phone, c.address, o.invoiceFilename, cu.username, du.username, o.timeCreated)"
+			+ " from #{#entityName} o join o.customer c left join o.cashier ca left join ca.userAccount cu"
+			+ " left join o.driver d left join d.userAccount du"
+			+ " where c.meta = :meta and o.shopOrderState in :states"
+			+ " and o.deliveryType in :deliveryTypes and o.timeCreated >= :from"
+			+ " and (o.timeCreated < :to or (o.timeCreated = :to and o.id.id < :toId))"
+			+ " order by o.timeCreated desc, o.id desc")
+	Slice<ShopOrderSummary> findBoardSlice(@Param("meta") Customer.Meta meta, @Param("states") Collection<ShopOrderState> states,
+										   @Param("deliveryTypes") Collection<DeliveryType> deliveryTypes,
+										   @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+										   @Param("toId") String toId, Pageable pageable);
+
+	@Query("select o.id, u.username from #{#entityName} o join o.chefs ch join ch.userAccount u where o.id in :ids")
+	List<Object[]> findChefAccounts(@Param("ids") Collection<OrderIdentifier> ids);
+
+	@Query("select o.id, o.invoiceFilename from #{#entityName} o where o.invoiceFilename is not null"
+			+ " and o.timeCreated >= :from and o.timeCreated < :to order by o.timeCreated")
+	List<Object[]> findInvoiceFilenames(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+	Page<ShopOrder> findByCashierAndShopOrderStateIn(Employee cashier, Collection<ShopOrderState> states, Pageable pageable);
+
+	Page<ShopOrder> findByDriverAndShopOrderStateIn(Employee driver, Collection<ShopOrderState> states, Pageable pageable);
+
+	@Query("select o from #{#entityName} o where :chef member of o.chefs and o.shopOrderState in :states")
+	Page<ShopOrder> findByChefAndShopOrderStateIn(@Param("chef") Employee chef, @Param("states") Collection<ShopOrderState> states, Pageable pageable);
 }
\ No newline at end of file
@@ -1,10 +1,35 @@
 package papapizza.order;
 
-
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 
 public enum ShopOrderState {
 	OPEN, PENDING, READYPICKUP, READYDELIVER, INDELIVERY, COMPLETED, CANCELLED, INVALID;
 
+	//allowed transitions, COMPLETED and CANCELLED are final
+	private static final Map<ShopOrderState, Set<ShopOrderState>> TRANSITIONS = new EnumMap<>(ShopOrderState.class);
+
+	static {
+		TRANSITIONS.put(INVALID, EnumSet.of(OPEN, CANCELLED));
+		TRANSITIONS.put(OPEN, EnumSet.of(PENDING, READYPICKUP, READYDELIVER, INDELIVERY, COMPLETED, CANCELLED));
+		TRANSITIONS.put(PENDING, EnumSet.of(READYPICKUP, READYDELIVER, INDELIVERY, CANCELLED));
+		TRANSITIONS.put(READYPICKUP, EnumSet.of(COMPLETED, CANCELLED));
+		TRANSITIONS.put(READYDELIVER, EnumSet.of(INDELIVERY, COMPLETED, CANCELLED));
+		TRANSITIONS.put(INDELIVERY, EnumSet.of(COMPLETED, CANCELLED));
+		TRANSITIONS.put(COMPLETED, EnumSet.noneOf(ShopOrderState.class));
+		TRANSITIONS.put(CANCELLED, EnumSet.noneOf(ShopOrderState.class));
+	}
+
+	public boolean canTransitionTo(ShopOrderState next){
+		return TRANSITIONS.get(this).contains(next);
+	}
+
+	public boolean isFinal(){
+		return this == COMPLETED || this == CANCELLED;
+	}
+
 	public boolean isActive(){ //writing it like this is just bs sonarqube ...
 		if(this == OPEN || this == PENDING || this == READYPICKUP){
 			return true;
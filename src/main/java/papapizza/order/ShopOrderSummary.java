@@ -0,0 +1,45 @@
+package papapizza.order;
+
+import lombok.Getter;
+import org.salespointframework.order.OrderIdentifier;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model of a {@link ShopOrder} holding only the columns the order board displays. <br>
+ * Instances are created by a JPQL constructor expression, see {@link ShopOrderRepository#findBoardSlice}.
+ */
+@Getter
+public class ShopOrderSummary {
+
+	private final OrderIdentifier id;
+	private final ShopOrderState shopOrderState;
+	private final DeliveryType deliveryType;
+	private final String totalAmount;
+	private final String lastname;
+	private final String firstname;
+	private final String phone;
+	private final String address;
+	private final String invoiceFilename;
+	private final String cashierName;
+	private final String driverName;
+	private final LocalDateTime timeCreated;
+
+	public ShopOrderSummary(OrderIdentifier id, ShopOrderState shopOrderState, DeliveryType deliveryType,
+							String totalAmount, String lastname, String firstname, String phone, String address,
+							String invoiceFilename, String cashierName, String driverName,
+							LocalDateTime timeCreated) {
+		this.id = id;
+		this.shopOrderState = shopOrderState;
+		this.deliveryType = deliveryType;
+		this.totalAmount = totalAmount;
+		this.lastname = lastname;
+		this.firstname = firstname;
+		this.phone = phone;
+		this.address = address;
+		this.invoiceFilename = invoiceFilename;
+		this.cashierName = cashierName;
+		this.driverName = driverName;
+		this.timeCreated = timeCreated;
+	}
+}
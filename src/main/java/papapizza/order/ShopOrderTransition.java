@@ -0,0 +1,43 @@
+package papapizza.order;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One state change of a {@link ShopOrder}, the log of these is append only.
+ * @see ShopOrderManagement#transition(ShopOrder, ShopOrderState)
+ */
+@Entity
+@Table(indexes = @Index(columnList = "orderId"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ShopOrderTransition {
+
+	@Id
+	@GeneratedValue
+	private Long id;
+
+	@Column(nullable = false)
+	private String orderId;
+
+	@Enumerated(EnumType.STRING)
+	private ShopOrderState fromState;
+
+	@Enumerated(EnumType.STRING)
+	@Column(nullable = false)
+	private ShopOrderState toState;
+
+	@Column(nullable = false)
+	private LocalDateTime timestamp;
+
+	public ShopOrderTransition(String orderId, ShopOrderState fromState, ShopOrderState toState, LocalDateTime timestamp) {
+		this.orderId = orderId;
+		this.fromState = fromState;
+		this.toState = toState;
+		this.timestamp = timestamp;
+	}
+}
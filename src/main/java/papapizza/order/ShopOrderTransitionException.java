@@ -0,0 +1,8 @@
+package papapizza.order;
+
+public class ShopOrderTransitionException extends IllegalStateException{
+
+	public ShopOrderTransitionException(ShopOrderState from, ShopOrderState to){
+		super("ShopOrder can not change from " + from + " to " + to);
+	}
+}
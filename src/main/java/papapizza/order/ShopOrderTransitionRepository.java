@@ -0,0 +1,13 @@
+package papapizza.order;
+
+import org.springframework.data.repository.Repository;
+
+import java.util.List;
+
+interface ShopOrderTransitionRepository extends Repository<ShopOrderTransition, Long> {
+
+	//no update or delete, the log is append only
+	ShopOrderTransition save(ShopOrderTransition transition);
+
+	List<ShopOrderTransition> findByOrderIdOrderByIdAsc(String orderId);
+}
@@ -0,0 +1,37 @@
+package papapizza.order;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/**
+ * Takes the next change version for every insert and update of a {@link ShopOrder},
+ * and checks and raises the revision of every update. <br>
+ * Runs on flush, so changes only picked up by dirty checking (a setter on a managed order,
+ * without {@link ShopOrderManagement#save}) are seen by the pollers and can not overwrite
+ * a concurrent save either. Created by hibernate through spring, see {@link ShopOrderVersions}.
+ */
+class ShopOrderVersionListener {
+
+	//the listener is built with the entity manager, before the management exists
+	private ObjectProvider<ShopOrderManagement<ShopOrder>> shopOrderManagement;
+
+	@Autowired
+	public void setShopOrderManagement(ObjectProvider<ShopOrderManagement<ShopOrder>> shopOrderManagement) {
+		this.shopOrderManagement = shopOrderManagement;
+	}
+
+	@PrePersist
+	void onInsert(ShopOrder order) {
+		order.setChangeVersion(shopOrderManagement.getObject().nextChangeVersion());
+	}
+
+	@PreUpdate
+	void onUpdate(ShopOrder order) {
+		ShopOrderManagement<ShopOrder> management = shopOrderManagement.getObject();
+		management.raiseRevisionOnFlush(order);
+		order.setChangeVersion(management.nextChangeVersion());
+	}
+}
@@ -0,0 +1,61 @@
+package papapizza.order;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global change version of all orders, every flushed change or removal takes the next one. <br>
+ * Versions are handed out before the change commits, so a poller could see version 10 while 9 is still in flight.
+ * {@link #stable()} is the highest version up to which every change is committed (or rolled back),
+ * pollers continue from there and never skip a change. Counting starts at the boot time in millis,
+ * versions handed out before a restart are not reused even if the order carrying the last one was removed.
+ */
+final class ShopOrderVersions {
+
+	private final AtomicLong current;
+	//versions of uncommitted changes
+	private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+	ShopOrderVersions(long stored) {
+		this.current = new AtomicLong(Math.max(stored, System.currentTimeMillis()));
+	}
+
+	/**
+	 * @return a new version, tracked until the surrounding transaction completes
+	 */
+	long next() {
+		//register before the version is visible, stable() must never pass it
+		synchronized (inFlight) {
+			long version = current.incrementAndGet();
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				inFlight.add(version);
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCompletion(int status) {
+						inFlight.remove(version);
+					}
+				});
+			}
+			return version;
+		}
+	}
+
+	/**
+	 * @return latest version handed out
+	 */
+	long current() {
+		return current.get();
+	}
+
+	/**
+	 * @return highest version without uncommitted changes at or below it
+	 */
+	long stable() {
+		synchronized (inFlight) {
+			return inFlight.isEmpty() ? current.get() : inFlight.first() - 1;
+		}
+	}
+}
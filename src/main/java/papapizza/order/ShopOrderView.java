@@ -0,0 +1,58 @@
+package papapizza.order;
+
+import lombok.Getter;
+import papapizza.customer.Customer;
+import papapizza.employee.Employee;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * JSON representation of a {@link ShopOrder} for the order api, only plain values so it can be
+ * written after the persistence context is gone.
+ * @see ShopOrderApiController
+ */
+@Getter
+public class ShopOrderView {
+
+	private final String id;
+	private final String parentId;
+	private final ShopOrderState shopOrderState;
+	private final DeliveryType deliveryType;
+	private final String total;
+	private final String lastname;
+	private final String firstname;
+	private final String phone;
+	private final String address;
+	private final String cashierName;
+	private final String driverName;
+	private final LocalDateTime timeCreated;
+	private final LocalDateTime timeCompleted;
+	private final long changeVersion;
+
+	private ShopOrderView(ShopOrder order) {
+		this.id = Objects.requireNonNull(order.getId()).getIdentifier();
+		this.parentId = order.getParentId();
+		this.shopOrderState = order.getShopOrderState();
+		this.deliveryType = order.getDeliveryType();
+		this.total = order.getTotalAmount();
+		Customer customer = order.getCustomer();
+		this.lastname = customer == null ? null : customer.getLastname();
+		this.firstname = customer == null ? null : customer.getFirstname();
+		this.phone = customer == null ? null : customer.getPhone();
+		this.address = customer == null ? null : customer.getAddress();
+		this.cashierName = username(order.getCashier());
+		this.driverName = username(order.getDriver());
+		this.timeCreated = order.getTimeCreated();
+		this.timeCompleted = order.getTimeCompleted();
+		this.changeVersion = order.getChangeVersion();
+	}
+
+	public static ShopOrderView of(ShopOrder order) {
+		return new ShopOrderView(order);
+	}
+
+	private static String username(Employee employee) {
+		return employee == null || employee.getUserAccount() == null ? null : employee.getUserAccount().getUsername();
+	}
+}
@@ -0,0 +1,339 @@
+package papapizza.order;
+
+import lombok.NonNull;
+import org.salespointframework.catalog.ProductIdentifier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import papapizza.delivery.DeliveryManagement;
+import papapizza.kitchen.KitchenManagement;
+import papapizza.kitchen.KitchenTicket;
+import papapizza.kitchen.PizzaFinished;
+import papapizza.kitchen.PizzaStarted;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Keeps the oven queues and vehicle loads in memory, so time estimates do not have to scan all ovens and orders. <br>
+ * The kitchen and delivery report assignments right away, as the cashier needs the estimate of a new order
+ * before it is committed. They are applied again after the commit, a rebuild in between does not find them
+ * in the database yet. Baking progress and finished orders are taken from the events after commit.
+ * The ready time per order is only recomputed for the orders sharing an oven with the change, reading an estimate
+ * is a map lookup. Everything is rebuilt from the database every few minutes, which also drops assignments of
+ * rolled back requests.
+ */
+@Service
+public class TimeEstimateTracker {
+
+	private final Logger logger = LoggerFactory.getLogger(TimeEstimateTracker.class);
+
+	private static final Duration BAKING_TIME = Duration.ofSeconds(KitchenManagement.MAX_BAKING_TIME);
+
+	private static class Oven {
+		//ticket -> order, in the order they were assigned
+		private final LinkedHashMap<String, String> queue = new LinkedHashMap<>();
+		//ticket -> time it was put in
+		private final Map<String, Instant> baking = new HashMap<>();
+		private int slots = 1;
+	}
+
+	private final Map<ProductIdentifier, Oven> ovens = new HashMap<>();
+	//order -> oven -> time its last pizza in that oven is ready
+	private final Map<String, Map<ProductIdentifier, Instant>> readyPerOven = new HashMap<>();
+	//order -> time all its pizzas are ready
+	private final Map<String, Instant> kitchenReady = new HashMap<>();
+	private final Map<ProductIdentifier, Set<String>> ordersOfVehicle = new HashMap<>();
+	//order (and parent of split orders) -> vehicles
+	private final Map<String, Set<ProductIdentifier>> vehiclesOfOrder = new HashMap<>();
+
+	private ShopOrderManagement<ShopOrder> shopOrderManagement;
+	private KitchenManagement kitchenManagement;
+
+	@Autowired
+	public void setShopOrderManagement(@NonNull ShopOrderManagement<ShopOrder> shopOrderManagement) {
+		this.shopOrderManagement = shopOrderManagement;
+	}
+
+	@Autowired
+	public void setKitchenManagement(@NonNull KitchenManagement kitchenManagement) {
+		this.kitchenManagement = kitchenManagement;
+	}
+
+	//=============================
+	//estimates
+	//=============================
+
+	/**
+	 * @param orderId order to look up
+	 * @return time until all pizzas of the order are baked, zero if none are left
+	 */
+	public synchronized Duration getKitchenEstimate(@NonNull String orderId) {
+		Instant ready = kitchenReady.get(orderId);
+		if (ready == null) {
+			return Duration.ZERO;
+		}
+		Duration left = Duration.between(Instant.now(), ready);
+		return left.isNegative() ? Duration.ZERO : left;
+	}
+
+	/**
+	 * Same as {@link DeliveryManagement#deliveryShopOrderTimeEstimate(ShopOrder)}, but only counts active orders
+	 * of the vehicle. Split orders take their slowest vehicle.
+	 * @param orderId order to look up
+	 * @return time spent delivering, zero for orders without vehicle
+	 */
+	public synchronized Duration getDeliveryEstimate(@NonNull String orderId) {
+		Duration estimate = Duration.ZERO;
+		for (ProductIdentifier vehicle : vehiclesOfOrder.getOrDefault(orderId, Collections.emptySet())) {
+			Duration vehicleEstimate = DeliveryManagement.SINGLE_DELIVERY_TIME
+					.multipliedBy(ordersOfVehicle.getOrDefault(vehicle, Collections.emptySet()).size())
+					.plus(DeliveryManagement.ARBITRARY_WAITING_TIME_ESTIMATE);
+			if (vehicleEstimate.compareTo(estimate) > 0) {
+				estimate = vehicleEstimate;
+			}
+		}
+		return estimate;
+	}
+
+	public Duration getEstimate(@NonNull String orderId) {
+		return getKitchenEstimate(orderId).plus(getDeliveryEstimate(orderId));
+	}
+
+	//=============================
+	//kitchen
+	//=============================
+
+	/**
+	 * @param slots pizzas the oven bakes at once
+	 */
+	public void pizzaQueued(@NonNull String orderId, @NonNull ProductIdentifier ovenId, int slots, @NonNull String ticketId) {
+		pizzaQueued(orderId, ovenId, slots, ticketId, null);
+	}
+
+	/**
+	 * @param slots pizzas the oven bakes at once
+	 * @param afterTicketId pizza the new one is queued right behind, at the end if null
+	 */
+	public synchronized void pizzaQueued(@NonNull String orderId, @NonNull ProductIdentifier ovenId, int slots,
+										 @NonNull String ticketId, String afterTicketId) {
+		queue(orderId, ovenId, slots, ticketId, afterTicketId);
+		afterCommit(() -> {
+			Oven oven = ovens.get(ovenId);
+			if (oven == null || !oven.queue.containsKey(ticketId)) {
+				queue(orderId, ovenId, slots, ticketId, afterTicketId);
+			}
+		});
+	}
+
+	private void queue(String orderId, ProductIdentifier ovenId, int slots, String ticketId, String afterTicketId) {
+		Oven oven = ovens.computeIfAbsent(ovenId, id -> new Oven());
+		oven.slots = Math.max(1, slots);
+		if (afterTicketId == null || !oven.queue.containsKey(afterTicketId)) {
+			oven.queue.put(ticketId, orderId);
+		} else {
+			//batched pizza, re-link the queue with it behind its batch
+			Map<String, String> queued = new LinkedHashMap<>(oven.queue);
+			oven.queue.clear();
+			for (Map.Entry<String, String> pizza : queued.entrySet()) {
+				oven.queue.put(pizza.getKey(), pizza.getValue());
+				if (pizza.getKey().equals(afterTicketId)) {
+					oven.queue.put(ticketId, orderId);
+				}
+			}
+		}
+		recompute(ovenId);
+	}
+
+	public synchronized void pizzaStarted(@NonNull ProductIdentifier ovenId, @NonNull String ticketId, @NonNull Instant since) {
+		ovens.computeIfAbsent(ovenId, id -> new Oven()).baking.put(ticketId, since);
+		recompute(ovenId);
+	}
+
+	/**
+	 * Finished or cancelled pizza
+	 */
+	public synchronized void pizzaRemoved(@NonNull ProductIdentifier ovenId, @NonNull String ticketId) {
+		Oven oven = ovens.get(ovenId);
+		if (oven == null) {
+			return;
+		}
+		String orderId = oven.queue.remove(ticketId);
+		oven.baking.remove(ticketId);
+		if (orderId != null && !oven.queue.containsValue(orderId)) {
+			Map<ProductIdentifier, Instant> ready = readyPerOven.get(orderId);
+			if (ready != null) {
+				ready.remove(ovenId);
+				updateKitchenReady(orderId);
+			}
+		}
+		recompute(ovenId);
+	}
+
+	@TransactionalEventListener
+	public void on(PizzaStarted event) {
+		pizzaStarted(event.getOvenId(), event.getTicketId(), Instant.now());
+	}
+
+	@TransactionalEventListener
+	public void on(PizzaFinished event) {
+		pizzaRemoved(event.getOvenId(), event.getTicketId());
+	}
+
+	//=============================
+	//delivery
+	//=============================
+
+	public synchronized void vehicleAssigned(@NonNull ShopOrder order, @NonNull ProductIdentifier vehicleId) {
+		String orderId = Objects.requireNonNull(order.getId()).getIdentifier();
+		String parentId = order.getParentId();
+		assign(orderId, parentId, vehicleId);
+		//adding to the sets twice does not matter
+		afterCommit(() -> assign(orderId, parentId, vehicleId));
+	}
+
+	private void assign(String orderId, String parentId, ProductIdentifier vehicleId) {
+		ordersOfVehicle.computeIfAbsent(vehicleId, id -> new HashSet<>()).add(orderId);
+		vehiclesOfOrder.computeIfAbsent(orderId, id -> new HashSet<>()).add(vehicleId);
+		if (parentId != null) {
+			vehiclesOfOrder.computeIfAbsent(parentId, id -> new HashSet<>()).add(vehicleId);
+		}
+	}
+
+	public synchronized void vehicleReleased(@NonNull String orderId) {
+		ordersOfVehicle.values().forEach(orders -> orders.remove(orderId));
+	}
+
+	@TransactionalEventListener
+	public void on(OrderCompleted event) {
+		forget(event.getOrderId());
+	}
+
+	@TransactionalEventListener
+	public void on(OrderCancelled event) {
+		forget(event.getOrderId());
+	}
+
+	private synchronized void forget(String orderId) {
+		vehicleReleased(orderId);
+		vehiclesOfOrder.remove(orderId);
+		readyPerOven.remove(orderId);
+		kitchenReady.remove(orderId);
+	}
+
+	//=============================
+	//internal
+	//=============================
+
+	/**
+	 * Ready times of all orders in the oven, pizzas are assumed to be put in in queue order,
+	 * each into the slot which is free first
+	 */
+	private void recompute(ProductIdentifier ovenId) {
+		Oven oven = ovens.get(ovenId);
+		Instant now = Instant.now();
+		Map<String, Instant> lastReady = new HashMap<>();
+		PriorityQueue<Instant> slots = new PriorityQueue<>();
+		oven.baking.forEach((ticketId, since) -> {
+			String orderId = oven.queue.get(ticketId);
+			if (orderId != null) {
+				Instant ready = since.plus(BAKING_TIME);
+				lastReady.merge(orderId, ready, TimeEstimateTracker::later);
+				//overdue pizzas are expected to be taken out any moment
+				slots.add(later(ready, now));
+			}
+		});
+		while (slots.size() < oven.slots) {
+			slots.add(now);
+		}
+		//more baking than slots after the oven was downsized
+		while (slots.size() > oven.slots) {
+			slots.poll();
+		}
+		for (Map.Entry<String, String> pizza : oven.queue.entrySet()) {
+			if (oven.baking.containsKey(pizza.getKey())) {
+				continue;
+			}
+			Instant ready = slots.poll().plus(BAKING_TIME);
+			slots.add(ready);
+			lastReady.merge(pizza.getValue(), ready, TimeEstimateTracker::later);
+		}
+		lastReady.forEach((orderId, ready) -> {
+			readyPerOven.computeIfAbsent(orderId, id -> new HashMap<>()).put(ovenId, ready);
+			updateKitchenReady(orderId);
+		});
+	}
+
+	/**
+	 * Runs the action again once the surrounding transaction committed, not at all if it rolls back
+	 */
+	private void afterCommit(Runnable action) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+			@Override
+			public void afterCommit() {
+				synchronized (TimeEstimateTracker.this) {
+					action.run();
+				}
+			}
+		});
+	}
+
+	private static Instant later(Instant a, Instant b) {
+		return a.isAfter(b) ? a : b;
+	}
+
+	private void updateKitchenReady(String orderId) {
+		Map<ProductIdentifier, Instant> ready = readyPerOven.get(orderId);
+		if (ready == null || ready.isEmpty()) {
+			readyPerOven.remove(orderId);
+			kitchenReady.remove(orderId);
+			return;
+		}
+		kitchenReady.put(orderId, Collections.max(ready.values()));
+	}
+
+	/**
+	 * Replaces the tracked state with the one stored in the database
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Scheduled(fixedDelayString = "${papapizza.order.estimate-rebuild:PT5M}", initialDelayString = "${papapizza.order.estimate-rebuild:PT5M}")
+	@Transactional(readOnly = true)
+	public synchronized void rebuild() {
+		ovens.clear();
+		readyPerOven.clear();
+		kitchenReady.clear();
+		ordersOfVehicle.clear();
+		vehiclesOfOrder.clear();
+
+		Map<String, Integer> slotsOfOven = new HashMap<>();
+		for (KitchenTicket ticket : kitchenManagement.findQueuedTickets()) {
+			if (ticket.getOvenId() == null) {
+				continue;
+			}
+			int slots = slotsOfOven.computeIfAbsent(ticket.getOvenId(), kitchenManagement::getSlots);
+			queue(Objects.requireNonNull(ticket.getOrder().getId()).getIdentifier(), ticket.getOvenIdentifier(), slots, ticket.getId(), null);
+			if (ticket.isBaking() && ticket.getStartedAt() != null) {
+				pizzaStarted(ticket.getOvenIdentifier(), ticket.getId(), Instant.ofEpochSecond(ticket.getStartedAt()));
+			}
+		}
+
+		shopOrderManagement.findActive().stream()
+				.filter(order -> order.getDriver() != null && order.getDriver().getVehicle() != null)
+				.forEach(order -> assign(Objects.requireNonNull(order.getId()).getIdentifier(), order.getParentId(),
+						order.getDriver().getVehicle().getId()));
+
+		logger.debug("rebuilt time estimates of " + kitchenReady.size() + " orders in the kitchen");
+	}
+}
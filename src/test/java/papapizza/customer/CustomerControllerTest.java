@@ -30,7 +30,6 @@ import javax.transaction.Transactional;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
@@ -245,11 +244,12 @@ class CustomerControllerTest {
 		ShopOrder returnOrder = (ShopOrder) res.getFlashMap().get("orderCreated");
 		assertNotNull(returnOrder);
 
+		//rendered only once the return commits, downloads are covered by InvoicePipelineTest
+		assertNotNull(returnOrder.getInvoiceNo());
 		mvc.perform(get("/downloadInvoice")
 						.param("orderId",returnOrder.getId()+""))
-				.andDo(print())
-				.andExpect(status().isOk())
-				.andExpect(content().contentType(MediaType.APPLICATION_PDF));
+				.andExpect(status().isAccepted())
+				.andExpect(header().exists("Retry-After"));
 
 		//no set selected
 		mvc.perform(post("/cstmrMgmt/returnSet/"+testCustomer.getId()))
@@ -3,7 +3,6 @@ package papapizza.kitchen;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
-import org.salespointframework.catalog.ProductIdentifier;
 import org.salespointframework.order.OrderLine;
 import org.springframework.boot.test.context.SpringBootTest;
 import papapizza.inventory.items.OvenProduct;
@@ -17,7 +16,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 public class DisplayableKitchenTest {
 
 	private OrderLine orderLineTest;
-	private Map<ProductIdentifier, Integer> timesTest;
+	private Map<String, Integer> timesTest;
 	private OvenProduct ovenTest;
 
 	@BeforeAll
@@ -40,9 +39,9 @@ public class DisplayableKitchenTest {
 	void getTimesTest() {
 		System.out.println("Testing Getter of timesTest");
 		DisplayableKitchen testDisplayAbleKitchen = new DisplayableKitchen();
-		Map<ProductIdentifier, Integer> expectedTimes = timesTest;
+		Map<String, Integer> expectedTimes = timesTest;
 		testDisplayAbleKitchen.setTimes(expectedTimes);
-		Map<ProductIdentifier, Integer> result = testDisplayAbleKitchen.getTimes();
+		Map<String, Integer> result = testDisplayAbleKitchen.getTimes();
 		assertEquals(expectedTimes, result);
 	}
 
@@ -1,11 +1,18 @@
 package papapizza.kitchen;
 
 import com.google.j2objc.annotations.AutoreleasePool;
+import org.javamoney.moneta.Money;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
-import org.salespointframework.catalog.ProductIdentifier;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.salespointframework.quantity.Quantity;
 import org.springframework.boot.test.context.SpringBootTest;
+import papapizza.customer.Customer;
+import papapizza.customer.CustomerCreationForm;
+import papapizza.customer.CustomerManagement;
+import papapizza.employee.Employee;
+import papapizza.employee.EmployeeCreationForm;
+import papapizza.employee.EmployeeManagement;
 import papapizza.inventory.ProductCategory;
 import papapizza.inventory.ShopCatalogManagement;
 import papapizza.inventory.items.OvenProduct;
@@ -13,12 +20,18 @@ import papapizza.inventory.items.PizzaProduct;
 import papapizza.inventory.items.PizzaState;
 import papapizza.order.ShopOrder;
 import papapizza.order.ShopOrderManagement;
+import papapizza.order.ShopOrderState;
 
+import javax.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
+@Transactional
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class KitchenManagementTest {
 
@@ -31,26 +44,129 @@ public class KitchenManagementTest {
 	@Autowired
 	KitchenManagement kitchenManagement;
 
+	@Autowired
+	EmployeeManagement employeeManagement;
+
+	@Autowired
+	CustomerManagement customerManagement;
+
 	@Test
 	public void timeLeftTest() {
-		assertTrue(shopCatalogManagement.findByCategory(ProductCategory.OVEN.toString()).stream().findAny().isPresent());
 		assertTrue(shopCatalogManagement.findByCategory(ProductCategory.PIZZA.toString()).stream().findAny().isPresent());
-		OvenProduct oven = (OvenProduct) shopCatalogManagement.findByCategory(ProductCategory.OVEN.toString()).stream().findAny().get();
 		PizzaProduct pizzaProduct = (PizzaProduct) shopCatalogManagement.findByCategory(ProductCategory.PIZZA.toString()).stream().findAny().get();
-		pizzaProduct.setState(PizzaState.READY);
-		oven.setPizzas(List.of(pizzaProduct));
-		kitchenManagement.getTimeLeft(pizzaProduct);
+		KitchenTicket ticket = new KitchenTicket(new ShopOrder(), pizzaProduct, System.currentTimeMillis(), 0);
+		assertEquals(Integer.MAX_VALUE, kitchenManagement.getTimeLeft(ticket));
+		ticket.start(System.currentTimeMillis() / 1000 - 100);
+		int timeLeft = kitchenManagement.getTimeLeft(ticket);
+		assertTrue(timeLeft <= KitchenManagement.MAX_BAKING_TIME - 100 && timeLeft >= KitchenManagement.MAX_BAKING_TIME - 101);
 	}
 
 	@Test
-	public void changePizzaStateTest() {
-		assertTrue(shopCatalogManagement.findByCategory(ProductCategory.PIZZA.toString()).stream().findAny().isPresent());
-		assertTrue(shopCatalogManagement.findByCategory(ProductCategory.OVEN.toString()).stream().findAny().isPresent());
+	public void ticketCopiesPizza() {
 		PizzaProduct pizzaProduct = (PizzaProduct) shopCatalogManagement.findByCategory(ProductCategory.PIZZA.toString()).stream().findAny().get();
-		OvenProduct oven = (OvenProduct) shopCatalogManagement.findByCategory(ProductCategory.OVEN.toString()).stream().findAny().get();
-		oven.setPizzas(List.of(pizzaProduct));
-		kitchenManagement.changePizzaState(pizzaProduct.getId(), PizzaState.PENDING);
-		kitchenManagement.changePizzaState(pizzaProduct.getId(), PizzaState.READY);
+		KitchenTicket ticket = new KitchenTicket(new ShopOrder(), pizzaProduct, System.currentTimeMillis(), 0);
+		assertEquals(pizzaProduct.getName(), ticket.getName());
+		assertEquals(pizzaProduct.getToppings().size(), ticket.getToppingIds().size());
+		assertEquals(PizzaState.OPEN, ticket.getState());
+		assertNull(ticket.getOvenIdentifier());
+	}
+
+	@Test
+	public void readyToBakeFillsFreeSlots() {
+		PizzaProduct pizzaProduct = (PizzaProduct) shopCatalogManagement.findByCategory(ProductCategory.PIZZA.toString()).stream().findAny().get();
+		OvenProduct oven = new OvenProduct("deckOven", Money.of(0, "EUR"));
+		oven.setSlots(3);
+		List<KitchenTicket> queue = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			queue.add(new KitchenTicket(new ShopOrder(), pizzaProduct, System.currentTimeMillis(), i));
+		}
+		queue.get(0).start(System.currentTimeMillis() / 1000);
+
+		Set<String> readyToBake = kitchenManagement.getReadyToBake(oven, queue);
+		assertEquals(Set.of(queue.get(1).getId(), queue.get(2).getId()), readyToBake);
+
+		oven.setSlots(1);
+		assertTrue(kitchenManagement.getReadyToBake(oven, queue).isEmpty());
+	}
+
+	@Test
+	public void changePizzaStateTest() {
+		//unknown tickets are ignored, in any state
+		assertFalse(kitchenManagement.changePizzaState("unknownTicket", PizzaState.PENDING));
+		assertFalse(kitchenManagement.changePizzaState("unknownTicket", PizzaState.READY));
+		assertTrue(kitchenManagement.findOrderIdOfTicket("unknownTicket").isEmpty());
+	}
+
+	//the other ovens are taken out of service, the test transaction rolls it back
+	private OvenProduct onlyOven(int slots) {
+		shopCatalogManagement.findByCategory(ProductCategory.OVEN.toString()).forEach(product -> {
+			((OvenProduct) product).setChef(null);
+			shopCatalogManagement.save(product);
+		});
+		Employee chef = employeeManagement.createEmployee(new EmployeeCreationForm("flowChef","first","last","123","123","Chef"));
+		OvenProduct oven = shopCatalogManagement.createOvenProduct("flowOven", "0", String.valueOf(slots));
+		employeeManagement.assignChefToOven(oven, chef);
+		return oven;
+	}
+
+	private ShopOrder pizzaOrder(int pizzas) {
+		Employee cashier = employeeManagement.createEmployee(new EmployeeCreationForm("flowCashier","first","last","123","123","Cashier"));
+		Customer customer = customerManagement.createCustomer(new CustomerCreationForm("Oven Street","139871231820","Oven","Customer"));
+		PizzaProduct pizza = (PizzaProduct) shopCatalogManagement.findByCategory(ProductCategory.PIZZA.toString()).stream().findAny().get();
+		ShopOrder order = shopOrderManagement.create(cashier, customer);
+		order.addOrderLine(pizza, Quantity.of(pizzas));
+		return shopOrderManagement.save(order);
+	}
+
+	@Test
+	public void bakesAssignedOrder() {
+		OvenProduct oven = onlyOven(1);
+		ShopOrder order = pizzaOrder(2);
+
+		kitchenManagement.assignOvens(order);
+		assertEquals(1, order.getChefs().size());
+		assertTrue(order.getChefs().contains(oven.getChef()));
+		List<KitchenTicket> queue = kitchenManagement.getQueue(oven);
+		assertEquals(2, queue.size());
+		String first = queue.get(0).getId();
+		String second = queue.get(1).getId();
+		assertEquals(Optional.of(order.getId().getIdentifier()), kitchenManagement.findOrderIdOfTicket(first));
+
+		//start: only one slot, a waiting pizza can not be finished
+		assertTrue(kitchenManagement.changePizzaState(first, PizzaState.PENDING));
+		assertEquals(ShopOrderState.PENDING, shopOrderManagement.get(order.getId()).get().getShopOrderState());
+		assertFalse(kitchenManagement.changePizzaState(first, PizzaState.PENDING));
+		assertFalse(kitchenManagement.changePizzaState(second, PizzaState.PENDING));
+		assertFalse(kitchenManagement.changePizzaState(second, PizzaState.READY));
+
+		//finish: ticket is gone, order waits for its other pizza
+		assertTrue(kitchenManagement.changePizzaState(first, PizzaState.READY));
+		assertTrue(kitchenManagement.findOrderIdOfTicket(first).isEmpty());
+		assertEquals(ShopOrderState.PENDING, shopOrderManagement.get(order.getId()).get().getShopOrderState());
+
+		//last pizza makes the order ready
+		assertTrue(kitchenManagement.changePizzaState(second, PizzaState.PENDING));
+		assertTrue(kitchenManagement.changePizzaState(second, PizzaState.READY));
+		assertTrue(kitchenManagement.getQueue(oven).isEmpty());
+		assertEquals(ShopOrderState.READYDELIVER, shopOrderManagement.get(order.getId()).get().getShopOrderState());
+	}
+
+	@Test
+	public void cancelKeepsBakingPizzas() {
+		OvenProduct oven = onlyOven(1);
+		ShopOrder order = pizzaOrder(3);
+		kitchenManagement.assignOvens(order);
+		String baking = kitchenManagement.getQueue(oven).get(0).getId();
+		assertTrue(kitchenManagement.changePizzaState(baking, PizzaState.PENDING));
+
+		assertTrue(kitchenManagement.cancelPizzasForOrder(order));
+
+		List<KitchenTicket> queue = kitchenManagement.getQueue(oven);
+		assertEquals(1, queue.size());
+		assertEquals(baking, queue.get(0).getId());
+		assertTrue(queue.get(0).isBaking());
+		//nothing left to cancel
+		assertFalse(kitchenManagement.cancelPizzasForOrder(order));
 	}
 
 /*FIXME
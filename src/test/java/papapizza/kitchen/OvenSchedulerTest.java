@@ -0,0 +1,100 @@
+package papapizza.kitchen;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import papapizza.inventory.items.OvenProduct;
+import papapizza.inventory.items.PizzaProduct;
+import papapizza.order.ShopOrder;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OvenSchedulerTest {
+
+	private static final long NOW = 1_000_000;
+	private static final long BAKING = KitchenManagement.MAX_BAKING_TIME;
+
+	private final Map<String, List<KitchenTicket>> queues = new HashMap<>();
+
+	private static KitchenTicket ticket() {
+		PizzaProduct pizza = new PizzaProduct("Salami", Money.of(5, "EUR"));
+		return new KitchenTicket(new ShopOrder(), pizza, NOW, 0);
+	}
+
+	private static List<KitchenTicket> queue(long bakingFor, int queued) {
+		List<KitchenTicket> queue = new ArrayList<>();
+		if (bakingFor >= 0) {
+			KitchenTicket baking = ticket();
+			baking.start(NOW - bakingFor);
+			queue.add(baking);
+		}
+		for (int i = 0; i < queued; i++) {
+			queue.add(ticket());
+		}
+		return queue;
+	}
+
+	private OvenProduct oven(long bakingFor, int queued) {
+		OvenProduct oven = new OvenProduct("Oven", Money.of(0, "EUR"));
+		queues.put(Objects.requireNonNull(oven.getId()).getIdentifier(), queue(bakingFor, queued));
+		return oven;
+	}
+
+	@Test
+	public void projectsRemainingAndQueuedBakeTime() {
+		assertEquals(NOW, OvenScheduler.projectedFreeAt(queue(-1, 0), 1, NOW));
+		assertEquals(NOW + BAKING - 100 + 2 * BAKING, OvenScheduler.projectedFreeAt(queue(100, 2), 1, NOW));
+		//overdue pizza counts as done now
+		assertEquals(NOW + BAKING, OvenScheduler.projectedFreeAt(queue(BAKING + 60, 1), 1, NOW));
+	}
+
+	@Test
+	public void prefersOvenFreeFirstOverFewestPizzas() {
+		OvenProduct justStarted = oven(0, 0);
+		OvenProduct almostDone = oven(BAKING - 10, 0);
+
+		OvenScheduler scheduler = new OvenScheduler(List.of(justStarted, almostDone), queues, NOW);
+
+		assertSame(almostDone, scheduler.assign(ticket()));
+	}
+
+	@Test
+	public void spreadsOrderAcrossIdleOvens() {
+		OvenProduct first = oven(-1, 0);
+		OvenProduct second = new OvenProduct("Oven", Money.of(0, "EUR")); //no tickets at all
+		OvenProduct busy = oven(0, 3);
+
+		OvenScheduler scheduler = new OvenScheduler(List.of(first, second, busy), queues, NOW);
+
+		assertSame(first, scheduler.assign(ticket()));
+		assertSame(second, scheduler.assign(ticket()));
+		assertSame(first, scheduler.assign(ticket()));
+		assertEquals(NOW + 2 * BAKING, scheduler.getReadyAt());
+	}
+
+	@Test
+	public void slotsBakeQueueInParallel() {
+		//one baking for 100s, three waiting: two go into the free slots, the last one takes the first slot freed
+		assertEquals(NOW + BAKING - 100 + BAKING, OvenScheduler.projectedFreeAt(queue(100, 3), 3, NOW));
+		assertEquals(NOW + BAKING, OvenScheduler.projectedFreeAt(queue(-1, 4), 4, NOW));
+	}
+
+	@Test
+	public void fillsSlotsOfDeckOvenBeforeQueueing() {
+		OvenProduct deck = oven(-1, 0);
+		deck.setSlots(3);
+		OvenProduct single = oven(-1, 0);
+
+		OvenScheduler scheduler = new OvenScheduler(List.of(deck, single), queues, NOW);
+
+		int inDeck = 0;
+		for (int i = 0; i < 4; i++) {
+			if (scheduler.assign(ticket()) == deck) {
+				inDeck++;
+			}
+		}
+		assertEquals(3, inDeck);
+		assertEquals(NOW + BAKING, scheduler.getReadyAt());
+	}
+}
@@ -0,0 +1,95 @@
+package papapizza.kitchen;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import papapizza.inventory.ProductCategory;
+import papapizza.inventory.items.OvenProduct;
+import papapizza.inventory.items.PizzaProduct;
+import papapizza.inventory.items.ToppingProduct;
+import papapizza.order.ShopOrder;
+
+import java.time.Duration;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PizzaBatchesTest {
+
+	private static final long NOW = 1_000_000_000;
+	private static final PizzaBatches BATCHES = new PizzaBatches(Duration.ofMinutes(10));
+
+	private static final PizzaProduct MARGHERITA = new PizzaProduct("Margherita", Money.of(8, "EUR"));
+	private static final PizzaProduct SALAMI = new PizzaProduct("Salami", Money.of(9, "EUR"));
+
+	private final Map<String, List<KitchenTicket>> queues = new HashMap<>();
+
+	private static KitchenTicket ticket(PizzaProduct pizza, long queuedAt) {
+		return new KitchenTicket(new ShopOrder(), pizza, queuedAt, 0);
+	}
+
+	private OvenProduct oven(int slots, KitchenTicket... queued) {
+		OvenProduct oven = new OvenProduct("Oven", Money.of(0, "EUR"));
+		oven.setSlots(slots);
+		queues.put(Objects.requireNonNull(oven.getId()).getIdentifier(), new ArrayList<>(List.of(queued)));
+		return oven;
+	}
+
+	@Test
+	public void joinsIdenticalPizzaOfOtherOrder() {
+		KitchenTicket salami = ticket(SALAMI, NOW - 1000);
+		KitchenTicket margherita = ticket(MARGHERITA, NOW - 1000);
+		OvenProduct oven = oven(4, salami, margherita);
+
+		assertEquals(Optional.of(margherita), BATCHES.findBatch(ticket(MARGHERITA, NOW), List.of(oven), queues, NOW));
+	}
+
+	@Test
+	public void keepsBatchesWithinWindowAndSlots() {
+		KitchenTicket old = ticket(MARGHERITA, NOW - Duration.ofMinutes(11).toMillis());
+		OvenProduct stale = oven(4, old);
+		KitchenTicket baking = ticket(MARGHERITA, NOW - 1000);
+		baking.start(NOW / 1000);
+		OvenProduct busy = oven(4, baking);
+		OvenProduct single = oven(1, ticket(MARGHERITA, NOW - 1000));
+		List<OvenProduct> ovens = List.of(stale, busy, single);
+
+		assertTrue(BATCHES.findBatch(ticket(MARGHERITA, NOW), ovens, queues, NOW).isEmpty());
+		assertTrue(new PizzaBatches(Duration.ZERO).findBatch(ticket(MARGHERITA, NOW), ovens, queues, NOW).isEmpty());
+	}
+
+	@Test
+	public void prefersOldestBatchWithFreeSlot() {
+		KitchenTicket older = ticket(MARGHERITA, NOW - 5000);
+		KitchenTicket newer = ticket(MARGHERITA, NOW - 1000);
+		OvenProduct first = oven(2, newer);
+		OvenProduct second = oven(2, older);
+
+		assertEquals(Optional.of(older), BATCHES.findBatch(ticket(MARGHERITA, NOW), List.of(first, second), queues, NOW));
+
+		//full batches are skipped
+		queues.get(Objects.requireNonNull(second.getId()).getIdentifier()).add(ticket(MARGHERITA, NOW - 5000));
+		assertEquals(Optional.of(newer), BATCHES.findBatch(ticket(MARGHERITA, NOW), List.of(first, second), queues, NOW));
+	}
+
+	@Test
+	public void customPizzasWithSameToppingsAreIdentical() {
+		ToppingProduct cheese = new ToppingProduct("Cheese", Money.of(1, "EUR"));
+		ToppingProduct ham = new ToppingProduct("Ham", Money.of(1, "EUR"));
+
+		KitchenTicket first = ticket(custom(cheese, ham), NOW);
+		KitchenTicket second = ticket(custom(ham, cheese), NOW);
+		KitchenTicket other = ticket(custom(cheese), NOW);
+
+		assertEquals(first.getBatchKey(), second.getBatchKey());
+		assertNotEquals(first.getBatchKey(), other.getBatchKey());
+		assertNotEquals(ticket(MARGHERITA, NOW).getBatchKey(), ticket(SALAMI, NOW).getBatchKey());
+	}
+
+	private static PizzaProduct custom(ToppingProduct... toppings) {
+		PizzaProduct pizza = new PizzaProduct("CustomPizza", Money.of(6, "EUR"));
+		pizza.setToppings(List.of(toppings));
+		pizza.addCategory(ProductCategory.CUSTOM_PIZZA.toString());
+		pizza.removeCategory(ProductCategory.PIZZA.toString());
+		return pizza;
+	}
+}
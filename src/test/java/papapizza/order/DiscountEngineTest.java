@@ -0,0 +1,56 @@
+package papapizza.order;
+
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.salespointframework.quantity.Quantity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import papapizza.customer.CustomerManagement;
+import papapizza.employee.EmployeeManagement;
+import papapizza.inventory.ShopCatalogManagement;
+
+import javax.transaction.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+public class DiscountEngineTest {
+
+	@Autowired private DiscountEngine discountEngine;
+	@Autowired private ShopOrderManagement<ShopOrder> shopOrderManagement;
+	@Autowired private EmployeeManagement employeeManagement;
+	@Autowired private CustomerManagement customerManagement;
+	@Autowired private ShopCatalogManagement catalogManagement;
+
+	private ShopOrder order;
+
+	@BeforeEach
+	void setUp(){
+		order = shopOrderManagement.create(employeeManagement.getDeleteLinkEmployee(), customerManagement.getDeleteLinkCustomer());
+		order.addOrderLine(catalogManagement.createToppingProduct("discountTopping", "20"), Quantity.of(2));
+	}
+
+	@Test
+	void pickupDiscountIsAppliedOnce(){
+		order.setDeliveryType(DeliveryType.PICKUP);
+
+		discountEngine.applyDiscounts(order);
+		discountEngine.applyDiscounts(order);
+
+		assertEquals(1, order.getChargeLines().filter(c -> c.getDescription().equals("PickupDiscount")).stream().count());
+		assertTrue(order.getTotal().isEqualTo(Money.of(36, "EUR")));
+	}
+
+	@Test
+	void cheapestDrinkIsFreeAboveMinimum(){
+		order.setDeliveryType(DeliveryType.DELIVERY);
+		order.addOrderLine(catalogManagement.createDrinkProduct("discountDrink", "2", "water"), Quantity.of(1));
+
+		discountEngine.applyDiscounts(order);
+
+		assertTrue(order.getChargeLines().stream().anyMatch(c -> c.getDescription().equals("FreeDrinkDiscount")));
+		assertTrue(order.getTotal().isEqualTo(Money.of(40, "EUR")));
+	}
+}
@@ -0,0 +1,46 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvoiceArchiveTest {
+
+	@TempDir
+	Path invoicePath;
+
+	private void writeInvoice(String filename, String content) throws Exception {
+		Files.write(invoicePath.resolve(filename), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void sealMovesPastDaysIntoSegment() throws Exception {
+		writeInvoice("2021-12-01-10-00-00-000.pdf", "first");
+		writeInvoice("2021-12-01-11-00-00-000.pdf", "second");
+		writeInvoice("2021-12-02-10-00-00-000.pdf", "today");
+		writeInvoice("invoiceHEAD", "head");
+
+		InvoiceArchive archive = new InvoiceArchive(invoicePath.toString());
+		archive.sealBefore(LocalDate.of(2021, 12, 2));
+
+		assertFalse(Files.exists(invoicePath.resolve("2021-12-01-10-00-00-000.pdf")));
+		assertTrue(Files.exists(invoicePath.resolve("2021-12-02-10-00-00-000.pdf")));
+		assertTrue(Files.exists(invoicePath.resolve("invoiceHEAD")));
+
+		assertEquals("second", new String(archive.read("2021-12-01-11-00-00-000.pdf").orElseThrow(), StandardCharsets.UTF_8));
+		assertFalse(archive.contains("2021-12-02-10-00-00-000.pdf"));
+
+		//index survives a restart, sealing again appends
+		writeInvoice("2021-12-01-12-00-00-000.pdf", "third");
+		InvoiceArchive reopened = new InvoiceArchive(invoicePath.toString());
+		reopened.sealBefore(LocalDate.of(2021, 12, 2));
+		assertEquals("first", new String(reopened.read("2021-12-01-10-00-00-000.pdf").orElseThrow(), StandardCharsets.UTF_8));
+		assertEquals("third", new String(reopened.read("2021-12-01-12-00-00-000.pdf").orElseThrow(), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,89 @@
+package papapizza.order;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures invoices per second of the pdf rendering, without file I/O. <br>
+ * Before is a template built again for every invoice (everything drawn from scratch),
+ * after is the shared prebuilt template. Not part of the normal build, run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+public class InvoiceHandlerBenchmarkTest {
+
+	private final Logger logger = LoggerFactory.getLogger(InvoiceHandlerBenchmarkTest.class);
+
+	private static final int WARMUP = 200;
+	private static final int RUNS = 2000;
+
+	@TempDir
+	Path invoicePath;
+
+	private InvoiceData createInvoice(long invoiceNo) {
+		List<InvoiceData.Line> lines = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			lines.add(new InvoiceData.Line("[Pizza] Pizza " + i, (i + 1) + "x", Money.of(7.5 * (i + 1), "EUR")));
+		}
+		return new InvoiceData("benchmark", "benchmark.pdf", invoiceNo, LocalDateTime.now(), DeliveryType.DELIVERY,
+				"Papa", "Pizza", "Nöthnitzer Str. 46, 01187 Dresden", "0123456789", "n/a", "123456",
+				lines, List.of(new InvoiceData.Line("[CHARGE] Discount", "--charge--", Money.of(-3, "EUR"))),
+				Money.of(267, "EUR"));
+	}
+
+	private void write(InvoiceHandler invoiceHandler, InvoiceData invoice, ByteArrayOutputStream out,
+					   boolean sharedTemplate) throws Exception {
+		if (sharedTemplate) {
+			invoiceHandler.write(invoice, out);
+		} else {
+			invoiceHandler.write(invoice, out, new InvoiceTemplate());
+		}
+	}
+
+	private double invoicesPerSecond(InvoiceHandler invoiceHandler, boolean sharedTemplate) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < WARMUP; i++) {
+			out.reset();
+			write(invoiceHandler, createInvoice(i), out, sharedTemplate);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < RUNS; i++) {
+			out.reset();
+			write(invoiceHandler, createInvoice(i), out, sharedTemplate);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		//the last invoice still has to be a readable pdf with all its fields
+		try (PDDocument pdf = PDDocument.load(out.toByteArray())) {
+			String text = new PDFTextStripper().getText(pdf);
+			assertTrue(text.contains(InvoiceTemplate.HEADLINE));
+			assertTrue(text.contains(String.valueOf(RUNS - 1)));
+			assertTrue(text.contains("Papa Pizza"));
+		}
+		return RUNS / seconds;
+	}
+
+	@Test
+	public void renderThroughput() throws Exception {
+		InvoiceHandler invoiceHandler = new InvoiceHandler(invoicePath.toString());
+
+		double before = invoicesPerSecond(invoiceHandler, false);
+		double after = invoicesPerSecond(invoiceHandler, true);
+
+		logger.info(String.format("rendered %d invoices: %.1f invoices/s template per invoice, %.1f invoices/s prebuilt template",
+				RUNS, before, after));
+	}
+}
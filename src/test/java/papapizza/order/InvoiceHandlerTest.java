@@ -0,0 +1,80 @@
+package papapizza.order;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvoiceHandlerTest {
+
+	@TempDir
+	Path invoicePath;
+
+	@Test
+	public void writeFillsTemplate() throws Exception {
+		InvoiceHandler invoiceHandler = new InvoiceHandler(invoicePath.toString());
+		InvoiceData invoice = new InvoiceData("order", "order.pdf", 4711L, LocalDateTime.of(2021, 12, 24, 18, 30),
+				DeliveryType.DELIVERY, "Papa", "Pizza", "Nöthnitzer Str. 46, 01187 Dresden", "0123456789", "n/a", "123456",
+				List.of(new InvoiceData.Line("[Pizza] Salami", "2x", Money.of(15, "EUR"))), List.of(),
+				Money.of(15, "EUR"));
+
+		//two invoices from the same template must not share their cells
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		invoiceHandler.write(invoice, new ByteArrayOutputStream());
+		invoiceHandler.write(invoice, out);
+
+		try (PDDocument pdf = PDDocument.load(out.toByteArray())) {
+			assertEquals(1, pdf.getNumberOfPages());
+			String text = new PDFTextStripper().getText(pdf);
+			assertTrue(text.contains(InvoiceTemplate.HEADLINE));
+			assertTrue(text.contains("INVOICE DETAILS"));
+			assertTrue(text.contains(InvoiceTemplate.INFO_TEXT));
+			assertTrue(text.contains("4711"));
+			assertTrue(text.contains("2021-12-24 18:30"));
+			assertTrue(text.contains("Papa Pizza"));
+			assertTrue(text.contains("[Pizza] Salami"));
+			assertEquals(1, text.split("4711", -1).length - 1);
+		}
+	}
+
+	@Test
+	public void archivedInvoiceIsNotReadForNotModified() {
+		String filename = "2021-12-01-10-00-00-000.pdf";
+		InvoiceArchive.Entry entry = new InvoiceArchive.Entry(0, 42, 1638349200000L);
+		InvoiceHandler invoiceHandler = new InvoiceHandler(invoicePath.toString());
+		invoiceHandler.setInvoiceArchive(new InvoiceArchive(invoicePath.toString()) {
+			@Override
+			public Optional<Entry> find(String name) {
+				return filename.equals(name) ? Optional.of(entry) : Optional.empty();
+			}
+
+			@Override
+			public Optional<byte[]> read(String name) throws IOException {
+				throw new IOException("segment must not be read");
+			}
+		});
+
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/invoice");
+		request.addHeader("If-None-Match", String.format("W/\"%x-%x\"", entry.getLength(), entry.getLastModified()));
+		assertEquals(HttpStatus.NOT_MODIFIED, invoiceHandler.getInvoiceResponse(filename,
+				new ServletWebRequest(request, new MockHttpServletResponse())).getStatusCode());
+
+		//a stale copy needs the bytes
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, invoiceHandler.getInvoiceResponse(filename,
+				new ServletWebRequest(new MockHttpServletRequest("GET", "/invoice"), new MockHttpServletResponse())).getStatusCode());
+	}
+}
@@ -0,0 +1,54 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvoiceNumberAllocatorTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void numbersAreUniqueAcrossThreads() throws Exception {
+		InvoiceNumberAllocator allocator = new InvoiceNumberAllocator(tempDir.resolve("invoiceHEAD"), 7);
+		Set<Long> numbers = ConcurrentHashMap.newKeySet();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		for (int i = 0; i < 200; i++) {
+			executor.execute(() -> {
+				try {
+					numbers.add(allocator.next());
+				} catch (Exception e) {
+					fail(e);
+				}
+			});
+		}
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		assertEquals(200, numbers.size());
+	}
+
+	@Test
+	public void restartContinuesAfterReservedBlock() throws Exception {
+		Path head = tempDir.resolve("invoiceHEAD");
+		InvoiceNumberAllocator first = new InvoiceNumberAllocator(head, 10);
+		assertEquals(1, first.next());
+		assertEquals(2, first.next());
+
+		//high water mark is persisted with the block
+		try (DataInputStream din = new DataInputStream(new FileInputStream(head.toFile()))) {
+			assertEquals(10, din.readLong());
+		}
+
+		//unused rest of the block is skipped, no duplicates
+		InvoiceNumberAllocator second = new InvoiceNumberAllocator(head, 10);
+		assertEquals(11, second.next());
+	}
+}
@@ -0,0 +1,144 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import papapizza.customer.Customer;
+import papapizza.customer.CustomerManagement;
+import papapizza.employee.Employee;
+import papapizza.employee.EmployeeCreationForm;
+import papapizza.employee.EmployeeManagement;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+//not transactional, rendering waits for the commit
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class InvoicePipelineTest {
+
+	@Autowired private InvoicePipeline invoicePipeline;
+	@Autowired private InvoiceHandler invoiceHandler;
+	@Autowired private ShopOrderManagement<ShopOrder> shopOrderManagement;
+	@Autowired private CustomerManagement customerManagement;
+	@Autowired private EmployeeManagement employeeManagement;
+	@Autowired private PlatformTransactionManager transactionManager;
+	@Autowired private MockMvc mvc;
+	@Value("${papapizza.invoice.path}") private String invoicePath;
+
+	private TransactionTemplate transactionTemplate;
+	private Employee cashier;
+	private Customer customer;
+
+	@BeforeAll
+	void setUp(){
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		cashier = employeeManagement.createEmployee(new EmployeeCreationForm("pipelineCashier","first","last","123","123","Cashier"));
+		customer = customerManagement.findAll().stream().filter(c -> c.getCurrentTan() != null).findFirst().orElseThrow();
+	}
+
+	private ShopOrder submitted(boolean rollback){
+		return transactionTemplate.execute(status -> {
+			ShopOrder order = shopOrderManagement.save(shopOrderManagement.create(cashier, customer));
+			invoicePipeline.submit(order);
+			shopOrderManagement.save(order);
+			assertNotNull(order.getInvoiceNo());
+			//nothing is rendered before the commit
+			assertEquals(InvoiceStatus.FAILED, invoicePipeline.getStatus(order));
+			if (rollback) {
+				status.setRollbackOnly();
+			}
+			return order;
+		});
+	}
+
+	@Test
+	public void rendersAfterCommit(){
+		ShopOrder order = submitted(false);
+
+		assertEquals(InvoiceStatus.READY, invoicePipeline.await(order, Duration.ofSeconds(10)));
+		assertTrue(invoiceHandler.exists(order.getInvoiceFilename()));
+	}
+
+	@Test
+	public void rollbackQueuesNothing(){
+		ShopOrder order = submitted(true);
+
+		assertEquals(InvoiceStatus.FAILED, invoicePipeline.await(order, Duration.ofSeconds(1)));
+		assertFalse(invoiceHandler.exists(order.getInvoiceFilename()));
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	public void downloadsRenderedInvoice() throws Exception {
+		ShopOrder order = submitted(false);
+		assertEquals(InvoiceStatus.READY, invoicePipeline.await(order, Duration.ofSeconds(10)));
+
+		MvcResult invoice = mvc.perform(get("/downloadInvoice")
+						.param("orderId",order.getId()+""))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_PDF))
+				.andExpect(header().exists("ETag"))
+				.andReturn();
+
+		//unchanged invoice is not sent again
+		mvc.perform(get("/downloadInvoice")
+						.param("orderId",order.getId()+"")
+						.header("If-None-Match", Objects.requireNonNull(invoice.getResponse().getHeader("ETag"))))
+				.andExpect(status().isNotModified());
+
+		//partial download
+		mvc.perform(get("/downloadInvoice")
+						.param("orderId",order.getId()+"")
+						.header("Range", "bytes=0-9"))
+				.andExpect(status().isPartialContent())
+				.andExpect(header().string("Content-Length", "10"));
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	public void downloadRendersMissingInvoiceAgain() throws Exception {
+		ShopOrder order = submitted(false);
+		assertEquals(InvoiceStatus.READY, invoicePipeline.await(order, Duration.ofSeconds(10)));
+		//lost pdf, e.g. cleaned up data directory
+		Files.delete(Paths.get(invoicePath, order.getInvoiceFilename()));
+
+		mvc.perform(get("/downloadInvoice")
+						.param("orderId",order.getId()+""))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(MediaType.APPLICATION_PDF));
+		//rendered again under the same number
+		assertEquals(order.getInvoiceNo(), shopOrderManagement.get(order.getId()).orElseThrow().getInvoiceNo());
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	public void unnumberedOrderIsPending() throws Exception {
+		ShopOrder order = transactionTemplate.execute(status ->
+				shopOrderManagement.save(shopOrderManagement.create(cashier, customer)));
+		assertNotNull(order);
+
+		mvc.perform(get("/downloadInvoice")
+						.param("orderId",order.getId()+""))
+				.andExpect(status().isAccepted())
+				.andExpect(header().exists("Retry-After"));
+		assertNull(shopOrderManagement.get(order.getId()).orElseThrow().getInvoiceNo());
+	}
+}
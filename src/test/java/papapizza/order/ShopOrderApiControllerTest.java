@@ -0,0 +1,86 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import papapizza.customer.CustomerManagement;
+import papapizza.employee.EmployeeManagement;
+
+import javax.transaction.Transactional;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class ShopOrderApiControllerTest {
+
+	@Autowired
+	private MockMvc mvc;
+	@Autowired
+	private ShopOrderManagement<ShopOrder> shopOrderManagement;
+	@Autowired
+	private EmployeeManagement employeeManagement;
+	@Autowired
+	private CustomerManagement customerManagement;
+
+	private ShopOrder newOrder() {
+		return shopOrderManagement.save(
+				shopOrderManagement.create(employeeManagement.getDeleteLinkEmployee(), customerManagement.getDeleteLinkCustomer()));
+	}
+
+	@Test
+	@WithMockUser(roles="CHEF")
+	void orderAnswersIfNoneMatch() throws Exception {
+
+		ShopOrder order = newOrder();
+		String orderId = order.getId().getIdentifier();
+		String eTag = "W/\"" + order.getChangeVersion() + "\"";
+
+		mvc.perform(get("/api/v1/orders/" + orderId))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, eTag))
+				.andExpect(jsonPath("$.id").value(orderId));
+
+		mvc.perform(get("/api/v1/orders/" + orderId).header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isNotModified());
+
+		mvc.perform(get("/api/v1/orders/notAnId"))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	void activeOrdersAnswerIfNoneMatch() throws Exception {
+
+		String orderId = newOrder().getId().getIdentifier();
+		String eTag = "W/\"" + shopOrderManagement.getStableVersion() + "\"";
+
+		mvc.perform(get("/api/v1/orders"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.ETAG, eTag))
+				.andExpect(jsonPath("$.orders[*].id", hasItem(orderId)));
+
+		mvc.perform(get("/api/v1/orders").header(HttpHeaders.IF_NONE_MATCH, eTag))
+				.andExpect(status().isNotModified());
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	void changesListSavedOrders() throws Exception {
+
+		long since = shopOrderManagement.getStableVersion();
+		String orderId = newOrder().getId().getIdentifier();
+
+		mvc.perform(get("/api/v1/orders/changes").param("since", String.valueOf(since)))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.complete").value(true))
+				.andExpect(jsonPath("$.orders[*].id", hasItem(orderId)));
+	}
+}
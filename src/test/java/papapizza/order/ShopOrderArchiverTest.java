@@ -0,0 +1,99 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import papapizza.customer.Customer;
+import papapizza.customer.CustomerCreationForm;
+import papapizza.customer.CustomerManagement;
+import papapizza.employee.Employee;
+import papapizza.employee.EmployeeCreationForm;
+import papapizza.employee.EmployeeManagement;
+
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+public class ShopOrderArchiverTest {
+
+	@Autowired private CustomerManagement customerManagement;
+	@Autowired private EmployeeManagement employeeManagement;
+	@Autowired private ShopOrderManagement<ShopOrder> shopOrderManagement;
+	@Autowired private ShopOrderArchiver shopOrderArchiver;
+
+	private Employee cashier;
+
+	@BeforeEach
+	void setUp(){
+		cashier = employeeManagement.createEmployee(new EmployeeCreationForm("archiverCashier","first","last","123","123","Cashier"));
+	}
+
+	private ShopOrder finished(ShopOrderState state, LocalDateTime completed){
+		return finished(state, completed, customerManagement.getDeleteLinkCustomer());
+	}
+
+	private ShopOrder finished(ShopOrderState state, LocalDateTime completed, Customer customer){
+		ShopOrder order = shopOrderManagement.create(cashier, customer);
+		order.setShopOrderState(state);
+		order.setTimeCreated(completed.minusHours(1));
+		order.setTimeCompleted(completed);
+		return shopOrderManagement.save(order);
+	}
+
+	@Test
+	public void archivesOnlyOldFinishedOrders(){
+
+		ShopOrder old = finished(ShopOrderState.COMPLETED, LocalDateTime.now().minusDays(40));
+		ShopOrder oldCancelled = finished(ShopOrderState.CANCELLED, LocalDateTime.now().minusDays(40));
+		ShopOrder recent = finished(ShopOrderState.COMPLETED, LocalDateTime.now().minusDays(1));
+
+		assertEquals(2, shopOrderArchiver.archiveCompletedBefore(LocalDateTime.now().minusDays(30)));
+
+		assertTrue(shopOrderManagement.get(old.getId()).isEmpty());
+		assertTrue(shopOrderManagement.get(oldCancelled.getId()).isEmpty());
+		assertTrue(shopOrderManagement.get(recent.getId()).isPresent());
+		assertTrue(shopOrderManagement.findArchived(Objects.requireNonNull(old.getId()).getIdentifier()).isPresent());
+	}
+
+	@Test
+	public void findFinishedReadsArchiveAndLiveOrders(){
+
+		ShopOrder old = finished(ShopOrderState.COMPLETED, LocalDateTime.now().minusDays(40));
+		ShopOrder recent = finished(ShopOrderState.COMPLETED, LocalDateTime.now().minusDays(1));
+		shopOrderArchiver.archiveCompletedBefore(LocalDateTime.now().minusDays(30));
+
+		List<ArchivedShopOrder> orders = shopOrderManagement.findFinished(ShopOrderState.COMPLETED,
+				LocalDateTime.now().minusDays(50), LocalDateTime.now());
+
+		ArchivedShopOrder archived = orders.stream()
+				.filter(o -> o.getOrderId().equals(Objects.requireNonNull(old.getId()).getIdentifier())).findFirst().orElseThrow();
+		assertFalse(archived.isLive());
+		assertTrue(old.getTotal().isEqualTo(archived.getTotal()));
+		assertTrue(orders.stream().anyMatch(o -> o.isLive()
+				&& o.getOrderId().equals(Objects.requireNonNull(recent.getId()).getIdentifier())));
+	}
+
+	@Test
+	public void relinkCustomerRemovesNameFromArchive() throws Exception {
+		Customer customer = customerManagement.createCustomer(new CustomerCreationForm("Hauptstr. 1","0351424242","Archiv","Anna"));
+		ShopOrder old = finished(ShopOrderState.COMPLETED, LocalDateTime.now().minusDays(40), customer);
+		ShopOrder recent = finished(ShopOrderState.COMPLETED, LocalDateTime.now().minusDays(1), customer);
+		shopOrderArchiver.archiveCompletedBefore(LocalDateTime.now().minusDays(30));
+
+		Customer deleteLink = customerManagement.getDeleteLinkCustomer();
+		shopOrderManagement.relinkCustomer(customer, deleteLink);
+
+		ArchivedShopOrder archived = shopOrderManagement.findArchived(Objects.requireNonNull(old.getId()).getIdentifier()).orElseThrow();
+		assertEquals(deleteLink.getId(), archived.getCustomerId());
+		assertEquals(deleteLink.getLastname(), archived.getLastname());
+		assertEquals(deleteLink.getFirstname(), archived.getFirstname());
+		assertEquals(deleteLink.getPhone(), archived.getPhone());
+		assertEquals(deleteLink.getId(), shopOrderManagement.get(recent.getId()).orElseThrow().getCustomer().getId());
+	}
+}
@@ -13,6 +13,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.test.context.support.WithUserDetails;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import papapizza.customer.Customer;
@@ -22,10 +23,12 @@ import papapizza.employee.Employee;
 import papapizza.employee.EmployeeCreationForm;
 import papapizza.employee.EmployeeManagement;
 import papapizza.inventory.ShopCatalogManagement;
+import papapizza.inventory.items.PizzaProduct;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.hamcrest.beans.HasPropertyWithValue.hasProperty;
 import static org.hamcrest.core.AllOf.allOf;
+import static org.hamcrest.core.Every.everyItem;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNot.*;
 import static org.hamcrest.core.IsNull.*;
@@ -33,10 +36,15 @@ import static org.hamcrest.core.IsNull.*;
 
 import javax.transaction.Transactional;
 
+import java.time.LocalDate;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -62,14 +70,97 @@ public class ShopOrderControllerTest {
 	@WithMockUser(roles="CASHIER")
 	void getOrder() throws Exception{
 
-		Integer orderCount = (int) shopOrderManagement.findAll().stream()
-				.filter(order -> order.getCustomer().getMeta() == Customer.Meta.NORMAL).count();
+		Integer orderCount = (int) Math.min(ShopOrderManagement.BOARD_PAGE_SIZE, shopOrderManagement.findAll().stream()
+				.filter(order -> order.getCustomer().getMeta() == Customer.Meta.NORMAL)
+				.filter(order -> order.getDeliveryType() != DeliveryType.RETURN_ORDER)
+				.filter(order -> order.getShopOrderState().isActive()).count());
 
 		mvc.perform(get("/order"))
 				.andExpect(status().isOk())
 				.andExpect(model().attribute("orders", IsCollectionWithSize.hasSize(orderCount)));
 	}
 
+	@Test
+	@WithMockUser(roles="CASHIER")
+	void getOrderFilteredByState() throws Exception{
+
+		Integer orderCount = (int) Math.min(ShopOrderManagement.BOARD_PAGE_SIZE, shopOrderManagement.findAll().stream()
+				.filter(order -> order.getCustomer().getMeta() == Customer.Meta.NORMAL)
+				.filter(order -> order.getDeliveryType() != DeliveryType.RETURN_ORDER)
+				.filter(order -> order.getShopOrderState() == ShopOrderState.COMPLETED).count());
+
+		mvc.perform(get("/order").param("state", "COMPLETED"))
+				.andExpect(status().isOk())
+				.andExpect(model().attribute("orders", IsCollectionWithSize.hasSize(orderCount)));
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	void getOrderShowsEtaOfActiveOrders() throws Exception{
+
+		mvc.perform(get("/order"))
+				.andExpect(status().isOk())
+				.andExpect(model().attribute("orders", everyItem(hasProperty("etaMinutes", notNullValue()))));
+
+		mvc.perform(get("/order").param("state", "COMPLETED"))
+				.andExpect(status().isOk())
+				.andExpect(model().attribute("orders", everyItem(hasProperty("etaMinutes", nullValue()))));
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	void getOrderWithUnknownStateShowsActive() throws Exception{
+
+		Integer orderCount = (int) Math.min(ShopOrderManagement.BOARD_PAGE_SIZE, shopOrderManagement.findAll().stream()
+				.filter(order -> order.getCustomer().getMeta() == Customer.Meta.NORMAL)
+				.filter(order -> order.getDeliveryType() != DeliveryType.RETURN_ORDER)
+				.filter(order -> order.getShopOrderState().isActive()).count());
+
+		mvc.perform(get("/order").param("state", "NOT_A_STATE"))
+				.andExpect(status().isOk())
+				.andExpect(model().attribute("orders", IsCollectionWithSize.hasSize(orderCount)));
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	@SuppressWarnings("unchecked")
+	void getOrderPagesOrdersCreatedAtSameTime() throws Exception{
+
+		Customer customer = customerManagement.createCustomer(
+				new CustomerCreationForm("Board Street","139871231813","Board","Customer"));
+		LocalDate day = LocalDate.of(2001, 1, 1);
+		int amount = ShopOrderManagement.BOARD_PAGE_SIZE + 5;
+		for (int i = 0; i < amount; i++) {
+			ShopOrder order = shopOrderManagement.create(employeeManagement.getDeleteLinkEmployee(), customer);
+			order.setTimeCreated(day.atTime(12, 0));
+			shopOrderManagement.save(order);
+		}
+
+		MvcResult first = mvc.perform(get("/order").param("state", "ALL")
+						.param("from", day.toString()).param("to", day.toString()))
+				.andExpect(status().isOk())
+				.andExpect(model().attribute("orders", IsCollectionWithSize.hasSize(ShopOrderManagement.BOARD_PAGE_SIZE)))
+				.andReturn();
+		Map<String, Object> firstModel = first.getModelAndView().getModel();
+
+		MvcResult second = mvc.perform(get("/order").param("state", "ALL")
+						.param("from", day.toString()).param("to", day.toString())
+						.param("before", (String) firstModel.get("nextCursor"))
+						.param("beforeId", (String) firstModel.get("nextCursorId")))
+				.andExpect(status().isOk())
+				.andExpect(model().attribute("orders", IsCollectionWithSize.hasSize(amount - ShopOrderManagement.BOARD_PAGE_SIZE)))
+				.andExpect(model().attributeDoesNotExist("nextCursor"))
+				.andReturn();
+
+		//every order exactly once
+		Set<String> orderIds = new HashSet<>();
+		for (MvcResult page : List.of(first, second)) {
+			((List<DisplayableShopOrder>) page.getModelAndView().getModel().get("orders"))
+					.forEach(order -> assertTrue(orderIds.add(order.getOrderId())));
+		}
+		assertEquals(amount, orderIds.size());
+	}
+
 	@Test
 	@WithMockUser(roles="CASHIER")
 	void getOrderDetails()throws Exception {
@@ -246,9 +337,46 @@ public class ShopOrderControllerTest {
 				.andExpect(status().is(302))
 				.andExpect(redirectedUrl("/order/newOrder"));
 
-		assertTrue(shopOrderManagement.get(shopOrder.getId()).get().getOrderLines().stream()
-				.anyMatch(orderLine -> catalogManagement.findById(orderLine.getProductIdentifier())
-						.getCategories().toList().contains("CUSTOM_PIZZA")));
+		//custom pizza is part of the draft, but not in the catalog before apply
+		ShopOrder draft = shopOrderManagement.get(shopOrder.getId()).get();
+		assertTrue(draft.getOrderLines().stream()
+				.anyMatch(orderLine -> draft.findCustomPizza(orderLine.getProductIdentifier()).isPresent()));
+		assertTrue(draft.getCustomPizzas().stream().allMatch(pizza -> catalogManagement.findById(pizza.getId()) == null));
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	void postApplySavesCustomPizzas() throws Exception {
+
+		Employee employee = employeeManagement.createEmployee(
+				new EmployeeCreationForm("CustomCashier","Custom","Cashier","123","123","Cashier"));
+		Customer customer = customerManagement.createCustomer(
+				new CustomerCreationForm("Custom Street","139871231812","Custom","Customer"));
+
+		ShopOrder draft = shopOrderManagement.create(employee, customer);
+		draft.setShopOrderState(ShopOrderState.INVALID);
+
+		Map<String, Object> sessionAttrs = new HashMap<>();
+		sessionAttrs.put("newShopOrderId", draft.getId().getIdentifier());
+		sessionAttrs.put("newShopOrder", draft);
+
+		MultiValueMap<String,String> mvmap = new LinkedMultiValueMap<>();
+		mvmap.add("deliveryType","Delivery");
+		mvmap.add("customPizzaQuantity","1");
+
+		mvc.perform(post("/newOrder/configurator").sessionAttrs(sessionAttrs).params(mvmap))
+				.andExpect(status().is(302))
+				.andExpect(redirectedUrl("/order/newOrder"));
+
+		assertEquals(1, draft.getCustomPizzas().size());
+		PizzaProduct customPizza = draft.getCustomPizzas().get(0);
+		assertNull(catalogManagement.findById(customPizza.getId()));
+
+		mvc.perform(post("/newOrder/apply").sessionAttrs(sessionAttrs).params(mvmap))
+				.andExpect(status().is(302))
+				.andExpect(redirectedUrl("/order"));
+
+		assertNotNull(catalogManagement.findById(customPizza.getId()));
 	}
 
 	@Test
@@ -298,6 +426,66 @@ public class ShopOrderControllerTest {
 		assertNotNull(shopOrderManagement.findByShopOrderId(orderId).get().getChefs());
 	}
 
+	@Test
+	@WithMockUser(roles="CASHIER")
+	void postApplyPersistsDraftOnlyOnApply() throws Exception {
+
+		Employee employee = employeeManagement.createEmployee(
+				new EmployeeCreationForm("DraftCashier","Draft","Cashier","123","123","Cashier"));
+		Customer customer = customerManagement.createCustomer(
+				new CustomerCreationForm("Draft Street","139871231811","Draft","Customer"));
 
+		ShopOrder draft = shopOrderManagement.create(employee, customer);
+		draft.setShopOrderState(ShopOrderState.INVALID);
 
+		Map<String, Object> sessionAttrs = new HashMap<>();
+		sessionAttrs.put("newShopOrderId", draft.getId().getIdentifier());
+		sessionAttrs.put("newShopOrder", draft);
+
+		MultiValueMap<String,String> mvmap = new LinkedMultiValueMap<>();
+		mvmap.add("deliveryType","Delivery");
+
+		mvc.perform(post("/newOrder/card").sessionAttrs(sessionAttrs).params(mvmap))
+				.andExpect(status().is(302))
+				.andExpect(redirectedUrl("/order/newOrder"));
+
+		assertFalse(shopOrderManagement.contains(draft.getId()));
+
+		mvc.perform(post("/newOrder/apply").sessionAttrs(sessionAttrs).params(mvmap))
+				.andExpect(status().is(302))
+				.andExpect(redirectedUrl("/order"));
+
+		assertTrue(shopOrderManagement.contains(draft.getId()));
+	}
+
+
+	@Test
+	@WithMockUser(roles="BOSS")
+	void exportInvoicesStreamsZip() throws Exception{
+
+		MvcResult result = mvc.perform(get("/invoices/export")
+						.param("from", LocalDate.now().minusDays(31).toString())
+						.param("to", LocalDate.now().toString()))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType("application/zip"));
+
+		mvc.perform(get("/invoices/export")
+						.param("from", LocalDate.now().toString())
+						.param("to", LocalDate.now().minusDays(1).toString()))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	@WithMockUser(roles="CASHIER")
+	void exportInvoicesIsBossOnly() throws Exception{
+
+		mvc.perform(get("/invoices/export")
+						.param("from", LocalDate.now().toString())
+						.param("to", LocalDate.now().toString()))
+				.andExpect(status().isForbidden());
+	}
 }
@@ -0,0 +1,99 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.salespointframework.catalog.Product;
+import org.salespointframework.quantity.Quantity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import papapizza.customer.CustomerManagement;
+import papapizza.employee.Employee;
+import papapizza.employee.EmployeeCreationForm;
+import papapizza.employee.EmployeeManagement;
+import papapizza.inventory.ShopCatalogManagement;
+import papapizza.inventory.items.PizzaProduct;
+
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+public class ShopOrderJanitorTest {
+
+	@Autowired private CustomerManagement customerManagement;
+	@Autowired private EmployeeManagement employeeManagement;
+	@Autowired private ShopOrderManagement<ShopOrder> shopOrderManagement;
+	@Autowired private ShopCatalogManagement catalogManagement;
+	@Autowired private ShopOrderJanitor shopOrderJanitor;
+
+	private Employee cashier;
+
+	@BeforeEach
+	void setUp(){
+		cashier = employeeManagement.createEmployee(new EmployeeCreationForm("janitorCashier","first","last","123","123","Cashier"));
+	}
+
+	private ShopOrder draft(LocalDateTime created, Product product){
+		ShopOrder draft = shopOrderManagement.create(cashier, customerManagement.getDeleteLinkCustomer());
+		draft.setShopOrderState(ShopOrderState.INVALID);
+		draft.setTimeCreated(created);
+		draft.addOrderLine(product, Quantity.of(1));
+		return shopOrderManagement.save(draft);
+	}
+
+	@Test
+	public void removesOldDraftsWithTheirCustomPizzas(){
+
+		Product oldPizza = catalogManagement.createPizzaProduct(Collections.emptyList());
+		Product newPizza = catalogManagement.createPizzaProduct(Collections.emptyList());
+		ShopOrder old = draft(LocalDateTime.now().minusHours(3), oldPizza);
+		ShopOrder recent = draft(LocalDateTime.now(), newPizza);
+
+		assertEquals(1, shopOrderJanitor.removeDraftsCreatedBefore(LocalDateTime.now().minusHours(2)));
+
+		assertTrue(shopOrderManagement.get(old.getId()).isEmpty());
+		assertNull(catalogManagement.findById(oldPizza.getId()));
+		assertTrue(shopOrderManagement.get(recent.getId()).isPresent());
+		assertNotNull(catalogManagement.findById(newPizza.getId()));
+	}
+
+	@Test
+	public void keepsCustomPizzasOfOtherOrders(){
+
+		Product pizza = catalogManagement.createPizzaProduct(Collections.emptyList());
+		ShopOrder old = draft(LocalDateTime.now().minusHours(3), pizza);
+		ShopOrder applied = shopOrderManagement.create(cashier, customerManagement.getDeleteLinkCustomer());
+		applied.addOrderLine(pizza, Quantity.of(1));
+		shopOrderManagement.save(applied);
+
+		shopOrderJanitor.removeDraftsCreatedBefore(LocalDateTime.now().minusHours(2));
+
+		assertTrue(shopOrderManagement.get(old.getId()).isEmpty());
+		assertNotNull(catalogManagement.findById(pizza.getId()));
+	}
+
+	@Test
+	public void removesOldCustomPizzasWithoutOrder(){
+
+		PizzaProduct orphan = catalogManagement.createPizzaProduct(Collections.emptyList());
+		orphan.setTimeCreated(LocalDateTime.now().minusHours(3));
+		catalogManagement.save(orphan);
+		PizzaProduct ordered = catalogManagement.createPizzaProduct(Collections.emptyList());
+		ordered.setTimeCreated(LocalDateTime.now().minusHours(3));
+		catalogManagement.save(ordered);
+		PizzaProduct recent = catalogManagement.createPizzaProduct(Collections.emptyList());
+
+		ShopOrder applied = shopOrderManagement.create(cashier, customerManagement.getDeleteLinkCustomer());
+		applied.addOrderLine(ordered, Quantity.of(1));
+		shopOrderManagement.save(applied);
+
+		shopOrderJanitor.removeCustomPizzasCreatedBefore(LocalDateTime.now().minusHours(2));
+
+		assertNull(catalogManagement.findById(orphan.getId()));
+		assertNotNull(catalogManagement.findById(ordered.getId()));
+		assertNotNull(catalogManagement.findById(recent.getId()));
+	}
+}
@@ -0,0 +1,26 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShopOrderLocksTest {
+
+	@Test
+	public void sameOrderGetsSameLock() {
+		ShopOrderLocks locks = new ShopOrderLocks(8);
+		assertSame(locks.get("a5e0f3b2-order"), locks.get(new String("a5e0f3b2-order")));
+	}
+
+	@Test
+	public void stripesAreSpread() {
+		ShopOrderLocks locks = new ShopOrderLocks(8);
+		assertNotSame(locks.get("order-1"), locks.get("order-2"));
+	}
+
+	@Test
+	public void stripeCountHasToBePowerOfTwo() {
+		assertThrows(IllegalArgumentException.class, () -> new ShopOrderLocks(12));
+		assertThrows(IllegalArgumentException.class, () -> new ShopOrderLocks(0));
+	}
+}
@@ -11,6 +11,8 @@ import org.salespointframework.time.Interval;
 import org.salespointframework.useraccount.UserAccount;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Pageable;
 import papapizza.customer.Customer;
 import papapizza.customer.CustomerManagement;
 import papapizza.employee.Employee;
@@ -19,10 +21,13 @@ import papapizza.employee.EmployeeManagement;
 import papapizza.inventory.ShopCatalogManagement;
 
 import javax.transaction.Transactional;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -61,6 +66,21 @@ public class ShopOrderManagementTest {
 
 	}
 
+	@Test
+	public void dirtyCheckedChangeTakesNewVersion(){
+
+		ShopOrder managed = shopOrderManagement.findByShopOrderId(Objects.requireNonNull(order1.getId()).getIdentifier()).orElseThrow();
+		long version = shopOrderManagement.findChangedSince(0, Integer.MAX_VALUE).stream()
+				.filter(order -> order.getId().equals(order1.getId())).findAny().orElseThrow().getChangeVersion();
+
+		//no save, the change is only flushed
+		managed.setParentId("parent");
+
+		assertTrue(shopOrderManagement.findChangedSince(version, Integer.MAX_VALUE).stream()
+				.anyMatch(order -> order.getId().equals(order1.getId())));
+		assertTrue(managed.getChangeVersion() > version);
+	}
+
 	@Test
 	public void containsReturnsCorrectBoolean(){
 
@@ -99,6 +119,25 @@ public class ShopOrderManagementTest {
 				Objects.requireNonNull(shopOrderManagement.findByShopOrderId(Objects.requireNonNull(order1.getId()).getIdentifier()).get().getId()).getIdentifier());
 	}
 
+	@Test
+	public void findByShopOrderIdReturnsSameInstanceWithinTransaction(){
+
+		String id = Objects.requireNonNull(order1.getId()).getIdentifier();
+		assertSame(shopOrderManagement.findByShopOrderId(id).get(), shopOrderManagement.findByShopOrderId(id).get());
+		assertTrue(shopOrderManagement.findByShopOrderId("unknown").isEmpty());
+	}
+
+	@Test
+	public void findByEmployeeRespectsRoleAndState(){
+
+		assertEquals(1, shopOrderManagement.findBy(cashier).filter(order -> order.equals(order1)).count());
+		assertTrue(shopOrderManagement.findActiveBy(chef, EmployeeOrderRole.CHEF, Pageable.unpaged()).getContent().contains(order1));
+		assertTrue(shopOrderManagement.findActiveBy(driver, EmployeeOrderRole.DRIVER, Pageable.unpaged()).getContent().contains(order1));
+		assertFalse(shopOrderManagement.findActiveBy(driver, EmployeeOrderRole.CASHIER, Pageable.unpaged()).getContent().contains(order1));
+		assertTrue(shopOrderManagement.findHistoricalBy(cashier, EmployeeOrderRole.CASHIER, Pageable.unpaged()).isEmpty());
+		assertTrue(shopOrderManagement.hasActiveOrders(chef));
+	}
+
 	@Test
 	public void findByRequiresNonNull(){
 
@@ -156,6 +195,60 @@ public class ShopOrderManagementTest {
 		assertTrue(order1.getOrderLines(product).stream().findAny().isEmpty());
 	}
 
+	@Test
+	public void applyLineChangesOnlyReportsActualChanges(){
+
+		assertTrue(shopOrderManagement.applyLineChanges(order2, Map.of(product, Quantity.of(2))));
+		assertFalse(shopOrderManagement.applyLineChanges(order2, Map.of(product, Quantity.of(2))));
+		assertEquals(1, order2.getOrderLines(product).stream().count());
+
+		assertTrue(shopOrderManagement.applyLineChanges(order2, Map.of(product, Quantity.of(0))));
+		assertTrue(order2.getOrderLines(product).stream().findAny().isEmpty());
+		assertFalse(shopOrderManagement.applyLineChanges(order2, Map.of(product, Quantity.of(0))));
+	}
+
+	@Test
+	public void transitionIsLoggedAndDerivesDurations(){
+
+		shopOrderManagement.transition(order1, ShopOrderState.PENDING);
+		shopOrderManagement.transition(order1, ShopOrderState.PENDING); //no change, not logged
+		shopOrderManagement.transition(order1, ShopOrderState.READYDELIVER);
+		shopOrderManagement.transition(order1, ShopOrderState.CANCELLED);
+
+		List<ShopOrderTransition> transitions = shopOrderManagement.findTransitions(order1);
+		assertEquals(3, transitions.size());
+		assertEquals(ShopOrderState.OPEN, transitions.get(0).getFromState());
+		assertEquals(ShopOrderState.CANCELLED, transitions.get(2).getToState());
+
+		assertNotNull(order1.getOpenDuration());
+		assertNotNull(order1.getPendingDuration());
+		assertNotNull(order1.getReadyDuration());
+		assertNull(order1.getInDeliverDuration());
+		assertNotNull(order1.getTimeCompleted());
+		assertEquals(Duration.between(order1.getTimeCreated(), order1.getTimeCompleted()), order1.getTotalDuration());
+
+		assertThrows(ShopOrderTransitionException.class, () -> shopOrderManagement.transition(order1, ShopOrderState.OPEN));
+	}
+
+	@Test
+	public void saveRejectsStaleRevision(){
+
+		shopOrderManagement.save(order1);
+		long revision = order1.getRevision();
+		assertEquals(revision + 1, shopOrderManagement.save(order1).getRevision());
+
+		order1.setRevision(revision); //as if loaded before the last save
+		assertThrows(OptimisticLockingFailureException.class, () -> shopOrderManagement.save(order1));
+	}
+
+	@Test
+	public void updateRunsChangeOnStoredOrder(){
+
+		String id = Objects.requireNonNull(order1.getId()).getIdentifier();
+		assertEquals(Optional.of(ShopOrderState.OPEN), shopOrderManagement.update(id, ShopOrder::getShopOrderState));
+		assertTrue(shopOrderManagement.update("unknown", ShopOrder::getShopOrderState).isEmpty());
+	}
+
 	@Disabled
 	@Test
 	public void addLinesByTotalAddsChargeLines(){
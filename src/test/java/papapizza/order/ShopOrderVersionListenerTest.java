@@ -0,0 +1,96 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import papapizza.customer.CustomerManagement;
+import papapizza.employee.Employee;
+import papapizza.employee.EmployeeCreationForm;
+import papapizza.employee.EmployeeManagement;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//not transactional, both transactions have to commit
+@SpringBootTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ShopOrderVersionListenerTest {
+
+	@Autowired private ShopOrderManagement<ShopOrder> shopOrderManagement;
+	@Autowired private CustomerManagement customerManagement;
+	@Autowired private EmployeeManagement employeeManagement;
+	@Autowired private PlatformTransactionManager transactionManager;
+
+	private TransactionTemplate transactionTemplate;
+	private TransactionTemplate concurrentTemplate;
+	private Employee cashier;
+
+	@BeforeAll
+	void setUp(){
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		concurrentTemplate = new TransactionTemplate(transactionManager);
+		concurrentTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		cashier = employeeManagement.createEmployee(new EmployeeCreationForm("revisionCashier","first","last","123","123","Cashier"));
+	}
+
+	private String storedOrder(){
+		return transactionTemplate.execute(status -> Objects.requireNonNull(shopOrderManagement
+				.save(shopOrderManagement.create(cashier, customerManagement.getDeleteLinkCustomer())).getId()).getIdentifier());
+	}
+
+	private ShopOrder load(String orderId){
+		return shopOrderManagement.findByShopOrderId(orderId).orElseThrow();
+	}
+
+	//loads the order, lets another transaction save it and commit, then changes the stale order
+	private void changeStale(String orderId, Consumer<ShopOrder> change){
+		transactionTemplate.executeWithoutResult(status -> {
+			ShopOrder stale = load(orderId);
+			concurrentTemplate.executeWithoutResult(concurrent -> {
+				ShopOrder current = load(orderId);
+				current.setParentId("first");
+				shopOrderManagement.save(current);
+			});
+			change.accept(stale);
+		});
+	}
+
+	@Test
+	public void dirtyCheckedChangeRaisesRevision(){
+		String orderId = storedOrder();
+		long revision = transactionTemplate.execute(status -> load(orderId).getRevision());
+
+		//no save, the change is only flushed on commit
+		transactionTemplate.executeWithoutResult(status -> load(orderId).setParentId("parent"));
+
+		assertEquals(revision + 1, transactionTemplate.execute(status -> load(orderId).getRevision()));
+	}
+
+	@Test
+	public void staleSaveFails(){
+		String orderId = storedOrder();
+
+		assertThrows(OptimisticLockingFailureException.class, () -> changeStale(orderId, stale -> {
+			stale.setParentId("second");
+			shopOrderManagement.save(stale);
+		}));
+		assertEquals("first", transactionTemplate.execute(status -> load(orderId).getParentId()));
+	}
+
+	@Test
+	public void staleDirtyCheckedChangeFails(){
+		String orderId = storedOrder();
+
+		assertThrows(OptimisticLockingFailureException.class,
+				() -> changeStale(orderId, stale -> stale.setParentId("second")));
+		assertEquals("first", transactionTemplate.execute(status -> load(orderId).getParentId()));
+	}
+}
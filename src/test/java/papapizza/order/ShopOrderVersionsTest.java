@@ -0,0 +1,37 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShopOrderVersionsTest {
+
+	@Test
+	public void startsAfterStoredVersion() {
+		long stored = System.currentTimeMillis() + 100_000;
+		ShopOrderVersions versions = new ShopOrderVersions(stored);
+		assertEquals(stored + 1, versions.next());
+		assertEquals(stored + 1, versions.stable());
+	}
+
+	@Test
+	public void stableStaysBelowUncommittedVersions() {
+		ShopOrderVersions versions = new ShopOrderVersions(0);
+		long before = versions.current();
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			long version = versions.next();
+			assertEquals(before + 1, version);
+			assertEquals(before, versions.stable());
+
+			TransactionSynchronizationManager.getSynchronizations()
+					.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+			assertEquals(version, versions.stable());
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+}
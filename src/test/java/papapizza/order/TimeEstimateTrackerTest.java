@@ -0,0 +1,104 @@
+package papapizza.order;
+
+import org.junit.jupiter.api.Test;
+import org.salespointframework.catalog.ProductIdentifier;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import papapizza.kitchen.KitchenManagement;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeEstimateTrackerTest {
+
+	private static final ProductIdentifier OVEN = ProductIdentifier.of("oven");
+	private static final ProductIdentifier OTHER_OVEN = ProductIdentifier.of("otherOven");
+	private static final long BAKING = KitchenManagement.MAX_BAKING_TIME;
+
+	private static void assertAbout(long seconds, Duration actual) {
+		assertTrue(Math.abs(actual.toSeconds() - seconds) <= 5, "expected about " + seconds + "s, was " + actual);
+	}
+
+	@Test
+	public void ordersWaitForPizzasQueuedBefore() {
+		TimeEstimateTracker tracker = new TimeEstimateTracker();
+		tracker.pizzaQueued("first", OVEN, 1, "p1");
+		tracker.pizzaQueued("second", OVEN, 1, "p2");
+		tracker.pizzaQueued("second", OTHER_OVEN, 1, "p3");
+
+		assertAbout(BAKING, tracker.getKitchenEstimate("first"));
+		assertAbout(2 * BAKING, tracker.getKitchenEstimate("second"));
+		assertEquals(Duration.ZERO, tracker.getKitchenEstimate("unknown"));
+	}
+
+	@Test
+	public void bakingProgressAndRemovalMoveTheQueue() {
+		TimeEstimateTracker tracker = new TimeEstimateTracker();
+		tracker.pizzaQueued("first", OVEN, 1, "p1");
+		tracker.pizzaQueued("second", OVEN, 1, "p2");
+
+		tracker.pizzaStarted(OVEN, "p1", Instant.now().minusSeconds(100));
+		assertAbout(BAKING - 100, tracker.getKitchenEstimate("first"));
+		assertAbout(2 * BAKING - 100, tracker.getKitchenEstimate("second"));
+
+		tracker.pizzaRemoved(OVEN, "p1");
+		assertEquals(Duration.ZERO, tracker.getKitchenEstimate("first"));
+		assertAbout(BAKING, tracker.getKitchenEstimate("second"));
+	}
+
+	@Test
+	public void slotsBakeInParallel() {
+		TimeEstimateTracker tracker = new TimeEstimateTracker();
+		tracker.pizzaQueued("first", OVEN, 2, "p1");
+		tracker.pizzaQueued("first", OVEN, 2, "p2");
+		tracker.pizzaQueued("second", OVEN, 2, "p3");
+
+		assertAbout(BAKING, tracker.getKitchenEstimate("first"));
+		assertAbout(2 * BAKING, tracker.getKitchenEstimate("second"));
+
+		//the third pizza takes the slot freed first
+		tracker.pizzaStarted(OVEN, "p1", Instant.now().minusSeconds(100));
+		tracker.pizzaStarted(OVEN, "p2", Instant.now());
+		assertAbout(2 * BAKING - 100, tracker.getKitchenEstimate("second"));
+	}
+
+	@Test
+	public void batchedPizzaIsQueuedBehindItsBatch() {
+		TimeEstimateTracker tracker = new TimeEstimateTracker();
+		tracker.pizzaQueued("first", OVEN, 2, "p1");
+		tracker.pizzaQueued("second", OVEN, 2, "p2");
+		tracker.pizzaQueued("second", OVEN, 2, "p3");
+		assertAbout(2 * BAKING, tracker.getKitchenEstimate("second"));
+
+		tracker.pizzaQueued("third", OVEN, 2, "p4", "p1");
+		assertAbout(BAKING, tracker.getKitchenEstimate("third"));
+		assertAbout(2 * BAKING, tracker.getKitchenEstimate("second"));
+	}
+
+	@Test
+	public void queuedPizzaIsAppliedAgainAfterCommit() {
+		TimeEstimateTracker tracker = new TimeEstimateTracker();
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			tracker.pizzaQueued("first", OVEN, 1, "p1");
+			assertAbout(BAKING, tracker.getKitchenEstimate("first"));
+			List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+
+			//dropped by a rebuild which did not see the uncommitted ticket
+			tracker.pizzaRemoved(OVEN, "p1");
+			assertEquals(Duration.ZERO, tracker.getKitchenEstimate("first"));
+
+			synchronizations.forEach(TransactionSynchronization::afterCommit);
+			assertAbout(BAKING, tracker.getKitchenEstimate("first"));
+			//nothing is queued twice
+			synchronizations.forEach(TransactionSynchronization::afterCommit);
+			tracker.pizzaQueued("second", OVEN, 1, "p2");
+			assertAbout(2 * BAKING, tracker.getKitchenEstimate("second"));
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+}